@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times the hot paths of the game under JMH.
+ *
+ * The work is the same as the built-in benchmark times, taken from Benchmark.workloads, so the two harnesses give
+ * comparable figures. JMH does not allow benchmarks in the default package, and a class in a package can not name
+ * the classes of the game, so the work is looked up by reflection once, before it is timed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GameBenchmark
+{
+	@Param({"generate pawn", "generate knight", "generate bishop", "generate rook", "generate queen", "generate king",
+		"generate queen open board", "generate all moves", "make and unmake move", "evaluate middle game",
+		"update square image"})
+	public String workload;										// the name of the work timed.
+
+	@Param({"false"})
+	public boolean metrics;										// whether the metrics are recorded while it runs.
+
+	private LongSupplier work;									// the work timed.
+
+	/**
+	 * Finds the work to time and turns the metrics on or off.
+	 *
+	 * @throws ReflectiveOperationException If the game is not on the class path.
+	 */
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() throws ReflectiveOperationException
+	{
+		Map<String, LongSupplier> workloads = (Map<String, LongSupplier>) Class.forName("Benchmark").getMethod("workloads").invoke(null);
+
+		work = workloads.get(workload);
+
+		if (work == null)
+		{
+			throw new IllegalArgumentException("No benchmark called " + workload + ", expected one of " + workloads.keySet());
+		}
+
+		Class.forName("Metrics").getMethod("setEnabled", boolean.class).invoke(null, metrics);
+	}
+
+	/**
+	 * Runs the work once.
+	 *
+	 * @return The result of the work, which JMH consumes so it can not be optimised away.
+	 */
+	@Benchmark
+	public long run()
+	{
+		return work.getAsLong();
+	}
+}
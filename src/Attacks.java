@@ -0,0 +1,372 @@
+/**
+ * Holds the precomputed attack tables used to find where pieces can move.
+ *
+ * The sliding pieces use magic bitboards. For each square the pieces that could block a ray are masked out of the
+ * occupancy, multiplied by a magic number and shifted, which gives an index into a table of every attack set for
+ * that square. The tables are built once when the class is loaded, so finding the moves of a rook, bishop or queen
+ * is a couple of array lookups. The magic numbers were found with a random search for this square numbering.
+ *
+ * The knight, king and pawn moves do not depend on the other pieces, so they are held in one table per square.
+ */
+public final class Attacks
+{
+	private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};		// the x and y steps for a rook.
+	private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};	// the x and y steps for a bishop.
+
+	private static final long[] ROOK_MASKS = new long[64];			// the squares that can block a rook on each square.
+	private static final long[] BISHOP_MASKS = new long[64];		// the squares that can block a bishop on each square.
+	private static final long[] ROOK_MAGICS = 						// the magic number for a rook on each square.
+	{
+		0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+		0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+		0x0000800080204001L, 0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+		0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+		0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+		0x0001818014000800L, 0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+		0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+		0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+		0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+		0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L, 0x8004048102000854L,
+		0x4420802040008006L, 0x0880500020004002L, 0x0801200241050010L, 0x8400080010008080L,
+		0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+		0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+		0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+		0x8044110480002441L, 0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+		0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+	};
+	private static final long[] BISHOP_MAGICS = 					// the magic number for a bishop on each square.
+	{
+		0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L, 0x000220920280002DL,
+		0x32040421000B0284L, 0x1002080404000400L, 0x0004160892080040L, 0x2203024206204201L,
+		0x0002404264010200L, 0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+		0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L, 0x0010050080908820L,
+		0x0C90A04490824802L, 0x000200A008210130L, 0x0C08001000204010L, 0x0008000186014480L,
+		0x0601044820080021L, 0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+		0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L, 0x2020120000400440L,
+		0x0108840200802003L, 0x0009070082009492L, 0x020C0C0038424245L, 0xCA44005808210410L,
+		0x8011212000500404L, 0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+		0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L, 0x0242061040002400L,
+		0x90020202400821A0L, 0x00C9009004E01002L, 0x58C2060202023100L, 0x0000012214040800L,
+		0x0210846810100200L, 0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+		0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L, 0x2080001042020004L,
+		0x0544021020288104L, 0x1103501408083020L, 0x4010451004960002L, 0x003010091C44902CL,
+		0x0102402884202000L, 0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+		0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L, 0x0045010808008680L
+	};
+	private static final int[] ROOK_SHIFTS = new int[64];			// how far the product is shifted for a rook on each square.
+	private static final int[] BISHOP_SHIFTS = new int[64];			// how far the product is shifted for a bishop on each square.
+	private static final long[][] ROOK_TABLE = new long[64][];		// every rook attack set, indexed by square and magic index.
+	private static final long[][] BISHOP_TABLE = new long[64][];	// every bishop attack set, indexed by square and magic index.
+
+	private static final long[] KNIGHT_ATTACKS = new long[64];		// the squares a knight attacks from each square.
+	private static final long[] KING_ATTACKS = new long[64];		// the squares a king attacks from each square.
+	private static final long[][] PAWN_ATTACKS = new long[2][64];	// the squares a pawn attacks from each square, indexed by colour.
+	private static final long[][] PAWN_PUSHES = new long[2][64];	// the square a pawn moves forward to from each square, indexed by colour.
+
+	private static final long[][] BETWEEN = new long[64][64];		// the squares strictly between two squares on a line, or 0 if not on a line.
+	private static final long[][] LINE = new long[64][64];			// every square on the line through two squares, or 0 if not on a line.
+
+	static
+	{
+		for (int square = 0; square < 64; square++) 				// building the tables for every square.
+		{
+			ROOK_MASKS[square] = blockerMask(square, ROOK_DIRECTIONS);
+			BISHOP_MASKS[square] = blockerMask(square, BISHOP_DIRECTIONS);
+
+			ROOK_SHIFTS[square] = 64 - Long.bitCount(ROOK_MASKS[square]);
+			BISHOP_SHIFTS[square] = 64 - Long.bitCount(BISHOP_MASKS[square]);
+
+			ROOK_TABLE[square] = new long[1 << Long.bitCount(ROOK_MASKS[square])];
+			BISHOP_TABLE[square] = new long[1 << Long.bitCount(BISHOP_MASKS[square])];
+
+			fillTable(square, ROOK_MASKS[square], ROOK_MAGICS[square], ROOK_SHIFTS[square], ROOK_DIRECTIONS, ROOK_TABLE[square]);
+			fillTable(square, BISHOP_MASKS[square], BISHOP_MAGICS[square], BISHOP_SHIFTS[square], BISHOP_DIRECTIONS, BISHOP_TABLE[square]);
+
+			int x = square % 8, y = square / 8;
+
+			KNIGHT_ATTACKS[square] = stepMask(x, y, new int[][] {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}});
+			KING_ATTACKS[square] = stepMask(x, y, new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}});
+
+			PAWN_ATTACKS[Position.WHITE][square] = stepMask(x, y, new int[][] {{-1, -1}, {1, -1}}); 	// white pawns move up the board.
+			PAWN_ATTACKS[Position.BLACK][square] = stepMask(x, y, new int[][] {{-1, 1}, {1, 1}}); 	// black pawns move down the board.
+			PAWN_PUSHES[Position.WHITE][square] = stepMask(x, y, new int[][] {{0, -1}});
+			PAWN_PUSHES[Position.BLACK][square] = stepMask(x, y, new int[][] {{0, 1}});
+		}
+
+		for (int a = 0; a < 64; a++) 								// building the lines between every pair of squares.
+		{
+			for (int b = 0; b < 64; b++)
+			{
+				long bitA = 1L << a, bitB = 1L << b;
+
+				if (a != b && (rookAttacks(a, 0L) & bitB) != 0)
+				{
+					BETWEEN[a][b] = rookAttacks(a, bitB) & rookAttacks(b, bitA);
+					LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | bitA | bitB;
+				}
+				else if (a != b && (bishopAttacks(a, 0L) & bitB) != 0)
+				{
+					BETWEEN[a][b] = bishopAttacks(a, bitB) & bishopAttacks(b, bitA);
+					LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | bitA | bitB;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The tables are only used through the static methods.
+	 */
+	private Attacks()
+	{
+	}
+
+	/**
+	 * Returns the squares a rook attacks.
+	 *
+	 * @param _square The square the rook is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the attacked squares, including the first piece on each ray.
+	 */
+	public static long rookAttacks(int _square, long _occupancy)
+	{
+		return ROOK_TABLE[_square][(int) (((_occupancy & ROOK_MASKS[_square]) * ROOK_MAGICS[_square]) >>> ROOK_SHIFTS[_square])];
+	}
+
+	/**
+	 * Returns the squares a bishop attacks.
+	 *
+	 * @param _square The square the bishop is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the attacked squares, including the first piece on each ray.
+	 */
+	public static long bishopAttacks(int _square, long _occupancy)
+	{
+		return BISHOP_TABLE[_square][(int) (((_occupancy & BISHOP_MASKS[_square]) * BISHOP_MAGICS[_square]) >>> BISHOP_SHIFTS[_square])];
+	}
+
+	/**
+	 * Returns the squares a queen attacks.
+	 *
+	 * @param _square The square the queen is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the attacked squares, including the first piece on each ray.
+	 */
+	public static long queenAttacks(int _square, long _occupancy)
+	{
+		return rookAttacks(_square, _occupancy) | bishopAttacks(_square, _occupancy);
+	}
+
+	/**
+	 * Returns the squares a knight attacks.
+	 *
+	 * @param _square The square the knight is on.
+	 * @return The bitboard of the attacked squares.
+	 */
+	public static long knightAttacks(int _square)
+	{
+		return KNIGHT_ATTACKS[_square];
+	}
+
+	/**
+	 * Returns the squares a king attacks.
+	 *
+	 * @param _square The square the king is on.
+	 * @return The bitboard of the attacked squares.
+	 */
+	public static long kingAttacks(int _square)
+	{
+		return KING_ATTACKS[_square];
+	}
+
+	/**
+	 * Returns the squares a pawn attacks.
+	 *
+	 * @param _colour The colour of the pawn.
+	 * @param _square The square the pawn is on.
+	 * @return The bitboard of the attacked squares.
+	 */
+	public static long pawnAttacks(int _colour, int _square)
+	{
+		return PAWN_ATTACKS[_colour][_square];
+	}
+
+	/**
+	 * Returns the squares a pawn can move forward to.
+	 *
+	 * A pawn moves one square forward if it is empty, or two squares if it is still on its starting row and both
+	 * squares are empty.
+	 *
+	 * @param _colour The colour of the pawn.
+	 * @param _square The square the pawn is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the squares the pawn can move to.
+	 */
+	public static long pawnPushes(int _colour, int _square, long _occupancy)
+	{
+		long single = PAWN_PUSHES[_colour][_square] & ~_occupancy;
+
+		if (single == 0) 											// the pawn is blocked.
+		{
+			return 0L;
+		}
+
+		int startRow = _colour == Position.WHITE ? 6 : 1;
+
+		if (_square / 8 != startRow) 								// only pawns on their starting row can move two squares.
+		{
+			return single;
+		}
+
+		return single | (PAWN_PUSHES[_colour][Long.numberOfTrailingZeros(single)] & ~_occupancy);
+	}
+
+	/**
+	 * Returns the squares strictly between two squares.
+	 *
+	 * @param _a The first square.
+	 * @param _b The second square.
+	 * @return The bitboard of the squares between, or 0 if the squares are not on the same row, column or diagonal.
+	 */
+	public static long between(int _a, int _b)
+	{
+		return BETWEEN[_a][_b];
+	}
+
+	/**
+	 * Returns every square on the line through two squares, from one edge of the board to the other.
+	 *
+	 * @param _a The first square.
+	 * @param _b The second square.
+	 * @return The bitboard of the line, or 0 if the squares are not on the same row, column or diagonal.
+	 */
+	public static long line(int _a, int _b)
+	{
+		return LINE[_a][_b];
+	}
+
+	/**
+	 * Works out the squares reached by taking single steps from a square.
+	 *
+	 * @param _x The x coordinate of the square.
+	 * @param _y The y coordinate of the square.
+	 * @param _steps The x and y steps.
+	 * @return The bitboard of the squares that are on the board.
+	 */
+	private static long stepMask(int _x, int _y, int[][] _steps)
+	{
+		long mask = 0L;
+
+		for (int[] step : _steps)
+		{
+			if (onBoard(_x + step[0], _y + step[1]))
+			{
+				mask |= 1L << ((8 * (_y + step[1])) + _x + step[0]);
+			}
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Works out which squares could block a sliding piece.
+	 *
+	 * The last square on each ray is left out, as a piece there can never block anything behind it.
+	 *
+	 * @param _square The square the piece is on.
+	 * @param _directions The x and y steps the piece can slide in.
+	 * @return The bitboard of the squares that can block the piece.
+	 */
+	private static long blockerMask(int _square, int[][] _directions)
+	{
+		long mask = 0L;
+
+		for (int[] direction : _directions) 						// walking each ray.
+		{
+			int x = (_square % 8) + direction[0], y = (_square / 8) + direction[1];
+
+			while (onBoard(x + direction[0], y + direction[1])) 	// stopping one short of the edge.
+			{
+				mask |= 1L << ((8 * y) + x);
+
+				x += direction[0];
+				y += direction[1];
+			}
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Works out which squares a sliding piece attacks by walking each ray.
+	 *
+	 * This is slow and is only used to fill the tables.
+	 *
+	 * @param _square The square the piece is on.
+	 * @param _occupancy The bitboard of the pieces that block the rays.
+	 * @param _directions The x and y steps the piece can slide in.
+	 * @return The bitboard of the attacked squares.
+	 */
+	private static long slowAttacks(int _square, long _occupancy, int[][] _directions)
+	{
+		long attacks = 0L;
+
+		for (int[] direction : _directions) 						// walking each ray.
+		{
+			int x = (_square % 8) + direction[0], y = (_square / 8) + direction[1];
+
+			while (onBoard(x, y))
+			{
+				long bit = 1L << ((8 * y) + x);
+
+				attacks |= bit;
+
+				if ((_occupancy & bit) != 0) 						// the ray stops at the first piece.
+				{
+					break;
+				}
+
+				x += direction[0];
+				y += direction[1];
+			}
+		}
+
+		return attacks;
+	}
+
+	/**
+	 * Fills in the attack table of one square.
+	 *
+	 * Every subset of the blocker mask is hashed with the magic number and the attack set is stored at that index.
+	 *
+	 * @param _square The square the piece is on.
+	 * @param _mask The squares that can block the piece.
+	 * @param _magic The magic number of the square.
+	 * @param _shift How far the product is shifted.
+	 * @param _directions The x and y steps the piece can slide in.
+	 * @param _table The table to fill in.
+	 */
+	private static void fillTable(int _square, long _mask, long _magic, int _shift, int[][] _directions, long[] _table)
+	{
+		long subset = 0L;
+
+		do 															// enumerating every subset of the mask.
+		{
+			_table[(int) ((subset * _magic) >>> _shift)] = slowAttacks(_square, subset, _directions);
+
+			subset = (subset - _mask) & _mask;
+		}
+		while (subset != 0);
+	}
+
+	/**
+	 * Checks if a coordinate is on the board.
+	 *
+	 * @param _x The x coordinate.
+	 * @param _y The y coordinate.
+	 * @return Whether the coordinate is on the board.
+	 */
+	static boolean onBoard(int _x, int _y)
+	{
+		return _x >= 0 && _x < 8 && _y >= 0 && _y < 8;
+	}
+}
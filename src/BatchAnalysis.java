@@ -0,0 +1,318 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Analyses a file of positions on several threads, without the board.
+ *
+ * Each line of the input is a position in FEN or EPD. An EPD line has only the first four FEN fields, followed by
+ * operations such as bm (the best move) and id (the name of the position). Each position is searched to a fixed
+ * depth or for a fixed time, or just evaluated when the depth is 0.
+ *
+ * The positions are searched on a fork-join pool, with one search and transposition table for each thread. Every
+ * search starts from a cleared table, so the result of a position does not depend on which positions came before it
+ * or how many threads there are. The input is read as the work goes on, with only a bounded number of positions in
+ * flight, and the results are written in the order of the input as soon as each is ready.
+ */
+public class BatchAnalysis
+{
+	private static final int TABLE_MEGABYTES = 8;				// the size of each thread's transposition table.
+	private static final int IN_FLIGHT_PER_THREAD = 16;			// how many positions each thread may have waiting.
+
+	private int threads;										// holds the number of threads to analyse on.
+	private int depth;											// holds the depth to search, or 0 to only evaluate.
+	private long millis;										// holds the time to search each position for, or 0 for no limit.
+	private ThreadLocal<Search> searches = ThreadLocal.withInitial(() ->
+		new Search(new TranspositionTable(TABLE_MEGABYTES, TranspositionTable.Replacement.DEPTH_PREFERRED)));	// one search for each thread.
+	private ThreadLocal<Evaluation> evaluations = ThreadLocal.withInitial(Evaluation::new);	// one evaluation for each thread.
+
+	private long positions = 0;									// holds the number of positions analysed.
+	private long errors = 0;									// holds the number of lines that were not positions or failed.
+	private long bestMovesGiven = 0;							// holds the number of positions with a bm operation.
+	private long bestMovesFound = 0;							// holds the number of those where the search found a best move.
+	private long[] latencies = new long[1024];					// holds the time each position took in nanoseconds.
+
+	/**
+	 * Generates a new batch analysis.
+	 *
+	 * @param _threads The number of threads to analyse on.
+	 * @param _depth The depth to search each position to, or 0 to only evaluate.
+	 * @param _millis The time to search each position for in milliseconds, or 0 for no limit.
+	 */
+	public BatchAnalysis(int _threads, int _depth, long _millis)
+	{
+		threads = Math.max(1, _threads);
+		depth = _depth;
+		millis = _millis;
+	}
+
+	/**
+	 * Analyses every position in the input and writes one line for each to the output, in the same order.
+	 *
+	 * @param _in The positions, one on each line. Empty lines and lines starting with # are skipped.
+	 * @param _out Where the results are written.
+	 * @param _summary Where the throughput and latency figures are printed at the end.
+	 * @throws IOException If the input can not be read or the output written.
+	 */
+	public void run(BufferedReader _in, Writer _out, PrintStream _summary) throws IOException
+	{
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		Deque<ForkJoinTask<Result>> inFlight = new ArrayDeque<>();
+		long start = System.nanoTime();
+		long number = 0;
+
+		try
+		{
+			for (String line = _in.readLine(); line != null; line = _in.readLine()) 	// reading the positions as the work goes on.
+			{
+				String text = line.trim();
+
+				if (text.isEmpty() || text.startsWith("#"))
+				{
+					continue;
+				}
+
+				long index = ++number;
+
+				inFlight.add(pool.submit(() -> analyse(index, text)));
+
+				if (inFlight.size() >= threads * IN_FLIGHT_PER_THREAD) 			// waiting for the oldest result before reading more.
+				{
+					write(inFlight.poll().join(), _out);
+				}
+			}
+
+			while (!inFlight.isEmpty()) 											// writing the rest in order.
+			{
+				write(inFlight.poll().join(), _out);
+			}
+
+			_out.flush();
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+
+		printSummary(_summary, System.nanoTime() - start);
+	}
+
+	/**
+	 * Analyses one position.
+	 *
+	 * Runs on a thread of the pool.
+	 *
+	 * @param _index The number of the position in the input, from 1.
+	 * @param _line The line of the input.
+	 * @return The result.
+	 */
+	private Result analyse(long _index, String _line)
+	{
+		long start = System.nanoTime();
+		Result result = new Result();
+		StringBuilder text = new StringBuilder(128).append(_index);
+
+		try
+		{
+			String[] fields = _line.split("\\s+");
+			boolean fen = fields.length >= 6 && fields[4].matches("\\d+") && fields[5].matches("\\d+");
+			int fieldCount = fen ? 6 : Math.min(fields.length, 4);
+			Position position = Fen.parse(String.join(" ", Arrays.copyOf(fields, fieldCount)));
+			String operations = String.join(" ", Arrays.copyOfRange(fields, fieldCount, fields.length));
+			String id = operation(operations, "id");
+			String bestMoves = operation(operations, "bm");
+
+			text.append(' ').append(id != null ? id : Fen.toFen(position));
+
+			if (depth <= 0) 														// only the static score is wanted.
+			{
+				text.append(" eval ").append(evaluations.get().evaluate(position));
+			}
+			else
+			{
+				Search search = searches.get();
+
+				search.newGame();
+
+				int move = search.search(position, depth, millis, 0);
+
+				text.append(" bestmove ").append(move == Move.NONE ? "none" : San.toSan(position, move));
+				text.append(" score ").append(search.getBestScore()).append(" depth ").append(search.getCompletedDepth());
+				text.append(" nodes ").append(search.getNodes());
+
+				if (bestMoves != null) 												// checking the move against the expected best moves.
+				{
+					result.bestMoveChecked = true;
+					result.bestMoveFound = isOneOf(position, move, bestMoves);
+
+					text.append(" bm ").append(bestMoves).append(result.bestMoveFound ? " ok" : " miss");
+				}
+			}
+		}
+		catch (IllegalArgumentException e) 										// a line that is not a position.
+		{
+			result.error = true;
+			text.append(" error ").append(e.getMessage());
+		}
+		catch (RuntimeException e) 												// a position the engine failed on, which must not stop the rest of the batch.
+		{
+			result.error = true;
+			text.append(" error ").append(e);
+		}
+
+		result.nanos = System.nanoTime() - start;
+		result.line = text.append(" time ").append(result.nanos / 1000000).append(" ms").toString();
+
+		return result;
+	}
+
+	/**
+	 * Writes a result and adds it to the totals.
+	 *
+	 * Only called from the thread running the batch, so the totals need no locking.
+	 *
+	 * @param _result The result.
+	 * @param _out Where the result is written.
+	 * @throws IOException If the output can not be written.
+	 */
+	private void write(Result _result, Writer _out) throws IOException
+	{
+		_out.write(_result.line);
+		_out.write('\n');
+
+		if (_result.error)
+		{
+			errors++;
+
+			return;
+		}
+
+		if (positions == latencies.length)
+		{
+			latencies = Arrays.copyOf(latencies, latencies.length * 2);
+		}
+
+		latencies[(int) positions++] = _result.nanos;
+
+		if (_result.bestMoveChecked)
+		{
+			bestMovesGiven++;
+			bestMovesFound += _result.bestMoveFound ? 1 : 0;
+		}
+	}
+
+	/**
+	 * Prints the throughput and the spread of the time each position took.
+	 *
+	 * @param _out Where the figures are printed.
+	 * @param _nanos The time the whole batch took in nanoseconds.
+	 */
+	private void printSummary(PrintStream _out, long _nanos)
+	{
+		long[] sorted = Arrays.copyOf(latencies, (int) positions);
+		long total = 0;
+
+		Arrays.sort(sorted);
+
+		for (long latency : sorted)
+		{
+			total += latency;
+		}
+
+		_out.println("Positions: " + positions + " Errors: " + errors + " Threads: " + threads);
+
+		if (bestMovesGiven > 0)
+		{
+			_out.println("Best moves found: " + bestMovesFound + " of " + bestMovesGiven);
+		}
+
+		_out.printf("Time: %d ms Positions/sec: %.1f%n", _nanos / 1000000, positions * 1e9 / Math.max(_nanos, 1));
+
+		if (positions > 0)
+		{
+			_out.printf("Latency ms: min %.2f mean %.2f p50 %.2f p95 %.2f p99 %.2f max %.2f%n", sorted[0] / 1e6,
+				total / 1e6 / positions, percentile(sorted, 50) / 1e6, percentile(sorted, 95) / 1e6,
+				percentile(sorted, 99) / 1e6, sorted[sorted.length - 1] / 1e6);
+		}
+	}
+
+	/**
+	 * Returns a percentile of sorted values.
+	 *
+	 * @param _sorted The values, sorted from smallest.
+	 * @param _percent The percentile, from 0 to 100.
+	 * @return The value.
+	 */
+	private static long percentile(long[] _sorted, int _percent)
+	{
+		return _sorted[(int) Math.min(_sorted.length - 1, ((long) _sorted.length * _percent) / 100)];
+	}
+
+	/**
+	 * Finds the operand of an EPD operation.
+	 *
+	 * @param _operations The operations, each ending with a semicolon.
+	 * @param _opcode The opcode, such as bm.
+	 * @return The operand with any quotes removed, or null if the operation is not there.
+	 */
+	private static String operation(String _operations, String _opcode)
+	{
+		for (String operation : _operations.split(";"))
+		{
+			String trimmed = operation.trim();
+
+			if (trimmed.startsWith(_opcode + " "))
+			{
+				return trimmed.substring(_opcode.length() + 1).trim().replace("\"", "");
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Checks if a move is one of the moves in a list written in SAN.
+	 *
+	 * @param _position The position the moves are played in.
+	 * @param _move The move.
+	 * @param _moves The moves, separated by spaces.
+	 * @return Whether the move is in the list.
+	 */
+	private static boolean isOneOf(Position _position, int _move, String _moves)
+	{
+		for (String san : _moves.split("\\s+"))
+		{
+			try
+			{
+				if (San.parse(_position, san) == _move)
+				{
+					return true;
+				}
+			}
+			catch (IllegalArgumentException e)
+			{
+				// a move that is not legal here can not match.
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Holds the result of analysing one position.
+	 */
+	private static final class Result
+	{
+		private String line;									// holds the line written to the output.
+		private long nanos;										// holds the time the analysis took.
+		private boolean error;									// set if the line was not a position or failed.
+		private boolean bestMoveChecked;						// set if the line gave best moves to check.
+		private boolean bestMoveFound;							// set if the search found one of them.
+	}
+}
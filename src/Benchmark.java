@@ -0,0 +1,218 @@
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Times the hot paths of the game.
+ *
+ * Each benchmark is run for a number of warm up rounds, so the JIT compiler has finished with it, and then for a
+ * number of measured rounds. The result of every call is added up and printed, so the work cannot be optimised
+ * away.
+ *
+ * This harness needs nothing but the JDK. The benchmarks module of the Maven build runs the same work under JMH,
+ * which forks a fresh JVM for each benchmark and reports the error of each result.
+ */
+public class Benchmark
+{
+	private static final int WARMUP_ROUNDS = 5;					// the number of rounds run before measuring.
+	private static final int MEASURED_ROUNDS = 5;				// the number of rounds that are measured.
+	private static final long ROUND_NANOS = 200000000L;			// how long each round runs for.
+	private static final String GENERATE_ALL = "generate all moves";	// the benchmark also run with the metrics on.
+
+	private PrintStream out;									// where the results are printed.
+	private long sink;											// holds the sum of the results, so no work is thrown away.
+
+	/**
+	 * Generates a new benchmark runner.
+	 *
+	 * @param _out Where the results are printed.
+	 */
+	public Benchmark(PrintStream _out)
+	{
+		out = _out;
+	}
+
+	/**
+	 * Runs every benchmark and prints the results.
+	 *
+	 * @param _out Where the results are printed.
+	 */
+	public static void runAll(PrintStream _out)
+	{
+		Benchmark benchmark = new Benchmark(_out);
+
+		for (Map.Entry<String, LongSupplier> workload : workloads().entrySet())
+		{
+			benchmark.run(workload.getKey(), workload.getValue());
+
+			if (workload.getKey().equals(GENERATE_ALL))
+			{
+				boolean metrics = Metrics.isEnabled();
+
+				Metrics.setEnabled(true); 									// the cost of counting, which is only paid while the metrics are on.
+				benchmark.run(GENERATE_ALL + ", metrics on", workload.getValue());
+				Metrics.setEnabled(metrics);
+			}
+		}
+
+		_out.println("(checksum " + benchmark.sink + ")");
+	}
+
+	/**
+	 * Returns the work each benchmark times, by name.
+	 *
+	 * The JMH benchmarks in the benchmarks module time the same work, so both give comparable figures. The work of one
+	 * call to this method shares its move buffer, so it must only be run by one thread.
+	 *
+	 * @return The work of each benchmark, in the order they are run.
+	 */
+	public static Map<String, LongSupplier> workloads()
+	{
+		Map<String, LongSupplier> workloads = new LinkedHashMap<>();
+		Position start = Position.startPosition();
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+		String[] names = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+		int[] squares = {52, 57, 61, 63, 59, 60};					// a square holding each piece type in the start position.
+		Position open = Fen.parse("4k3/8/8/3q4/8/8/8/4K3 b"); 		// sliding pieces are timed on an open board as well.
+
+		for (int i = 0; i < names.length; i++) 					// generating the moves of one piece of each type.
+		{
+			int square = squares[i];
+
+			workloads.put("generate " + names[i], () -> MoveGenerator.generateMoves(start, square, buffer));
+		}
+
+		workloads.put("generate queen open board", () -> MoveGenerator.generateMoves(open, 27, buffer));
+
+		workloads.put(GENERATE_ALL, () -> MoveGenerator.generateMoves(start, buffer));
+
+		int count = MoveGenerator.generateMoves(start, buffer);
+		int[] startMoves = new int[count];
+
+		System.arraycopy(buffer, 0, startMoves, 0, count);
+
+		workloads.put("make and unmake move", () ->
+		{
+			long total = 0;
+
+			for (int move : startMoves) 						// playing and taking back each move from the start.
+			{
+				start.makeMove(move);
+
+				total += start.getOccupancy();
+
+				start.unmakeMove(move);
+			}
+
+			return total;
+		});
+
+		Evaluation evaluation = new Evaluation();
+		Position middlegame = Fen.parse("r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP1B1PPP/R2QKB1R w KQ - 0 8");
+
+		workloads.put("evaluate middle game", () -> evaluation.evaluate(middlegame));
+
+		ChessSquare square = new ChessSquare(0, squareType.EMPTYSQUARE);
+		squareType[] types = squareType.values();
+
+		workloads.put("update square image", () ->
+		{
+			for (squareType type : types) 						// drawing every type of square.
+			{
+				square.setSquareType(type);
+			}
+
+			return square.getButton().getIcon().getIconWidth();
+		});
+
+		return workloads;
+	}
+
+	/**
+	 * Times a fixed depth search on 1, 2, 4, 8 and 16 threads and prints how the speed scales.
+	 *
+	 * @param _out Where the results are printed.
+	 * @param _depth The depth searched on each number of threads.
+	 */
+	public static void runScaling(PrintStream _out, int _depth)
+	{
+		Position position = Fen.parse("r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w");
+		double baseline = 0;
+
+		_out.println("cores available: " + Runtime.getRuntime().availableProcessors());
+
+		for (int threads = 1; threads <= 16; threads *= 2) 		// doubling the threads each time.
+		{
+			ParallelSearch search = new ParallelSearch(new TranspositionTable(64, TranspositionTable.Replacement.DEPTH_PREFERRED), threads);
+
+			long start = System.nanoTime();
+
+			search.search(position, _depth, 0, 0);
+
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			search.shutdown();
+
+			if (threads == 1)
+			{
+				baseline = seconds;
+			}
+
+			_out.printf("%2d threads: depth %d in %8.3f s, %10d nodes, %10.0f nodes/s, speedup %.2f%n",
+				threads, _depth, seconds, search.getNodes(), search.getNodes() / seconds, baseline / seconds);
+		}
+	}
+
+	/**
+	 * Times one benchmark and prints the time taken by each call.
+	 *
+	 * @param _name The name of the benchmark.
+	 * @param _work The work being timed, which returns a value that is added to the checksum.
+	 */
+	public void run(String _name, LongSupplier _work)
+	{
+		for (int i = 0; i < WARMUP_ROUNDS; i++) 				// warming up the JIT compiler.
+		{
+			round(_work);
+		}
+
+		double best = Double.MAX_VALUE, total = 0;
+
+		for (int i = 0; i < MEASURED_ROUNDS; i++) 				// measuring the time of each call.
+		{
+			double nanos = round(_work);
+
+			best = Math.min(best, nanos);
+			total += nanos;
+		}
+
+		out.printf("%-28s %12.1f ns/op (best %.1f)%n", _name, total / MEASURED_ROUNDS, best);
+	}
+
+	/**
+	 * Runs the work repeatedly for one round.
+	 *
+	 * @param _work The work being timed.
+	 * @return The average time of one call in nanoseconds.
+	 */
+	private double round(LongSupplier _work)
+	{
+		long calls = 0, start = System.nanoTime(), now;
+
+		do 														// calling in batches, so reading the clock does not dominate.
+		{
+			for (int i = 0; i < 64; i++)
+			{
+				sink += _work.getAsLong();
+			}
+
+			calls += 64;
+			now = System.nanoTime();
+		}
+		while (now - start < ROUND_NANOS);
+
+		return (double) (now - start) / calls;
+	}
+}
@@ -1,19 +1,59 @@
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.*;
 
 
 /**
  * Holds the information for the chess board.
  * This holds the information about the board. Holds the array of buttons and which buttons have been selected.
  * It also creates the frame and design of the game, which will display all the squares.
+ * 
+ * Working out moves and searching for the computer's move is done on a background thread, on a copy of the
+ * position, so the board stays responsive. The results are passed back to the event dispatch thread, which owns
+ * the position and the squares, and results that were asked for before the latest click are thrown away.
+ * 
+ * The sides take turns, and only the pieces of the side to move can be selected. The title of the frame shows whose
+ * move it is and whether the game has ended.
+ * 
+ * Every move is kept in a game tree, so the game can be gone back over with the arrow keys: left takes a move back,
+ * right plays it again, home and end go to the start and the end of the line, and down goes to the next variation.
+ * Playing a different move from an earlier position starts a new variation rather than losing the old line.
  */
 public class ChessBoard implements ActionListener
 {
+	private GameTree tree;								// holds every move played, with the variations.
+	private Position position;							// holds the pieces on the board, the squares are drawn from this, owned by the tree.
 	private ChessSquare[] board;						// holds all the buttons used in the chess board.
+	private int[] moves = new int[0];					// holds the moves of the selected piece.
+	private JFrame frame;								// holds the window the board is shown in.
+	private boolean gameOver = false;					// set once the game has ended, after which clicks are ignored.
+	private long selectedSquares = 0L;					// holds the bitboard of the highlighted squares, drawn over the pieces.
+	private Search engine;								// holds the computer opponent, or null when two people are playing.
+	private OpeningBook book;							// holds the book the computer plays its first moves from, or null.
+	private Random bookRandom = new Random();			// picks between the book moves, so the computer varies its openings.
+	private int computerColour = Position.BLACK;		// holds the colour the computer plays.
+	private long computerMillis = 1000;					// holds how long the computer thinks for each move.
+	private static final String SQUARE_KEY = "square";	// the client property holding each button's square index.
+	
 	private int intSelectedLoction = -1;				// holds the index of the square that has been pressed.
 	private int intOriginal = -1;						// holds the index of the square being moved to.
 	
+	private ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> 
+	{
+		Thread thread = new Thread(runnable, "chess-worker");	// the thread the rules and the computer run on.
+		
+		thread.setDaemon(true);
+		
+		return thread;
+	});
+	private Future<?> pending;							// holds the background task that is running, if any.
+	private int requestNumber = 0;						// counts the clicks, so results of older clicks can be thrown away.
+	private boolean computerThinking = false;			// set while the computer is searching for its move.
+	private long clickedAt = 0L;						// holds the System.nanoTime of the click being answered, or 0 if it is not timed.
+	
 	/**
 	 *Generates a new instance of a chess board.
 	 *
@@ -21,53 +61,101 @@ public class ChessBoard implements ActionListener
 	 */
 	public ChessBoard()
 	{
-		setupBoard();
+		this(false);
+	}
+	
+	/**
+	 *Generates a new instance of a chess board, optionally playing against the computer.
+	 *
+	 *@param computerOpponent Whether the computer plays the black pieces.
+	 */
+	public ChessBoard(boolean computerOpponent)
+	{
+		this(computerOpponent, Position.startPosition());
+	}
+	
+	/**
+	 *Generates a new instance of a chess board, starting from any position.
+	 *
+	 *@param computerOpponent Whether the computer plays the black pieces.
+	 *@param start The position to start from, which is copied.
+	 */
+	public ChessBoard(boolean computerOpponent, Position start)
+	{
+		this(computerOpponent, start, null);
+	}
+	
+	/**
+	 *Generates a new instance of a chess board, starting from any position, with the computer playing from a book.
+	 *
+	 *@param computerOpponent Whether the computer plays the black pieces.
+	 *@param start The position to start from, which is copied.
+	 *@param openingBook The book the computer plays from while the position is in it, or null for none.
+	 */
+	public ChessBoard(boolean computerOpponent, Position start, OpeningBook openingBook)
+	{
+		book = openingBook;
+		
+		if (computerOpponent)
+		{
+			engine = new Search(new TranspositionTable(64, TranspositionTable.Replacement.DEPTH_PREFERRED));
+		}
+		
+		setupBoard(start);
 		
 		setupFrame();
+		
+		computerMove(); 										// the computer starts if it is its turn.
 	}
 
 	/**
 	 * Sets up the board.
 	 * 
 	 * Makes sure the the chess pieces have the right starting location. Making the rest of the squares empty.
+	 * 
+	 * @param start The position to start from.
 	 */
-	private void setupBoard()
+	private void setupBoard(Position start)
 	{
+		tree = new GameTree(start); 									// the pieces are held in the headless position of the tree.
+		position = tree.getPosition();
+		
 		board = new ChessSquare[64]; 									// creating the 8x8 grid.
 		
-		for (int i = 0; i < 64; i++) 									// looping the height elements.
+		for (int i = 0; i < 64; i++) 									// looping through all the squares.
 		{
-			if (i > 55) 												// if on the final row.
-			{
-				if (i == 56|| i == 63) 									// if the end columns, must be a rook.
-				{
-					board[i] = new ChessSquare(i, squareType.ROOK);
-				}
-				if (i == 57|| i == 62) 									// if one in from the ends, must be a knight.
-				{
-					board[i] = new ChessSquare(i, squareType.KNIGHT);
-				}
-				if (i == 58|| i == 61) 									// if two in from the ends, must be a bishop
-				{
-					board[i] = new ChessSquare(i, squareType.BISHOP);
-				}
-				if (i == 59) 											// if four in from the end, must be a queen.
-				{
-					board[i] = new ChessSquare(i, squareType.QUEEN);
-				}
-				if (i == 60) 											// if three in from the end, must be a king.
-				{
-					board[i] = new ChessSquare(i, squareType.KING);
-				}
-			}
-			else if (i > 47) 											// if on the line is on the row of of pawns.
-			{
-				board[i] = new ChessSquare(i, squareType.PAWN);
-			}
-			else 														// else fill with empty squares.
-			{
-				board[i] = new ChessSquare(i, squareType.EMPTYSQUARE);
-			}			
+			board[i] = new ChessSquare(i, position.getSquareType(i));	// each square shows the piece in the position.
+			board[i].setBlack(position.getColourAt(i) == Position.BLACK);
+		}
+	}
+	
+	/**
+	 * Returns the position on the board as a FEN string, so a game can be saved and opened again later.
+	 * 
+	 * @return The FEN string.
+	 */
+	public String getFen()
+	{
+		return Fen.toFen(position);
+	}
+	
+	/**
+	 * Updates some of the squares to show the pieces in the position and the highlight overlay.
+	 * 
+	 * All the changes are made in one pass, and only squares that now show something different are redrawn.
+	 * 
+	 * @param squares The bitboard of the squares that may have changed.
+	 */
+	private void updateSquares(long squares)
+	{
+		while (squares != 0) 											// looping through the squares that may have changed.
+		{
+			int i = Long.numberOfTrailingZeros(squares);
+			
+			board[i].update(position.getSquareType(i), position.getColourAt(i) == Position.BLACK,
+				(selectedSquares & (1L << i)) != 0); 							// the square redraws once, and only if its piece, colour or highlight has changed.
+			
+			squares &= squares - 1;
 		}
 	}
 	
@@ -76,9 +164,9 @@ public class ChessBoard implements ActionListener
 	 */
 	private void setupFrame() 
 	{
-		JFrame frame = new JFrame(); 									// create a frame for the chess game.
+		frame = new JFrame(); 											// create a frame for the chess game.
 		
-		frame.setTitle("Chess"); 										// setting the default values for the frame.
+		updateTitle(); 													// setting the default values for the frame.
 		frame.setSize(44*8, 44*8);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		
@@ -90,53 +178,328 @@ public class ChessBoard implements ActionListener
 		{
 			gridPanel.add(board[i].getButton());						// add the button to the grid pattern.
 			
+			board[i].getButton().putClientProperty(SQUARE_KEY, i);		// the button knows its own square, so clicks need no search.
 			board[i].getButton().addActionListener(this);				// adding the button to the action listener.
 		}
 		
 		gridPanel.setLayout(gridLayout); 								// apply the grid layout.
 		
+		gridPanel.addComponentListener(new ComponentAdapter() 		// scaling the icons when the board changes size.
+		{
+			public void componentResized(ComponentEvent e)
+			{
+				int size = Math.min(gridPanel.getWidth(), gridPanel.getHeight()) / 8;
+				
+				for (int i = 0; i < 64; i++)
+				{
+					board[i].setIconSize(size);
+				}
+			}
+		});
+		
+		bindKey(gridPanel, KeyEvent.VK_LEFT, "back", tree::undo); 		// going back over the game with the arrow keys.
+		bindKey(gridPanel, KeyEvent.VK_RIGHT, "forward", tree::redo);
+		bindKey(gridPanel, KeyEvent.VK_HOME, "start", tree::goToStart);
+		bindKey(gridPanel, KeyEvent.VK_END, "end", tree::goToEnd);
+		bindKey(gridPanel, KeyEvent.VK_DOWN, "variation", tree::nextVariation);
+		
 		frame.setContentPane(gridPanel);								// applying to the content to the frame.
 		
 		frame.setVisible(true); 										// making the frame visible
 	}
 	
 	/**
-	 * Find the index of the square.
+	 * Binds a key to a step through the game tree, wherever the focus is in the frame.
 	 * 
-	 * @param e The event sent to the listener.
+	 * @param panel The panel the key is bound on.
+	 * @param key The key code.
+	 * @param name The name of the action.
+	 * @param step The step, which moves the tree to another node.
 	 */
-	private void findButtonLocation(ActionEvent e)
+	private void bindKey(JPanel panel, int key, String name, Runnable step)
 	{
-		for(int i = 0; i < 64; i++) 									// looping the through all the squares.
+		panel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key, 0), name);
+		panel.getActionMap().put(name, new AbstractAction()
 		{
-			if (e.getSource() == board[i].getButton()) 					// getting right square information.
+			private static final long serialVersionUID = 1L;
+			
+			public void actionPerformed(ActionEvent e)
 			{
-				intSelectedLoction = i; 								// saving the index for later use.
-				break; 													// ending the loop once the square has been found.
+				navigate(step);
 			}
+		});
+	}
+	
+	/**
+	 * Moves to another position of the game tree and redraws the board.
+	 * 
+	 * Ignored while the computer is thinking, as its search is of the position on the board. The computer does not move
+	 * after a step, so either side can be played from an earlier position; it answers once it is its turn after a move.
+	 * 
+	 * @param step The step, which moves the tree to another node.
+	 */
+	private void navigate(Runnable step)
+	{
+		if (computerThinking)
+		{
+			return;
 		}
+		
+		cancelPending(); 																// the moves of a selected piece are no longer wanted.
+		
+		step.run();
+		
+		moves = new int[0];
+		selectedSquares = 0L;
+		intOriginal = -1;
+		
+		updateSquares(-1L); 															// only the squares that changed are redrawn.
+		
+		updateTitle();
+	}
+	
+	/**
+	 * Find the index of the square.
+	 * 
+	 * @param e The event sent to the listener.
+	 */
+	private void findButtonLocation(ActionEvent e)
+	{
+		intSelectedLoction = (Integer) ((JComponent) e.getSource()).getClientProperty(SQUARE_KEY); 	// saving the index for later use.
 	}
 	
 	/**
 	 * Clear all the selected square back to empty squares.
+	 * 
+	 * Only the squares that were selected are redrawn.
 	 */
 	private void clearSquares()
 	{
-		for(int i = 0; i < 64; i++) 									// looping the through all the squares.
+		long cleared = selectedSquares;
+		
+		selectedSquares = 0L;
+		moves = new int[0];
+		
+		updateSquares(cleared); 										// redraw the selected squares from the position.
+	}
+	
+	/**
+	 * Displays all the valid squares depending on the selected square.
+	 */
+	private void showValid()
+	{		
+		Position snapshot = new Position(position); 									// the worker reads its own copy of the position.
+		int square = intSelectedLoction, request = requestNumber;
+		
+		pending = worker.submit(() -> 
+		{
+			int[] buffer = new int[MoveGenerator.MAX_MOVES];
+			int[] found = Arrays.copyOf(buffer, MoveGenerator.generateMoves(snapshot, square, buffer)); 	// generate the moves of the selected piece.
+			
+			SwingUtilities.invokeLater(() -> showSelected(found, request)); 			// the squares are changed on the event dispatch thread.
+		});
+	}
+	
+	/**
+	 * Shows the squares the selected piece can move to.
+	 * 
+	 * @param found The legal moves of the selected piece.
+	 * @param request The click the squares were worked out for.
+	 */
+	private void showSelected(int[] found, int request)
+	{
+		if (request != requestNumber) 													// the user has clicked again since.
+		{
+			return;
+		}
+		
+		long targets = 0L;
+		
+		for (int move : found) 															// looping through the moves.
+		{
+			targets |= 1L << Move.getTo(move);
+		}
+		
+		long changed = selectedSquares ^ targets; 										// only the squares whose highlight changes.
+		
+		moves = found;
+		selectedSquares = targets;
+		
+		updateSquares(changed); 														// swapping the highlight mask in one batch.
+		
+		timeClick();
+	}
+	
+	/**
+	 * Records the time from the click being answered to the board being drawn, if it is being timed.
+	 * 
+	 * Called once the squares have been changed. The repaint they asked for is already queued on the event dispatch
+	 * thread, so the time is read after it has run.
+	 */
+	private void timeClick()
+	{
+		long clicked = clickedAt;
+		
+		clickedAt = 0L;
+		
+		if (clicked != 0L)
+		{
+			SwingUtilities.invokeLater(() -> Metrics.countClick(System.nanoTime() - clicked));
+		}
+	}
+	
+	/**
+	 * Cancels the background task of an earlier click.
+	 */
+	private void cancelPending()
+	{
+		requestNumber++; 																// results of earlier clicks are now out of date.
+		clickedAt = 0L; 																// and are not timed.
+		
+		if (pending != null)
 		{
-			if (board[i].getSquareType() == squareType.SELECTEDSQUARE) 	// if the square is selected then clear it to empty.
+			pending.cancel(false);
+			pending = null;
+		}
+	}
+	
+	/**
+	 * Lets the computer search for a move on the background thread, if it is playing and it is its turn.
+	 * 
+	 * Clicks are ignored until the computer has played.
+	 */
+	private void computerMove()
+	{
+		if (engine == null || gameOver || position.getSideToMove() != computerColour)
+		{
+			return;
+		}
+		
+		Position snapshot = new Position(position); 							// the engine searches its own copy of the position.
+		
+		computerThinking = true;
+		
+		pending = worker.submit(() -> 
+		{
+			int move = book != null ? book.pickMove(snapshot, bookRandom) : Move.NONE; 	// a book move costs almost nothing.
+			
+			if (move == Move.NONE)
 			{
-				board[i].clearSelected();
+				move = engine.search(snapshot, Search.MAX_PLY, computerMillis, 0); 		// searching for the computer's move.
 			}
+			
+			int chosen = move;
+			
+			SwingUtilities.invokeLater(() -> playComputerMove(chosen));
+		});
+	}
+	
+	/**
+	 * Plays the move the computer found.
+	 * 
+	 * @param move The computer's move, or Move.NONE if it has no moves.
+	 */
+	private void playComputerMove(int move)
+	{
+		computerThinking = false;
+		
+		if (move != Move.NONE)
+		{
+			playMove(move);
 		}
 	}
 	
 	/**
-	 * Displays all the valid squares depending on the selected square.
+	 * Plays a move on the board and passes the turn to the other side.
+	 * 
+	 * Castling and en passant change squares other than the two the piece moves between, so every square is checked,
+	 * but only the squares that now show something different are redrawn.
+	 * 
+	 * @param move The legal move to play.
 	 */
-	private void showValid()
-	{		
-		board[intSelectedLoction].validSquares(board); 					//Displays all the valid squares depending on the selected square.
+	private void playMove(int move)
+	{
+		tree.play(move); 																// the tree plays the move on the position and remembers it.
+		
+		moves = new int[0];
+		selectedSquares = 0L;
+		intOriginal = -1;
+		
+		updateSquares(-1L);
+		
+		updateTitle();
+		
+		timeClick();
+	}
+	
+	/**
+	 * Shows whose move it is in the title of the frame, or how the game ended.
+	 */
+	private void updateTitle()
+	{
+		String side = position.getSideToMove() == Position.WHITE ? "White" : "Black";
+		String other = position.getSideToMove() == Position.WHITE ? "Black" : "White";
+		boolean noMoves = MoveGenerator.generateMoves(position, new int[MoveGenerator.MAX_MOVES]) == 0;
+		
+		gameOver = noMoves || position.isGameDrawn();
+		
+		if (noMoves && position.isInCheck())
+		{
+			frame.setTitle("Chess - Checkmate, " + other + " wins");
+		}
+		else if (noMoves)
+		{
+			frame.setTitle("Chess - Stalemate");
+		}
+		else if (gameOver)
+		{
+			frame.setTitle("Chess - Draw");
+		}
+		else
+		{
+			frame.setTitle("Chess - " + side + " to move" + (position.isInCheck() ? ", check" : ""));
+		}
+	}
+	
+	/**
+	 * Finds the move of the selected piece to a square, asking which piece to promote to if there is a choice.
+	 * 
+	 * @param target The square the piece moves to.
+	 * @return The move, or Move.NONE if the user closed the promotion choice.
+	 */
+	private int chooseMove(int target)
+	{
+		String[] names = {"Queen", "Rook", "Bishop", "Knight"};
+		int[] promotions = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT};
+		int promotion = 0;
+		
+		for (int move : moves) 																// a promotion has one move for each piece.
+		{
+			if (Move.getTo(move) == target && Move.getPromotion(move) != 0)
+			{
+				int choice = JOptionPane.showOptionDialog(frame, "Promote to", "Promotion", JOptionPane.DEFAULT_OPTION, 
+					JOptionPane.QUESTION_MESSAGE, null, names, names[0]);
+				
+				if (choice < 0)
+				{
+					return Move.NONE;
+				}
+				
+				promotion = promotions[choice];
+				
+				break;
+			}
+		}
+		
+		for (int move : moves) 																// finding the move to the square.
+		{
+			if (Move.getTo(move) == target && Move.getPromotion(move) == promotion)
+			{
+				return move;
+			}
+		}
+		
+		return Move.NONE;
 	}
 	
 	/* 
@@ -146,43 +509,42 @@ public class ChessBoard implements ActionListener
 	 */
 	public void actionPerformed(ActionEvent e)
 	{		
-		if (intSelectedLoction == -1)
+		if (computerThinking || gameOver) 													// waiting for the computer to play, or the game has ended.
 		{
-			findButtonLocation(e); 															// find the index of the square being looked at.
+			return;
+		}
+		
+		long clicked = Metrics.isEnabled() ? System.nanoTime() : 0L;
+		
+		findButtonLocation(e); 																// find the index of the square being looked at.
+		
+		if (intOriginal != -1 && (selectedSquares & (1L << intSelectedLoction)) != 0) 	// if the square is a valid location.
+		{
+			cancelPending();
 			
-			if (board[intSelectedLoction].getSquareType() == squareType.EMPTYSQUARE || board[intSelectedLoction].getSquareType() == squareType.SELECTEDSQUARE) 
-																							// if the user selected a square without a piece in it.
-			{
-				intSelectedLoction = -1; 													// returning the selected value back to default.
-			}
-			else 																			// if the user selected a piece.
+			int move = chooseMove(intSelectedLoction);
+			
+			if (move != Move.NONE)
 			{
-				intOriginal = intSelectedLoction;											// setting the new original selected to be used later.
+				clickedAt = clicked;
+				
+				playMove(move); 															// move the piece and redraw the changed squares in one batch.
 				
-				showValid(); 																// displays all the valid squares.
+				computerMove(); 															// letting the computer reply.
 			}
 		}
-		else
-		{			
-			findButtonLocation(e); 															// find the index of the square being looked at.
+		else if (position.getColourAt(intSelectedLoction) == position.getSideToMove()) 	// if the user selected a piece of the side to move.
+		{
+			cancelPending(); 																// the moves of an earlier piece are no longer wanted.
 			
-			if (board[intSelectedLoction].getSquareType() == squareType.SELECTEDSQUARE) 	// if the square is a valid location.
-			{
-				board[intOriginal].moveTo(board[intSelectedLoction]); 						// move the original square to the new square.
-				
-				intSelectedLoction = -1; 													// returning the selected value back to default.
-				
-				clearSquares(); 															// returning the selected value back to default.
-			}			
-			else if (board[intSelectedLoction].getSquareType() != squareType.EMPTYSQUARE)
-			{
-				intSelectedLoction = -1; 													// returning the selected value back to default.
-				
-				clearSquares(); 															// returning the selected value back to default.
-				
-				actionPerformed(e); 														// calling the method again with the new square selected.
-				
-			}			
+			clearSquares();
+			
+			intOriginal = intSelectedLoction;												// setting the new original selected to be used later.
+			clickedAt = clicked; 															// timed until the moves it asked for are drawn.
+			
+			showValid(); 																	// displays all the valid squares.
 		}
+		
+		intSelectedLoction = -1; 															// returning the selected value back to default.
 	}
 }
@@ -0,0 +1,334 @@
+/**
+ * Judges how good a position is without searching.
+ *
+ * The score is in centipawns, where a pawn is worth 100, and is from the point of view of the side to move, so a
+ * positive score means the side to move is ahead.
+ *
+ * Every term has a middle game and an end game value, and the two are blended by how much material is left, so a
+ * king is kept safe while the queens are on and walks to the centre once they are gone. The terms are material and
+ * piece-square tables, the mobility of the knights, bishops, rooks and queens, the safety of each king, and the pawn
+ * structure.
+ *
+ * Material and the piece-square tables are kept up to date by Position as each piece is put down or taken off, so
+ * they cost nothing here. The pawns change far less often than the other pieces, so the pawn structure is kept in a
+ * small table keyed by the pawn hash, and is usually found there rather than worked out again. The table belongs to
+ * this object, so each searching thread must have its own evaluation.
+ */
+public final class Evaluation
+{
+	public static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};		// the value of each piece type, the king is never traded.
+
+	static final int[][] MIDDLEGAME = new int[12][64];			// the material and square value of each piece on each square, negative for black.
+	static final int[][] ENDGAME = new int[12][64];				// the same in the end game.
+	static final int[] PHASE = {0, 1, 1, 2, 4, 0, 0, 1, 1, 2, 4, 0};	// how much each piece counts towards the middle game.
+	static final int TOTAL_PHASE = 24;							// the phase of the starting position, and of any position with all the pieces.
+
+	private static final int[] MIDDLEGAME_VALUES = {100, 320, 330, 500, 900, 0};	// the value of each piece type in each phase.
+	private static final int[] ENDGAME_VALUES = {120, 300, 320, 530, 950, 0};
+
+	private static final int[][] MIDDLEGAME_SQUARES = 			// the value of each piece type on each square for white, from a8 to h1.
+	{
+		{
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			 50,  50,  50,  50,  50,  50,  50,  50,
+			 10,  10,  20,  30,  30,  20,  10,  10,
+			  5,   5,  10,  25,  25,  10,   5,   5,
+			  0,   0,   0,  20,  20,   0,   0,   0,
+			  5,  -5, -10,   0,   0, -10,  -5,   5,
+			  5,  10,  10, -20, -20,  10,  10,   5,
+			  0,   0,   0,   0,   0,   0,   0,   0
+		},
+		{
+			-50, -40, -30, -30, -30, -30, -40, -50,
+			-40, -20,   0,   0,   0,   0, -20, -40,
+			-30,   0,  10,  15,  15,  10,   0, -30,
+			-30,   5,  15,  20,  20,  15,   5, -30,
+			-30,   0,  15,  20,  20,  15,   0, -30,
+			-30,   5,  10,  15,  15,  10,   5, -30,
+			-40, -20,   0,   5,   5,   0, -20, -40,
+			-50, -40, -30, -30, -30, -30, -40, -50
+		},
+		{
+			-20, -10, -10, -10, -10, -10, -10, -20,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-10,   0,   5,  10,  10,   5,   0, -10,
+			-10,   5,   5,  10,  10,   5,   5, -10,
+			-10,   0,  10,  10,  10,  10,   0, -10,
+			-10,  10,  10,  10,  10,  10,  10, -10,
+			-10,   5,   0,   0,   0,   0,   5, -10,
+			-20, -10, -10, -10, -10, -10, -10, -20
+		},
+		{
+			  0,   0,   0,   0,   0,   0,   0,   0,
+			  5,  10,  10,  10,  10,  10,  10,   5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			 -5,   0,   0,   0,   0,   0,   0,  -5,
+			  0,   0,   0,   5,   5,   0,   0,   0
+		},
+		{
+			-20, -10, -10,  -5,  -5, -10, -10, -20,
+			-10,   0,   0,   0,   0,   0,   0, -10,
+			-10,   0,   5,   5,   5,   5,   0, -10,
+			 -5,   0,   5,   5,   5,   5,   0,  -5,
+			  0,   0,   5,   5,   5,   5,   0,  -5,
+			-10,   5,   5,   5,   5,   5,   0, -10,
+			-10,   0,   5,   0,   0,   0,   0, -10,
+			-20, -10, -10,  -5,  -5, -10, -10, -20
+		},
+		{
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-30, -40, -40, -50, -50, -40, -40, -30,
+			-20, -30, -30, -40, -40, -30, -30, -20,
+			-10, -20, -20, -20, -20, -20, -20, -10,
+			 20,  20,   0,   0,   0,   0,  20,  20,
+			 20,  30,  10,   0,   0,  10,  30,  20
+		}
+	};
+	private static final int[] ENDGAME_PAWN_SQUARES = 			// pawns are worth more the nearer they are to promoting.
+	{
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		 80,  80,  80,  80,  80,  80,  80,  80,
+		 50,  50,  50,  50,  50,  50,  50,  50,
+		 30,  30,  30,  30,  30,  30,  30,  30,
+		 15,  15,  15,  15,  15,  15,  15,  15,
+		  5,   5,   5,   5,   5,   5,   5,   5,
+		  0,   0,   0,   0,   0,   0,   0,   0,
+		  0,   0,   0,   0,   0,   0,   0,   0
+	};
+	private static final int[] ENDGAME_KING_SQUARES = 			// the king belongs in the centre once the danger is past.
+	{
+		-50, -40, -30, -20, -20, -30, -40, -50,
+		-30, -20, -10,   0,   0, -10, -20, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  30,  40,  40,  30, -10, -30,
+		-30, -10,  20,  30,  30,  20, -10, -30,
+		-30, -30,   0,   0,   0,   0, -30, -30,
+		-50, -30, -30, -30, -30, -30, -30, -50
+	};
+
+	private static final int[] MOBILITY_CENTRE = {0, 4, 7, 7, 14, 0};			// the number of moves worth nothing, for each piece type.
+	private static final int[] MIDDLEGAME_MOBILITY = {0, 4, 5, 2, 1, 0};		// the value of each move above or below that.
+	private static final int[] ENDGAME_MOBILITY = {0, 4, 5, 4, 2, 0};
+	private static final int[] KING_ATTACK_UNITS = {0, 2, 2, 3, 5, 0};			// how dangerous each piece attacking the king's squares is.
+	private static final int MAX_KING_DANGER = 400;				// the most a king can lose for being attacked.
+	private static final int SHIELD_NEAR = 10;					// the value of a pawn just in front of the king in the middle game.
+	private static final int SHIELD_FAR = 5;					// the value of a pawn two rows in front of the king.
+
+	private static final int[] MIDDLEGAME_PASSED = {0, 5, 10, 20, 35, 60, 100, 0};		// the bonus of a passed pawn by how many rows it has moved.
+	private static final int[] ENDGAME_PASSED = {0, 10, 20, 40, 70, 120, 180, 0};
+	private static final int MIDDLEGAME_DOUBLED = -10;			// the value of each pawn behind another on its column.
+	private static final int ENDGAME_DOUBLED = -20;
+	private static final int MIDDLEGAME_ISOLATED = -10;			// the value of a pawn with no pawns of its own colour on the columns beside it.
+	private static final int ENDGAME_ISOLATED = -15;
+
+	private static final long[] FILES = new long[8];			// the squares of each column.
+	private static final long[] ADJACENT_FILES = new long[8];	// the squares of the columns beside each column.
+	private static final long[][] PASSED_MASKS = new long[2][64];	// the squares in front of a pawn, on its column and those beside it, by colour.
+	private static final long[][] NEAR_SHIELD = new long[2][64];	// the squares just in front of a king and beside them, by colour.
+	private static final long[][] FAR_SHIELD = new long[2][64];	// the same squares a row further on.
+
+	private static final int PAWN_TABLE_SIZE = 1 << 14;			// the number of pawn structures remembered.
+
+	private long[] pawnKeys = new long[PAWN_TABLE_SIZE];		// holds the pawn hash of each remembered structure.
+	private int[] pawnMiddlegame = new int[PAWN_TABLE_SIZE];	// holds its middle game score, for white.
+	private int[] pawnEndgame = new int[PAWN_TABLE_SIZE];		// holds its end game score, for white.
+
+	static
+	{
+		for (int piece = Position.PAWN; piece <= Position.KING; piece++) 	// adding the material to the square values.
+		{
+			for (int square = 0; square < 64; square++)
+			{
+				int middlegame = MIDDLEGAME_VALUES[piece] + MIDDLEGAME_SQUARES[piece][square];
+				int endgame = ENDGAME_VALUES[piece] + (piece == Position.PAWN ? ENDGAME_PAWN_SQUARES[square]
+					: piece == Position.KING ? ENDGAME_KING_SQUARES[square] : MIDDLEGAME_SQUARES[piece][square]);
+
+				MIDDLEGAME[piece][square] = middlegame;
+				ENDGAME[piece][square] = endgame;
+				MIDDLEGAME[6 + piece][square ^ 56] = -middlegame; 		// black's tables are white's turned over.
+				ENDGAME[6 + piece][square ^ 56] = -endgame;
+			}
+		}
+
+		for (int file = 0; file < 8; file++)
+		{
+			FILES[file] = 0x0101010101010101L << file;
+		}
+
+		for (int file = 0; file < 8; file++)
+		{
+			ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0L) | (file < 7 ? FILES[file + 1] : 0L);
+		}
+
+		for (int square = 0; square < 64; square++)
+		{
+			int file = square % 8, row = square / 8;
+			long columns = FILES[file] | ADJACENT_FILES[file];
+
+			PASSED_MASKS[Position.WHITE][square] = columns & ((1L << (row * 8)) - 1); 			// white moves towards row 0.
+			PASSED_MASKS[Position.BLACK][square] = row < 7 ? columns & (-1L << ((row + 1) * 8)) : 0L;
+
+			NEAR_SHIELD[Position.WHITE][square] = row > 0 ? columns & (0xFFL << ((row - 1) * 8)) : 0L;
+			FAR_SHIELD[Position.WHITE][square] = row > 1 ? columns & (0xFFL << ((row - 2) * 8)) : 0L;
+			NEAR_SHIELD[Position.BLACK][square] = row < 7 ? columns & (0xFFL << ((row + 1) * 8)) : 0L;
+			FAR_SHIELD[Position.BLACK][square] = row < 6 ? columns & (0xFFL << ((row + 2) * 8)) : 0L;
+		}
+	}
+
+	/**
+	 * Scores a position.
+	 *
+	 * @param _position The position to score.
+	 * @return The score from the point of view of the side to move.
+	 */
+	public int evaluate(Position _position)
+	{
+		int slot = (int) _position.getPawnHash() & (PAWN_TABLE_SIZE - 1);
+
+		if (pawnKeys[slot] != _position.getPawnHash()) 				// an empty slot holds the score of no pawns, which is 0.
+		{
+			scorePawns(_position, slot);
+		}
+
+		int middlegame = _position.getMiddlegameScore() + pawnMiddlegame[slot];
+		int endgame = _position.getEndgameScore() + pawnEndgame[slot];
+		long occupancy = _position.getOccupancy();
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++) 	// the pieces' moves and the danger to the other king.
+		{
+			int sign = colour == Position.WHITE ? 1 : -1, other = 1 - colour;
+			long own = _position.getColourOccupancy(colour);
+			long safe = ~own & ~pawnAttacks(other, _position.getPieces(other, Position.PAWN)); 	// squares an enemy pawn guards are not counted.
+			int enemyKing = Long.numberOfTrailingZeros(_position.getPieces(other, Position.KING));
+			long kingZone = Attacks.kingAttacks(enemyKing) | (1L << enemyKing);
+			int attackers = 0, units = 0;
+
+			for (int piece = Position.KNIGHT; piece <= Position.QUEEN; piece++)
+			{
+				for (long pieces = _position.getPieces(colour, piece); pieces != 0; pieces &= pieces - 1)
+				{
+					int square = Long.numberOfTrailingZeros(pieces);
+					long attacks = attacks(piece, square, occupancy);
+					int moves = Long.bitCount(attacks & safe) - MOBILITY_CENTRE[piece];
+
+					middlegame += sign * moves * MIDDLEGAME_MOBILITY[piece];
+					endgame += sign * moves * ENDGAME_MOBILITY[piece];
+
+					if ((attacks & kingZone) != 0) 						// the piece bears on the king's squares.
+					{
+						attackers++;
+						units += KING_ATTACK_UNITS[piece] * Long.bitCount(attacks & kingZone);
+					}
+				}
+			}
+
+			if (attackers >= 2) 										// one piece alone is rarely a danger.
+			{
+				middlegame += sign * Math.min(units * units / 4, MAX_KING_DANGER);
+			}
+
+			long ownPawns = _position.getPieces(colour, Position.PAWN);
+			int king = Long.numberOfTrailingZeros(_position.getPieces(colour, Position.KING));
+
+			middlegame += sign * ((SHIELD_NEAR * Long.bitCount(ownPawns & NEAR_SHIELD[colour][king]))
+				+ (SHIELD_FAR * Long.bitCount(ownPawns & FAR_SHIELD[colour][king])));
+		}
+
+		int phase = Math.min(_position.getPhase(), TOTAL_PHASE);
+		int score = ((middlegame * phase) + (endgame * (TOTAL_PHASE - phase))) / TOTAL_PHASE;
+
+		return _position.getSideToMove() == Position.WHITE ? score : -score;
+	}
+
+	/**
+	 * Scores the pawn structure of a position and remembers it.
+	 *
+	 * @param _position The position.
+	 * @param _slot The slot of the pawn table the score is kept in.
+	 */
+	private void scorePawns(Position _position, int _slot)
+	{
+		int middlegame = 0, endgame = 0;
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			int sign = colour == Position.WHITE ? 1 : -1;
+			long own = _position.getPieces(colour, Position.PAWN), enemy = _position.getPieces(1 - colour, Position.PAWN);
+
+			for (long pawns = own; pawns != 0; pawns &= pawns - 1)
+			{
+				int square = Long.numberOfTrailingZeros(pawns), file = square % 8;
+
+				if ((enemy & PASSED_MASKS[colour][square]) == 0) 		// nothing can stop the pawn but pieces.
+				{
+					int advanced = colour == Position.WHITE ? 7 - (square / 8) : square / 8;
+
+					middlegame += sign * MIDDLEGAME_PASSED[advanced];
+					endgame += sign * ENDGAME_PASSED[advanced];
+				}
+
+				if ((own & ADJACENT_FILES[file]) == 0)
+				{
+					middlegame += sign * MIDDLEGAME_ISOLATED;
+					endgame += sign * ENDGAME_ISOLATED;
+				}
+
+				if ((own & FILES[file] & PASSED_MASKS[colour][square]) != 0) 	// another pawn of its own is in front of it.
+				{
+					middlegame += sign * MIDDLEGAME_DOUBLED;
+					endgame += sign * ENDGAME_DOUBLED;
+				}
+			}
+		}
+
+		pawnKeys[_slot] = _position.getPawnHash();
+		pawnMiddlegame[_slot] = middlegame;
+		pawnEndgame[_slot] = endgame;
+	}
+
+	/**
+	 * Returns the squares a set of pawns attack.
+	 *
+	 * @param _colour The colour of the pawns.
+	 * @param _pawns The bitboard of the pawns.
+	 * @return The bitboard of the attacked squares.
+	 */
+	private static long pawnAttacks(int _colour, long _pawns)
+	{
+		long left = _pawns & ~FILES[0], right = _pawns & ~FILES[7];
+
+		return _colour == Position.WHITE ? (left >>> 9) | (right >>> 7) : (left << 7) | (right << 9); 	// white moves towards row 0.
+	}
+
+	/**
+	 * Returns the squares a knight, bishop, rook or queen attacks.
+	 *
+	 * @param _piece The type of the piece.
+	 * @param _square The square the piece is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the attacked squares.
+	 */
+	private static long attacks(int _piece, int _square, long _occupancy)
+	{
+		switch (_piece)
+		{
+			case Position.KNIGHT:
+				return Attacks.knightAttacks(_square);
+
+			case Position.BISHOP:
+				return Attacks.bishopAttacks(_square, _occupancy);
+
+			case Position.ROOK:
+				return Attacks.rookAttacks(_square, _occupancy);
+
+			default:
+				return Attacks.queenAttacks(_square, _occupancy);
+		}
+	}
+}
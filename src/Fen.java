@@ -0,0 +1,284 @@
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation (FEN).
+ *
+ * The first field lists the rows from the top of the board, with letters for the pieces (upper case for white,
+ * lower case for black) and digits for runs of empty squares. The other fields are the side to move, the castling
+ * rights (KQkq or -), the en passant square (or -), the number of moves since a pawn moved or a piece was taken, and
+ * the move number. Missing fields at the end take their values from the starting position.
+ */
+public final class Fen
+{
+	public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";	// the starting position.
+
+	private static final String PIECE_LETTERS = "pnbrqk";		// the letter of each piece type, in the order of the piece types.
+	private static final String CASTLING_LETTERS = "KQkq";		// the letter of each castling right, in the order of the right bits.
+
+	/**
+	 * The notation is only used through the static methods.
+	 */
+	private Fen()
+	{
+	}
+
+	/**
+	 * Creates a position from a FEN string.
+	 *
+	 * @param _fen The FEN string.
+	 * @return The position.
+	 * @throws IllegalArgumentException If the FEN string is not valid.
+	 */
+	public static Position parse(String _fen)
+	{
+		String[] fields = _fen.trim().split("\\s+");
+		Position position = new Position();
+		int square = 0, rowStart = 0;
+
+		for (char c : fields[0].toCharArray()) 					// reading the pieces from the top left square.
+		{
+			if (c == '/') 										// the end of a row.
+			{
+				if (square != rowStart + 8 || square == 64)
+				{
+					throw new IllegalArgumentException("Row does not have 8 squares in FEN: " + _fen);
+				}
+
+				rowStart = square;
+			}
+			else if (c >= '1' && c <= '8') 						// a run of empty squares.
+			{
+				square += c - '0';
+			}
+			else
+			{
+				int piece = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+
+				if (piece < 0)
+				{
+					throw new IllegalArgumentException("Bad piece placement in FEN: " + _fen);
+				}
+
+				if (square < rowStart + 8)
+				{
+					position.addPiece(Character.isUpperCase(c) ? Position.WHITE : Position.BLACK, piece, square);
+				}
+
+				square++;
+			}
+
+			if (square > rowStart + 8) 							// a run or a piece past the end of the row.
+			{
+				throw new IllegalArgumentException("Row does not have 8 squares in FEN: " + _fen);
+			}
+		}
+
+		if (square != 64)
+		{
+			throw new IllegalArgumentException("FEN does not have 64 squares: " + _fen);
+		}
+
+		if (Long.bitCount(position.getPieces(Position.WHITE, Position.KING)) != 1 || Long.bitCount(position.getPieces(Position.BLACK, Position.KING)) != 1)
+		{
+			throw new IllegalArgumentException("Each side needs one king in FEN: " + _fen);
+		}
+
+		if (fields.length > 1) 									// the side to move defaults to white.
+		{
+			if (fields[1].equals("w"))
+			{
+				position.setSideToMove(Position.WHITE);
+			}
+			else if (fields[1].equals("b"))
+			{
+				position.setSideToMove(Position.BLACK);
+			}
+			else
+			{
+				throw new IllegalArgumentException("Bad side to move in FEN: " + _fen);
+			}
+		}
+
+		int other = 1 - position.getSideToMove();
+
+		if (position.isSquareAttacked(Long.numberOfTrailingZeros(position.getPieces(other, Position.KING)), position.getSideToMove()))
+		{
+			throw new IllegalArgumentException("The side not to move is in check in FEN: " + _fen);
+		}
+
+		if (fields.length > 2 && !fields[2].equals("-")) 			// the castling rights default to none.
+		{
+			int rights = 0;
+
+			for (char c : fields[2].toCharArray())
+			{
+				int right = CASTLING_LETTERS.indexOf(c);
+
+				if (right < 0)
+				{
+					throw new IllegalArgumentException("Bad castling rights in FEN: " + _fen);
+				}
+
+				rights |= 1 << right;
+			}
+
+			position.setCastling(rights & castlingRightsAllowed(position));
+		}
+
+		if (fields.length > 3 && !fields[3].equals("-")) 			// the en passant square defaults to none.
+		{
+			int target = Move.parseSquare(fields[3]);
+
+			if (target < 0 || !isEnPassantPossible(position, target))
+			{
+				throw new IllegalArgumentException("Bad en passant square in FEN: " + _fen);
+			}
+
+			position.setEnPassant(target);
+		}
+
+		int halfmoveClock = 0, fullmoveNumber = 1;
+
+		try
+		{
+			if (fields.length > 4)
+			{
+				halfmoveClock = Integer.parseInt(fields[4]);
+			}
+
+			if (fields.length > 5)
+			{
+				fullmoveNumber = Integer.parseInt(fields[5]);
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Bad move counters in FEN: " + _fen, e);
+		}
+
+		if (halfmoveClock < 0 || fullmoveNumber < 1)
+		{
+			throw new IllegalArgumentException("Bad move counters in FEN: " + _fen);
+		}
+
+		position.setHalfmoveClock(halfmoveClock);
+		position.setFullmoveNumber(fullmoveNumber);
+
+		return position;
+	}
+
+	/**
+	 * Writes a position as a FEN string.
+	 *
+	 * @param _position The position.
+	 * @return The FEN string, with all six fields.
+	 */
+	public static String toFen(Position _position)
+	{
+		StringBuilder fen = new StringBuilder(90);
+
+		for (int row = 0; row < 8; row++) 						// writing the rows from the top.
+		{
+			int empty = 0;
+
+			for (int square = row * 8; square < (row * 8) + 8; square++)
+			{
+				int piece = _position.getPieceAt(square);
+
+				if (piece == Position.NO_PIECE) 				// counting the run of empty squares.
+				{
+					empty++;
+
+					continue;
+				}
+
+				if (empty > 0)
+				{
+					fen.append(empty);
+					empty = 0;
+				}
+
+				char letter = PIECE_LETTERS.charAt(piece);
+
+				fen.append(_position.getColourAt(square) == Position.WHITE ? Character.toUpperCase(letter) : letter);
+			}
+
+			if (empty > 0)
+			{
+				fen.append(empty);
+			}
+
+			if (row < 7)
+			{
+				fen.append('/');
+			}
+		}
+
+		fen.append(_position.getSideToMove() == Position.WHITE ? " w " : " b ");
+
+		if (_position.getCastling() == 0)
+		{
+			fen.append('-');
+		}
+
+		for (int i = 0; i < CASTLING_LETTERS.length(); i++) 	// writing each castling right that is left.
+		{
+			if ((_position.getCastling() & (1 << i)) != 0)
+			{
+				fen.append(CASTLING_LETTERS.charAt(i));
+			}
+		}
+
+		fen.append(' ').append(_position.getEnPassant() < 0 ? "-" : Move.squareName(_position.getEnPassant()));
+		fen.append(' ').append(_position.getHalfmoveClock()).append(' ').append(_position.getFullmoveNumber());
+
+		return fen.toString();
+	}
+
+	/**
+	 * Checks if a pawn can have just moved two squares past an en passant square.
+	 *
+	 * The square must be on the sixth row from the side to move, be empty, have an enemy pawn in front of it and have
+	 * the square the pawn started on empty.
+	 *
+	 * @param _position The position, with the side to move set.
+	 * @param _target The en passant square.
+	 * @return Whether the square is possible.
+	 */
+	private static boolean isEnPassantPossible(Position _position, int _target)
+	{
+		int side = _position.getSideToMove();
+		int forward = side == Position.WHITE ? 8 : -8; 				// towards the pawn that moved, from the target.
+
+		return _target / 8 == (side == Position.WHITE ? 2 : 5)
+			&& _position.getPieceAt(_target) == Position.NO_PIECE
+			&& _position.getPieceAt(_target - forward) == Position.NO_PIECE
+			&& (_position.getPieces(1 - side, Position.PAWN) & (1L << (_target + forward))) != 0;
+	}
+
+	/**
+	 * Works out which castling rights are possible, given where the kings and rooks are.
+	 *
+	 * A right is dropped if the king or rook is not on its starting square, so a careless FEN cannot produce an
+	 * illegal castling move.
+	 *
+	 * @param _position The position.
+	 * @return The castling rights that could still be held.
+	 */
+	private static int castlingRightsAllowed(Position _position)
+	{
+		long whiteRooks = _position.getPieces(Position.WHITE, Position.ROOK);
+		long blackRooks = _position.getPieces(Position.BLACK, Position.ROOK);
+		int allowed = 0;
+
+		if ((_position.getPieces(Position.WHITE, Position.KING) & (1L << 60)) != 0) 	// the white king on e1.
+		{
+			allowed |= ((whiteRooks & (1L << 63)) != 0 ? Position.WHITE_KINGSIDE : 0) | ((whiteRooks & (1L << 56)) != 0 ? Position.WHITE_QUEENSIDE : 0);
+		}
+
+		if ((_position.getPieces(Position.BLACK, Position.KING) & (1L << 4)) != 0) 	// the black king on e8.
+		{
+			allowed |= ((blackRooks & (1L << 7)) != 0 ? Position.BLACK_KINGSIDE : 0) | ((blackRooks & 1L) != 0 ? Position.BLACK_QUEENSIDE : 0);
+		}
+
+		return allowed;
+	}
+}
@@ -1,17 +1,646 @@
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * The main class, used to run the game of chess.
  */
-public class Game 
+public class Game
 {
 	/**
 	 * Runs the game of chess.
-	 * 
-	 * @param args
+	 *
+	 * With no arguments the board is opened, and fen &lt;fen&gt; opens it at a position. The other modes run without
+	 * opening any windows:
+	 * perft &lt;depth&gt; [fen] counts the positions reached from the start, or from the FEN position if one is given.
+	 * bench times the move generator, playing moves and drawing the squares, and bench smp [depth] times the
+	 * search on 1 to 16 threads.
+	 * uci runs the engine over the Universal Chess Interface on the standard input and output, for chess programs.
+	 * serve &lt;port&gt; [shards] hosts many games at once for other programs on the same machine, over a socket.
+	 * search &lt;millis&gt; [tablebases &lt;directory&gt;] [fen] searches the start, or the FEN position, for the best
+	 * move on every core, looking endings up in the tablebases if a directory is given.
+	 * pgn &lt;file&gt; reads every game in a PGN file, checking each move against the rules.
+	 * import &lt;pgn&gt; &lt;database&gt; builds a game database from a PGN file, and replay &lt;database&gt; plays
+	 * through every game in a database.
+	 * analyse &lt;in&gt; &lt;out&gt; [depth &lt;n&gt;] [millis &lt;n&gt;] [threads &lt;n&gt;] searches every FEN or EPD
+	 * position in a file and writes the results in order, with depth 0 only evaluating.
+	 * book build &lt;pgn or database&gt; &lt;book&gt; [plies] builds an opening book, and book probe &lt;book&gt; [fen]
+	 * lists the book moves of the start, or the FEN position.
+	 * tablebase build &lt;directory&gt; [name ...] builds endgame tablebases such as KQvK (KQvK, KRvK and KPvK if
+	 * none are named), or all of them up to four pieces with all, and tablebase probe &lt;directory&gt; &lt;fen&gt; looks up a position and each of its moves.
+	 * With computer the board is opened with the computer playing black, computer book &lt;book&gt; has it play from
+	 * a book, and fen &lt;fen&gt; after either opens it at a position.
+	 * In every mode the metrics of Metrics are registered over JMX, and -Dchess.metrics=true turns them on from the
+	 * start, with -Dchess.metrics.log=&lt;seconds&gt; writing them to the error stream at that period.
+	 *
+	 * @param args The command line arguments.
 	 */
 	public static void main(String[] args)
 	{
+		Metrics.start(); 												// the metrics can be turned on over JMX in any mode.
+
+		if (args.length > 0 && args[0].equals("perft")) 					// counting positions without the board.
+		{
+			runPerft(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("bench")) 					// timing the hot paths without the board.
+		{
+			if (args.length > 1 && args[1].equals("smp"))
+			{
+				Benchmark.runScaling(System.out, args.length > 2 ? Integer.parseInt(args[2]) : 8);
+			}
+			else
+			{
+				Benchmark.runAll(System.out);
+			}
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("uci")) 						// talking to a chess program over the standard streams.
+		{
+			try
+			{
+				new Uci(System.out).run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not read the commands: " + e.getMessage());
+				System.exit(1);
+			}
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("serve")) 					// hosting many games without the board.
+		{
+			runServe(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("search")) 					// searching a position without the board.
+		{
+			runSearch(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("pgn")) 						// reading a game file without the board.
+		{
+			runPgn(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("import")) 					// building a game database without the board.
+		{
+			runImport(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("replay")) 					// reading a game database without the board.
+		{
+			runReplay(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("analyse")) 					// analysing a file of positions without the board.
+		{
+			runAnalyse(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("book")) 						// building or reading an opening book without the board.
+		{
+			runBook(args);
+
+			return;
+		}
+
+		if (args.length > 0 && args[0].equals("tablebase")) 					// building or reading endgame tablebases without the board.
+		{
+			runTablebase(args);
+
+			return;
+		}
+
+		boolean computer = args.length > 0 && args[0].equals("computer");
+		int next = computer ? 1 : 0;
+		Position start = Position.startPosition();
+		OpeningBook book = null;
+
+		if (computer && args.length > next + 1 && args[next].equals("book")) 	// the computer plays its first moves from a book.
+		{
+			try
+			{
+				book = new OpeningBook(Paths.get(args[next + 1]));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not open the book " + args[next + 1] + ": " + e.getMessage());
+				System.exit(1);
+			}
+
+			next += 2;
+		}
+
+		if (args.length > next && args[next].equals("fen")) 				// opening the board at a position.
+		{
+			start = readPosition(args, next + 1);
+		}
+
 		@SuppressWarnings("unused")
-		ChessBoard chessBoard = new ChessBoard();
+		ChessBoard chessBoard = new ChessBoard(computer, start, book);
+	}
+
+	/**
+	 * Runs perft from the command line arguments.
+	 *
+	 * @param args The command line arguments, starting with perft.
+	 */
+	private static void runPerft(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: perft <depth> [fen]");
+			System.exit(1);
+		}
+
+		int depth = Integer.parseInt(args[1]);
+
+		if (depth < 1)
+		{
+			System.err.println("The perft depth must be at least 1.");
+			System.exit(1);
+		}
+
+		Perft.run(readPosition(args, 2), depth, System.out);
+	}
+
+	/**
+	 * Hosts games over a socket from the command line arguments.
+	 *
+	 * @param args The command line arguments, starting with serve.
+	 */
+	private static void runServe(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: serve <port> [shards]");
+			System.exit(1);
+		}
+
+		int shards = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		SessionServer server = new SessionServer(shards);
+
+		System.out.println("Serving games on port " + args[1] + " with " + shards + " shards");
+
+		try
+		{
+			server.listen(Integer.parseInt(args[1]));
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not serve on port " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Searches a position from the command line arguments and prints the best move.
+	 *
+	 * @param args The command line arguments, starting with search.
+	 */
+	private static void runSearch(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: search <millis> [tablebases <directory>] [fen]");
+			System.exit(1);
+		}
+
+		boolean tablebases = args.length > 3 && args[2].equals("tablebases");
+		Position position = readPosition(args, tablebases ? 4 : 2);
+		ParallelSearch search = new ParallelSearch(new TranspositionTable(64, TranspositionTable.Replacement.DEPTH_PREFERRED),
+			Runtime.getRuntime().availableProcessors());
+
+		if (tablebases) 													// the search looks endings up rather than searching them.
+		{
+			try
+			{
+				search.setTablebase(new Tablebase(Paths.get(args[3])));
+			}
+			catch (IOException e)
+			{
+				System.err.println("Could not open the tablebases: " + e.getMessage());
+				System.exit(1);
+			}
+		}
+
+		long start = System.nanoTime();
+		int move = search.search(position, Search.MAX_PLY, Long.parseLong(args[1]), 0);
+		long time = (System.nanoTime() - start) / 1000000;
+
+		System.out.println("bestmove " + Move.toString(move) + " score " + search.getBestScore() + " depth " + search.getCompletedDepth()
+			+ " nodes " + search.getNodes() + " time " + time + " ms");
+	}
+
+	/**
+	 * Reads every game in a PGN file and prints how many games and moves it holds.
+	 *
+	 * The file is streamed, so it can be larger than the memory. Games with a move that is not legal are counted
+	 * and skipped.
+	 *
+	 * @param args The command line arguments, starting with pgn.
+	 */
+	private static void runPgn(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: pgn <file>");
+			System.exit(1);
+		}
+
+		long games = 0, moves = 0, errors = 0;
+		long start = System.nanoTime();
+
+		try (PgnReader reader = new PgnReader(new InputStreamReader(new FileInputStream(args[1]), StandardCharsets.ISO_8859_1)))
+		{
+			while (true)
+			{
+				try
+				{
+					PgnGame game = reader.next();
+
+					if (game == null)
+					{
+						break;
+					}
+
+					games++;
+					moves += game.getMoveCount();
+				}
+				catch (IllegalArgumentException e) 							// the bad game has been skipped.
+				{
+					errors++;
+
+					System.err.println(e.getMessage());
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+
+		long time = Math.max((System.nanoTime() - start) / 1000000, 1);
+
+		System.out.println("Games: " + games + " Moves: " + moves + " Errors: " + errors + " Time: " + time + " ms Games/sec: "
+			+ (games * 1000 / time));
+	}
+
+	/**
+	 * Builds a game database from a PGN file.
+	 *
+	 * @param args The command line arguments, starting with import.
+	 */
+	private static void runImport(String[] args)
+	{
+		if (args.length < 3)
+		{
+			System.err.println("Usage: import <pgn> <database>");
+			System.exit(1);
+		}
+
+		long start = System.nanoTime();
+
+		try
+		{
+			long skipped = GameDatabaseWriter.importPgn(Paths.get(args[1]), Paths.get(args[2]));
+
+			try (GameDatabase database = new GameDatabase(Paths.get(args[2])))
+			{
+				System.out.println("Games: " + database.size() + " Skipped: " + skipped + " Time: "
+					+ ((System.nanoTime() - start) / 1000000) + " ms");
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not import " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Plays through every game in a game database and prints how fast the games were read.
+	 *
+	 * @param args The command line arguments, starting with replay.
+	 */
+	private static void runReplay(String[] args)
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: replay <database>");
+			System.exit(1);
+		}
+
+		try (GameDatabase database = new GameDatabase(Paths.get(args[1])))
+		{
+			Position position = new Position();
+			int[] moves = new int[0xFFFF];
+			long totalMoves = 0, checksum = 0;
+			long start = System.nanoTime();
+
+			for (long game = 0; game < database.size(); game++) 			// replaying each game into the same position and array.
+			{
+				totalMoves += database.replay(game, position, moves);
+				checksum ^= position.getHash();
+			}
+
+			long time = Math.max((System.nanoTime() - start) / 1000000, 1);
+
+			System.out.println("Games: " + database.size() + " Moves: " + totalMoves + " Time: " + time + " ms Games/sec: "
+				+ (database.size() * 1000 / time) + " (checksum " + checksum + ")");
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Analyses a file of positions from the command line arguments.
+	 *
+	 * @param args The command line arguments, starting with analyse.
+	 */
+	private static void runAnalyse(String[] args)
+	{
+		if (args.length < 3 || args.length % 2 == 0)
+		{
+			System.err.println("Usage: analyse <in> <out> [depth <n>] [millis <n>] [threads <n>]");
+			System.exit(1);
+		}
+
+		int depth = -1, threads = Runtime.getRuntime().availableProcessors(); 	// with no depth, a time limit searches as deep as it can.
+		long millis = 0;
+
+		for (int i = 3; i < args.length; i += 2) 							// reading the options in pairs.
+		{
+			switch (args[i])
+			{
+				case "depth":
+					depth = Integer.parseInt(args[i + 1]);
+					break;
+
+				case "millis":
+					millis = Long.parseLong(args[i + 1]);
+					break;
+
+				case "threads":
+					threads = Integer.parseInt(args[i + 1]);
+					break;
+
+				default:
+					System.err.println("Unknown option: " + args[i]);
+					System.exit(1);
+			}
+		}
+
+		try (BufferedReader in = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.ISO_8859_1);
+			Writer out = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.ISO_8859_1))
+		{
+			new BatchAnalysis(threads, depth >= 0 ? depth : (millis > 0 ? Search.MAX_PLY : 6), millis).run(in, out, System.out);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not analyse " + args[1] + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Builds an opening book, or lists the book moves of a position, from the command line arguments.
+	 *
+	 * A book is built from a PGN file if the name ends with .pgn, otherwise from a game database.
+	 *
+	 * @param args The command line arguments, starting with book.
+	 */
+	private static void runBook(String[] args)
+	{
+		boolean build = args.length >= 4 && args[1].equals("build");
+
+		if (!build && !(args.length >= 3 && args[1].equals("probe")))
+		{
+			System.err.println("Usage: book build <pgn or database> <book> [plies] | book probe <book> [fen]");
+			System.exit(1);
+		}
+
+		try
+		{
+			if (build)
+			{
+				long start = System.nanoTime();
+				OpeningBookBuilder builder = new OpeningBookBuilder(args.length > 4 ? Integer.parseInt(args[4]) : 16);
+
+				if (args[2].endsWith(".pgn"))
+				{
+					try (PgnReader reader = new PgnReader(Files.newBufferedReader(Paths.get(args[2]), StandardCharsets.ISO_8859_1)))
+					{
+						while (true)
+						{
+							PgnGame game;
+
+							try
+							{
+								game = reader.next();
+							}
+							catch (IllegalArgumentException e) 				// the bad game has been skipped.
+							{
+								continue;
+							}
+
+							if (game == null)
+							{
+								break;
+							}
+
+							builder.addGame(game);
+						}
+					}
+				}
+				else
+				{
+					try (GameDatabase database = new GameDatabase(Paths.get(args[2])))
+					{
+						builder.addDatabase(database);
+					}
+				}
+
+				int entries = builder.write(Paths.get(args[3]));
+
+				System.out.println("Entries: " + entries + " Time: " + ((System.nanoTime() - start) / 1000000) + " ms");
+			}
+			else
+			{
+				try (OpeningBook book = new OpeningBook(Paths.get(args[2])))
+				{
+					Position position = readPosition(args, 3);
+					int[] moves = new int[MoveGenerator.MAX_MOVES], weights = new int[MoveGenerator.MAX_MOVES];
+					int count = book.getMoves(position, moves, weights); 			// the first lookup also loads the classes.
+					long start = System.nanoTime();
+
+					for (int i = 0; i < 10000; i++) 								// timing a lookup over many tries.
+					{
+						book.getMoves(position, moves, weights);
+					}
+
+					double micros = (System.nanoTime() - start) / 1000.0 / 10000;
+
+					for (int i = 0; i < count; i++)
+					{
+						System.out.println(San.toSan(position, moves[i]) + " " + weights[i]);
+					}
+
+					System.out.printf("Moves: %d Time: %.2f us per lookup%n", count, micros);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not use the book: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Builds endgame tablebases, or looks up a position, from the command line arguments.
+	 *
+	 * @param args The command line arguments, starting with tablebase.
+	 */
+	private static void runTablebase(String[] args)
+	{
+		boolean build = args.length >= 3 && args[1].equals("build");
+
+		if (!build && !(args.length >= 4 && args[1].equals("probe")))
+		{
+			System.err.println("Usage: tablebase build <directory> [name ... | all] | tablebase probe <directory> <fen>");
+			System.exit(1);
+		}
+
+		try
+		{
+			if (build)
+			{
+				TablebaseGenerator generator = new TablebaseGenerator(Files.createDirectories(Paths.get(args[2])), System.out);
+
+				String[] names = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length) : new String[] {"KQvK", "KRvK", "KPvK"};
+
+				for (String name : names)
+				{
+					if (name.equals("all"))
+					{
+						generator.generateAll();
+					}
+					else
+					{
+						generator.generate(name);
+					}
+				}
+			}
+			else
+			{
+				try (Tablebase tablebase = new Tablebase(Paths.get(args[2])))
+				{
+					Position position = readPosition(args, 3);
+					int result = tablebase.probe(position);
+
+					for (int i = 0; i < 1000000; i++) 							// letting the lookup be compiled before it is timed.
+					{
+						result = tablebase.probe(position);
+					}
+
+					long start = System.nanoTime();
+
+					for (int i = 0; i < 1000000; i++) 							// timing a lookup over many tries.
+					{
+						tablebase.probe(position);
+					}
+
+					double nanos = (System.nanoTime() - start) / 1000000.0;
+
+					System.out.println("Position: " + describe(result));
+
+					int[] moves = new int[MoveGenerator.MAX_MOVES];
+					int count = MoveGenerator.generateMoves(position, moves);
+
+					for (int i = 0; i < count; i++) 							// each move's result is for the other side.
+					{
+						String san = San.toSan(position, moves[i]);
+
+						position.makeMove(moves[i]);
+						System.out.println(san + " " + describe(tablebase.probe(position)));
+						position.unmakeMove(moves[i]);
+					}
+
+					System.out.printf("Tablebases: %d Time: %.1f ns per lookup%n", tablebase.size(), nanos);
+				}
+			}
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			System.err.println("Could not use the tablebases: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Describes a tablebase result.
+	 *
+	 * @param result The result and distance returned by Tablebase.probe.
+	 * @return The result and distance to mate in words.
+	 */
+	private static String describe(int result)
+	{
+		if (result == Tablebase.NO_RESULT)
+		{
+			return "not in the tablebases";
+		}
+
+		String[] names = {"draw", "win", "loss"};
+
+		return Tablebase.getResult(result) == Tablebase.DRAW ? names[Tablebase.DRAW]
+			: names[Tablebase.getResult(result)] + " in " + Tablebase.getDistance(result) + " plies";
+	}
+
+	/**
+	 * Reads the position from the command line arguments.
+	 *
+	 * @param args The command line arguments.
+	 * @param first The index of the first argument of the FEN.
+	 * @return The FEN position if there is one, otherwise the same starting position as the board.
+	 */
+	private static Position readPosition(String[] args, int first)
+	{
+		if (args.length > first) 											// the rest of the arguments are the FEN.
+		{
+			return Fen.parse(String.join(" ", Arrays.copyOfRange(args, first, args.length)));
+		}
+
+		return Position.startPosition();
 	}
 }
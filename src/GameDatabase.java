@@ -0,0 +1,341 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads games from a game database written by GameDatabaseWriter.
+ *
+ * A database is two files. The data file holds one record for each game: the result, a flags byte, the number of
+ * moves, the starting FEN if the game does not start from the usual position, and then each move in 16 bits. The
+ * index file holds the offset of each record in the data file as a long, so any game can be found straight away.
+ * Both files start with a magic number and a version.
+ *
+ * A move is stored as the from square in bits 0 to 5, the to square in bits 6 to 11 and the promotion piece in bits
+ * 12 to 14. The rest of the packed move (the piece, the piece taken and the flags) is worked out from the position
+ * as the game is replayed, which is much cheaper than generating the moves.
+ *
+ * The files are memory mapped, so reading a game copies nothing and creates no objects, and the operating system
+ * keeps the pages that are used in memory. A mapping can not be larger than 2GB, so the files are mapped in 1GB
+ * segments. Each data segment runs on past its end by more than the largest record, so every record can be read
+ * from the segment it starts in. Reads do not change the mapped buffers, so one database can be read by many
+ * threads at once.
+ */
+public class GameDatabase implements Closeable
+{
+	static final int DATA_MAGIC = 0x43484442;					// "CHDB", the first four bytes of the data file.
+	static final int INDEX_MAGIC = 0x43484958;					// "CHIX", the first four bytes of the index file.
+	static final int VERSION = 1;								// the version of the file layout.
+	static final int HEADER_SIZE = 8;							// the size of the magic number and version.
+	static final int FLAG_FEN = 1;								// set in the flags byte when the record holds a FEN.
+	static final int MAX_MOVES = 0xFFFF;						// the most moves a record can hold.
+
+	private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};	// the result of each result code.
+	private static final int SEGMENT_SHIFT = 30;				// each mapping covers 1GB.
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+	private static final int RECORD_OVERLAP = 1 << 18;			// more than the largest record, which is under 200KB.
+
+	private FileChannel dataChannel;							// holds the open data file.
+	private FileChannel indexChannel;							// holds the open index file.
+	private MappedByteBuffer[] data;							// holds the mapped segments of the data file.
+	private MappedByteBuffer[] index;							// holds the mapped segments of the index file.
+	private long gameCount;										// holds the number of games.
+	private Position start = Position.startPosition();			// holds the usual starting position, copied into each replay.
+
+	/**
+	 * Opens a database.
+	 *
+	 * @param _path The path of the data file. The index file has the same path with .idx added.
+	 * @throws IOException If the files can not be read or are not a game database.
+	 */
+	public GameDatabase(Path _path) throws IOException
+	{
+		dataChannel = FileChannel.open(_path, StandardOpenOption.READ);
+		indexChannel = FileChannel.open(indexPath(_path), StandardOpenOption.READ);
+
+		data = map(dataChannel, RECORD_OVERLAP);
+		index = map(indexChannel, 0);
+		gameCount = (indexChannel.size() - HEADER_SIZE) / 8;
+
+		if (data[0].getInt(0) != DATA_MAGIC || index[0].getInt(0) != INDEX_MAGIC
+			|| data[0].getInt(4) != VERSION || index[0].getInt(4) != VERSION)
+		{
+			close();
+
+			throw new IOException("Not a game database: " + _path);
+		}
+	}
+
+	/**
+	 * Returns the number of games.
+	 *
+	 * @return The number of games.
+	 */
+	public long size()
+	{
+		return gameCount;
+	}
+
+	/**
+	 * Returns the number of moves in a game.
+	 *
+	 * @param _game The index of the game, from 0.
+	 * @return The number of moves.
+	 */
+	public int getMoveCount(long _game)
+	{
+		long offset = offsetOf(_game);
+
+		return segment(offset).getShort(local(offset) + 2) & 0xFFFF;
+	}
+
+	/**
+	 * Returns the result of a game.
+	 *
+	 * @param _game The index of the game, from 0.
+	 * @return 1-0, 0-1, 1/2-1/2 or *.
+	 */
+	public String getResult(long _game)
+	{
+		long offset = offsetOf(_game);
+
+		return RESULTS[segment(offset).get(local(offset)) & 3];
+	}
+
+	/**
+	 * Replays a game, filling in the position and the moves.
+	 *
+	 * Nothing is created unless the game starts from a set position, so this can be called for every game in a large
+	 * database. Afterwards the position is at the end of the game, and unmakeMove can take the moves back in turn.
+	 *
+	 * @param _game The index of the game, from 0.
+	 * @param _position The position, which is set to the start of the game and then has every move played.
+	 * @param _moves The array the packed moves are written to, which must hold getMoveCount moves.
+	 * @return The number of moves.
+	 */
+	public int replay(long _game, Position _position, int[] _moves)
+	{
+		long offset = offsetOf(_game);
+		ByteBuffer buffer = segment(offset);
+		int at = local(offset);
+		int count = buffer.getShort(at + 2) & 0xFFFF;
+
+		at += 4;
+
+		if ((buffer.get(at - 3) & FLAG_FEN) != 0) 	// the game starts from a set position.
+		{
+			byte[] fen = new byte[buffer.getShort(at) & 0xFFFF];
+
+			buffer.get(at + 2, fen);
+			_position.copyFrom(Fen.parse(new String(fen, StandardCharsets.US_ASCII)));
+
+			at += 2 + fen.length;
+		}
+		else
+		{
+			_position.copyFrom(start);
+		}
+
+		for (int i = 0; i < count; i++, at += 2) 				// filling in each move from the position it is played in.
+		{
+			int move = decodeMove(_position, buffer.getShort(at) & 0xFFFF);
+
+			_moves[i] = move;
+			_position.makeMove(move);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads a game as a PGN game, with no tags other than the result and FEN.
+	 *
+	 * @param _game The index of the game, from 0.
+	 * @return The game.
+	 */
+	public PgnGame readGame(long _game)
+	{
+		Position position = new Position();
+		int[] moves = new int[getMoveCount(_game)];
+		int count = replay(_game, position, moves);
+		PgnGame game = new PgnGame();
+
+		for (int i = count - 1; i >= 0; i--) 					// going back to the start to write the FEN.
+		{
+			position.unmakeMove(moves[i]);
+		}
+
+		if (!Fen.toFen(position).equals(Fen.START))
+		{
+			game.setTag("FEN", Fen.toFen(position));
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			game.addMove(moves[i]);
+		}
+
+		game.setResult(getResult(_game));
+
+		return game;
+	}
+
+	/**
+	 * Closes the files.
+	 *
+	 * The mapped buffers must not be used once the database is closed.
+	 *
+	 * @throws IOException If the files can not be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			dataChannel.close();
+		}
+		finally
+		{
+			indexChannel.close();
+		}
+	}
+
+	/**
+	 * Packs a move into 16 bits.
+	 *
+	 * @param _move The packed move.
+	 * @return The from and to squares and the promotion piece, in 15 bits.
+	 */
+	public static int encodeMove(int _move)
+	{
+		return Move.getFrom(_move) | (Move.getTo(_move) << 6) | (Move.getPromotion(_move) << 12);
+	}
+
+	/**
+	 * Unpacks a 16 bit move, working out the rest of the move from the position it is played in.
+	 *
+	 * @param _position The position the move is played in.
+	 * @param _code The move in 16 bits, which must be legal in the position.
+	 * @return The packed move.
+	 */
+	public static int decodeMove(Position _position, int _code)
+	{
+		int from = _code & 0x3F, to = (_code >>> 6) & 0x3F, promotion = (_code >>> 12) & 0x7;
+		int piece = _position.getPieceAt(from), captured = _position.getPieceAt(to);
+		int flags = captured != Position.NO_PIECE ? Move.CAPTURE : 0;
+
+		if (piece == Position.KING && Math.abs(to - from) == 2) 	// the king moving two squares is castling.
+		{
+			flags |= Move.CASTLE;
+		}
+		else if (piece == Position.PAWN && Math.abs(to - from) == 16)
+		{
+			flags |= Move.DOUBLE_PUSH;
+		}
+		else if (piece == Position.PAWN && to == _position.getEnPassant() && (to - from) % 8 != 0) 	// a pawn taking onto the empty en passant square.
+		{
+			flags |= Move.CAPTURE | Move.EN_PASSANT;
+			captured = Position.PAWN;
+		}
+
+		return Move.create(from, to, piece, captured == Position.NO_PIECE ? 0 : captured, promotion, flags);
+	}
+
+	/**
+	 * Returns the code stored for a result.
+	 *
+	 * @param _result 1-0, 0-1, 1/2-1/2 or *.
+	 * @return The result code, 0 for anything that is not a result.
+	 */
+	static int resultCode(String _result)
+	{
+		for (int i = 0; i < RESULTS.length; i++)
+		{
+			if (RESULTS[i].equals(_result))
+			{
+				return i;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Returns the path of the index file of a database.
+	 *
+	 * @param _path The path of the data file.
+	 * @return The path of the index file.
+	 */
+	static Path indexPath(Path _path)
+	{
+		return _path.resolveSibling(_path.getFileName() + ".idx");
+	}
+
+	/**
+	 * Finds the offset of a game's record in the data file.
+	 *
+	 * @param _game The index of the game, from 0.
+	 * @return The offset.
+	 * @throws IndexOutOfBoundsException If there is no such game.
+	 */
+	private long offsetOf(long _game)
+	{
+		if (_game < 0 || _game >= gameCount)
+		{
+			throw new IndexOutOfBoundsException("No game " + _game + " in a database of " + gameCount);
+		}
+
+		long position = HEADER_SIZE + (_game * 8);
+
+		return index[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Returns the data segment a record starts in.
+	 *
+	 * @param _offset The offset of the record in the data file.
+	 * @return The mapped segment.
+	 */
+	private ByteBuffer segment(long _offset)
+	{
+		return data[(int) (_offset >>> SEGMENT_SHIFT)];
+	}
+
+	/**
+	 * Returns where a record starts within its segment.
+	 *
+	 * @param _offset The offset of the record in the data file.
+	 * @return The offset within the segment.
+	 */
+	private static int local(long _offset)
+	{
+		return (int) (_offset & (SEGMENT_SIZE - 1));
+	}
+
+	/**
+	 * Maps a whole file into memory, in 1GB segments.
+	 *
+	 * @param _channel The open file.
+	 * @param _overlap How far each segment runs on past its end, so values that cross the end can be read.
+	 * @return The mapped segments.
+	 * @throws IOException If the file can not be mapped.
+	 */
+	private static MappedByteBuffer[] map(FileChannel _channel, int _overlap) throws IOException
+	{
+		long size = _channel.size();
+		MappedByteBuffer[] segments = new MappedByteBuffer[(int) Math.max((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT, 1)];
+
+		for (int i = 0; i < segments.length; i++)
+		{
+			long start = (long) i << SEGMENT_SHIFT;
+
+			segments[i] = _channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE + _overlap, size - start));
+		}
+
+		return segments;
+	}
+}
@@ -0,0 +1,156 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes games to a game database, which is read back with GameDatabase.
+ *
+ * The games are streamed to the data file as they are added, and the offset of each game is streamed to the index
+ * file, so a database of any size can be built without holding the games in memory.
+ */
+public class GameDatabaseWriter implements Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;				// the number of bytes written to the files at a time.
+
+	private DataOutputStream data;								// holds the stream of game records.
+	private DataOutputStream index;								// holds the stream of game offsets.
+	private long offset;										// holds the offset the next game is written at.
+	private long gameCount = 0;									// holds the number of games written.
+
+	/**
+	 * Generates a new database writer, replacing any database already at the path.
+	 *
+	 * @param _path The path of the data file. The index file has the same path with .idx added.
+	 * @throws IOException If the files can not be created.
+	 */
+	public GameDatabaseWriter(Path _path) throws IOException
+	{
+		data = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_path.toFile()), BUFFER_SIZE));
+		index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(GameDatabase.indexPath(_path).toFile()), BUFFER_SIZE));
+
+		data.writeInt(GameDatabase.DATA_MAGIC);
+		data.writeInt(GameDatabase.VERSION);
+		index.writeInt(GameDatabase.INDEX_MAGIC);
+		index.writeInt(GameDatabase.VERSION);
+
+		offset = GameDatabase.HEADER_SIZE;
+	}
+
+	/**
+	 * Adds a game to the end of the database.
+	 *
+	 * Only the starting position, the moves and the result are kept.
+	 *
+	 * @param _game The game.
+	 * @throws IOException If the files can not be written to.
+	 * @throws IllegalArgumentException If the game has more moves than a record can hold.
+	 */
+	public void add(PgnGame _game) throws IOException
+	{
+		String fen = _game.getTag("FEN");
+		byte[] fenBytes = fen == null ? new byte[0] : fen.getBytes(StandardCharsets.US_ASCII);
+
+		if (_game.getMoveCount() > GameDatabase.MAX_MOVES || fenBytes.length > GameDatabase.MAX_MOVES)
+		{
+			throw new IllegalArgumentException("Game is too long to store: " + _game.getMoveCount() + " moves");
+		}
+
+		index.writeLong(offset);
+
+		data.writeByte(GameDatabase.resultCode(_game.getResult()));
+		data.writeByte(fen == null ? 0 : GameDatabase.FLAG_FEN);
+		data.writeShort(_game.getMoveCount());
+
+		if (fen != null) 										// a game from a set position keeps the FEN.
+		{
+			data.writeShort(fenBytes.length);
+			data.write(fenBytes);
+		}
+
+		for (int i = 0; i < _game.getMoveCount(); i++)
+		{
+			data.writeShort(GameDatabase.encodeMove(_game.getMove(i)));
+		}
+
+		offset += 4 + (fen == null ? 0 : 2 + fenBytes.length) + (2L * _game.getMoveCount());
+		gameCount++;
+	}
+
+	/**
+	 * Returns the number of games written.
+	 *
+	 * @return The number of games.
+	 */
+	public long getGameCount()
+	{
+		return gameCount;
+	}
+
+	/**
+	 * Finishes writing the files.
+	 *
+	 * @throws IOException If the files can not be written to.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			data.close();
+		}
+		finally
+		{
+			index.close();
+		}
+	}
+
+	/**
+	 * Builds a database from a PGN file.
+	 *
+	 * Games with a move that is not legal are skipped and counted.
+	 *
+	 * @param _pgn The path of the PGN file.
+	 * @param _database The path of the database to create.
+	 * @return The number of games skipped.
+	 * @throws IOException If a file can not be read or written.
+	 */
+	public static long importPgn(Path _pgn, Path _database) throws IOException
+	{
+		long skipped = 0;
+
+		try (Reader in = new InputStreamReader(Files.newInputStream(_pgn), StandardCharsets.ISO_8859_1);
+			PgnReader reader = new PgnReader(in);
+			GameDatabaseWriter writer = new GameDatabaseWriter(_database))
+		{
+			while (true)
+			{
+				PgnGame game;
+
+				try
+				{
+					game = reader.next();
+				}
+				catch (IllegalArgumentException e) 			// the bad game has already been skipped.
+				{
+					skipped++;
+
+					continue;
+				}
+
+				if (game == null)
+				{
+					return skipped;
+				}
+
+				writer.add(game);
+			}
+		}
+	}
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+/**
+ * One game hosted by a SessionServer, without a board or a window.
+ *
+ * A session holds the position and the moves played, each move packed in an int, and checks every move against the
+ * same move generator the board uses. Moves may be given as their two squares, such as e2e4, or in SAN, such as Nf3.
+ *
+ * A session is not safe to use from more than one thread. The server only ever touches it from the thread of its
+ * shard.
+ */
+public class GameSession
+{
+	/**
+	 * The state of a game.
+	 */
+	public enum Status
+	{
+		PLAYING,
+		WHITE_WINS,
+		BLACK_WINS,
+		DRAWN
+	}
+
+	private static final ThreadLocal<int[]> BUFFERS = ThreadLocal.withInitial(() -> new int[MoveGenerator.MAX_MOVES]);	// holds the legal moves while a move is checked, one array for each thread.
+
+	private long id;												// holds the number the server knows the game by.
+	private Position position;										// holds the position after the moves played.
+	private int[] moves = new int[64];								// holds each move played, in order.
+	private int count = 0;											// holds the number of moves played.
+	private Status status = Status.PLAYING;							// holds the state of the game after the last move.
+
+	/**
+	 * Generates a new game session.
+	 *
+	 * @param _id The number the server knows the game by.
+	 * @param _start The position the game starts from, which the session takes over.
+	 */
+	public GameSession(long _id, Position _start)
+	{
+		id = _id;
+		position = _start;
+
+		updateStatus();
+	}
+
+	/**
+	 * Plays a move, if it is legal.
+	 *
+	 * @param _text The move, as its two squares or in SAN.
+	 * @return The state of the game after the move.
+	 * @throws IllegalArgumentException If the move is not legal, or the game is over.
+	 */
+	public Status play(String _text)
+	{
+		if (status != Status.PLAYING)
+		{
+			throw new IllegalArgumentException("The game is over");
+		}
+
+		int move = parse(_text);
+
+		position.makeMove(move); 									// made first, so a move that fails is never recorded.
+
+		if (count == moves.length)
+		{
+			moves = Arrays.copyOf(moves, count * 2);
+		}
+
+		moves[count++] = move;
+
+		updateStatus();
+
+		return status;
+	}
+
+	/**
+	 * Takes back the last move.
+	 *
+	 * @return Whether there was a move to take back.
+	 */
+	public boolean undo()
+	{
+		if (count == 0)
+		{
+			return false;
+		}
+
+		position.unmakeMove(moves[--count]);
+
+		updateStatus();
+
+		return true;
+	}
+
+	/**
+	 * Returns the legal moves in the position.
+	 *
+	 * @return The moves as their two squares, separated by spaces.
+	 */
+	public String legalMoves()
+	{
+		int[] buffer = BUFFERS.get();
+		int total = status == Status.PLAYING ? MoveGenerator.generateMoves(position, buffer) : 0;
+		StringBuilder text = new StringBuilder(total * 5);
+
+		for (int i = 0; i < total; i++)
+		{
+			text.append(i == 0 ? "" : " ").append(Move.toString(buffer[i]));
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Returns the number the server knows the game by.
+	 *
+	 * @return The id.
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Returns the position in FEN.
+	 *
+	 * @return The FEN.
+	 */
+	public String getFen()
+	{
+		return Fen.toFen(position);
+	}
+
+	/**
+	 * Returns the state of the game.
+	 *
+	 * @return The state.
+	 */
+	public Status getStatus()
+	{
+		return status;
+	}
+
+	/**
+	 * Returns the number of moves played.
+	 *
+	 * @return The number of moves.
+	 */
+	public int getMoveCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns a move played.
+	 *
+	 * @param _index The number of the move, from 0.
+	 * @return The packed move.
+	 */
+	public int getMove(int _index)
+	{
+		return moves[_index];
+	}
+
+	/**
+	 * Finds the legal move a text names.
+	 *
+	 * @param _text The move, as its two squares or in SAN.
+	 * @return The move.
+	 * @throws IllegalArgumentException If the move is not legal.
+	 */
+	private int parse(String _text)
+	{
+		int[] buffer = BUFFERS.get();
+		int move = Move.find(_text, buffer, MoveGenerator.generateMoves(position, buffer)); 	// the two squares are tried first, as programs send them.
+
+		return move != Move.NONE ? move : San.parse(position, _text);
+	}
+
+	/**
+	 * Works out whether the game is over, by the same rules as the board.
+	 */
+	private void updateStatus()
+	{
+		boolean noMoves = MoveGenerator.generateMoves(position, BUFFERS.get()) == 0;
+
+		if (noMoves && position.isInCheck()) 						// the side to move has been checkmated.
+		{
+			status = position.getSideToMove() == Position.WHITE ? Status.BLACK_WINS : Status.WHITE_WINS;
+		}
+		else if (noMoves || position.isGameDrawn())
+		{
+			status = Status.DRAWN;
+		}
+		else
+		{
+			status = Status.PLAYING;
+		}
+	}
+}
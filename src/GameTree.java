@@ -0,0 +1,537 @@
+import java.util.Arrays;
+
+/**
+ * Holds every move played or tried in a game, with its variations, so the game can be gone back over and branched.
+ *
+ * Each node of the tree is the position after one move, and node 0 is the starting position. The nodes are kept in
+ * plain int arrays rather than objects: the move that leads to each node, its parent, its first child, its next
+ * sibling, the child last visited from it and its depth, which is 24 bytes a move. No positions are stored. The tree
+ * owns one position, which always shows the current node, and moving to another node takes back and plays the moves
+ * between them, so going anywhere costs a few make and unmake calls and nothing more.
+ *
+ * The first child of a node is its main line, and the other children are its variations, in the order they were
+ * first played. Playing a move that is already a child of the current node goes to that child rather than adding
+ * it again. Redo follows the child last visited, so undo and then redo comes back along the same line.
+ */
+public class GameTree
+{
+	public static final int ROOT = 0;							// the node of the starting position.
+	public static final int NO_NODE = -1;						// used where there is no node.
+
+	private Position position;									// holds the position of the current node.
+	private int[] moves = new int[64];							// holds the move that leads to each node.
+	private int[] parents = new int[64];						// holds the parent of each node.
+	private int[] firstChildren = new int[64];					// holds the first child of each node, its main line.
+	private int[] nextSiblings = new int[64];					// holds the next child of each node's parent.
+	private int[] lastVisited = new int[64];					// holds the child last visited from each node, which redo follows.
+	private int[] depths = new int[64];							// holds the number of moves from the start to each node.
+	private int size = 1;										// holds the number of nodes.
+	private int current = ROOT;									// holds the node the position shows.
+
+	/**
+	 * Generates a new game tree.
+	 *
+	 * @param _start The position the game starts from, which is copied.
+	 */
+	public GameTree(Position _start)
+	{
+		position = new Position(_start);
+		moves[ROOT] = Move.NONE;
+		parents[ROOT] = NO_NODE;
+		firstChildren[ROOT] = NO_NODE;
+		nextSiblings[ROOT] = NO_NODE;
+		lastVisited[ROOT] = NO_NODE;
+		depths[ROOT] = 0;
+	}
+
+	/**
+	 * Returns the position of the current node.
+	 *
+	 * The position belongs to the tree and changes as the tree is moved through, so it must only be read.
+	 *
+	 * @return The position.
+	 */
+	public Position getPosition()
+	{
+		return position;
+	}
+
+	/**
+	 * Plays a move from the current node, going to its node.
+	 *
+	 * @param _move The legal move to play.
+	 * @return The node after the move, which is new unless the move had been played from here before.
+	 */
+	public int play(int _move)
+	{
+		int child = findChild(current, _move);
+
+		if (child == NO_NODE) 										// a new move, added after the other children.
+		{
+			child = addChild(current, _move);
+		}
+
+		down(child);
+
+		return child;
+	}
+
+	/**
+	 * Takes back the move that led to the current node.
+	 *
+	 * @return Whether there was a move to take back.
+	 */
+	public boolean undo()
+	{
+		if (current == ROOT)
+		{
+			return false;
+		}
+
+		up();
+
+		return true;
+	}
+
+	/**
+	 * Plays again the move last taken back from the current node, or its main line if none was.
+	 *
+	 * @return Whether there was a move to play.
+	 */
+	public boolean redo()
+	{
+		int child = lastVisited[current] != NO_NODE ? lastVisited[current] : firstChildren[current];
+
+		if (child == NO_NODE)
+		{
+			return false;
+		}
+
+		down(child);
+
+		return true;
+	}
+
+	/**
+	 * Goes to the starting position.
+	 */
+	public void goToStart()
+	{
+		while (undo())
+		{
+			// taking back every move.
+		}
+	}
+
+	/**
+	 * Goes to the end of the line redo follows.
+	 */
+	public void goToEnd()
+	{
+		while (redo())
+		{
+			// playing every move of the line.
+		}
+	}
+
+	/**
+	 * Goes to a ply of the current line, going back through the moves played or on along the line redo follows.
+	 *
+	 * @param _ply The number of moves from the start. A ply past the end of the line goes to its end.
+	 */
+	public void goToPly(int _ply)
+	{
+		while (depths[current] > Math.max(0, _ply))
+		{
+			up();
+		}
+
+		while (depths[current] < _ply && redo())
+		{
+			// playing on along the line.
+		}
+	}
+
+	/**
+	 * Goes to any node, taking back moves to the node both lines share and then playing the moves down to it.
+	 *
+	 * @param _node The node.
+	 * @throws IllegalArgumentException If there is no such node.
+	 */
+	public void goTo(int _node)
+	{
+		if (!isInTree(_node))
+		{
+			throw new IllegalArgumentException("No node " + _node);
+		}
+
+		int[] path = new int[depths[_node]];
+		int node = _node, length = 0;
+
+		while (depths[node] > depths[current]) 						// climbing from the node to the depth of the current node.
+		{
+			path[length++] = node;
+			node = parents[node];
+		}
+
+		while (depths[current] > depths[node]) 						// climbing from the current node to the same depth.
+		{
+			up();
+		}
+
+		while (current != node) 									// climbing both until they meet.
+		{
+			up();
+			path[length++] = node;
+			node = parents[node];
+		}
+
+		while (length > 0) 											// playing the moves down to the node.
+		{
+			down(path[--length]);
+		}
+	}
+
+	/**
+	 * Goes to the next variation of the current node, the child after it of the same parent, going round to the first.
+	 *
+	 * @return Whether there was another variation to go to.
+	 */
+	public boolean nextVariation()
+	{
+		if (current == ROOT)
+		{
+			return false;
+		}
+
+		int parent = parents[current];
+		int sibling = nextSiblings[current] != NO_NODE ? nextSiblings[current] : firstChildren[parent];
+
+		if (sibling == current)
+		{
+			return false;
+		}
+
+		up();
+		down(sibling);
+
+		return true;
+	}
+
+	/**
+	 * Makes a node and the line that leads to it the main line.
+	 *
+	 * @param _node The node.
+	 */
+	public void promote(int _node)
+	{
+		for (int node = _node; node != ROOT; node = parents[node]) 	// each node on the way up becomes the first child of its parent.
+		{
+			int parent = parents[node];
+
+			if (firstChildren[parent] != node)
+			{
+				unlink(node);
+				nextSiblings[node] = firstChildren[parent];
+				firstChildren[parent] = node;
+			}
+		}
+	}
+
+	/**
+	 * Removes a node and every node after it from the tree.
+	 *
+	 * If the current node is among them, the tree goes back to the parent of the removed node first. The removed nodes
+	 * keep their space in the arrays until the tree is thrown away.
+	 *
+	 * @param _node The node, which must not be the starting position.
+	 * @throws IllegalArgumentException If the node is the starting position, or is not in the tree.
+	 */
+	public void remove(int _node)
+	{
+		if (_node == ROOT || !isInTree(_node))
+		{
+			throw new IllegalArgumentException("Node " + _node + " can not be removed");
+		}
+
+		if (isAncestor(_node, current))
+		{
+			goTo(parents[_node]);
+		}
+
+		int parent = parents[_node];
+
+		unlink(_node);
+
+		if (lastVisited[parent] == _node)
+		{
+			lastVisited[parent] = NO_NODE;
+		}
+
+		parents[_node] = NO_NODE; 									// marks the node as removed.
+	}
+
+	/**
+	 * Returns the node the position shows.
+	 *
+	 * @return The node.
+	 */
+	public int getCurrent()
+	{
+		return current;
+	}
+
+	/**
+	 * Returns the number of moves from the start to the current node.
+	 *
+	 * @return The ply.
+	 */
+	public int getPly()
+	{
+		return depths[current];
+	}
+
+	/**
+	 * Returns the move that leads to a node.
+	 *
+	 * @param _node The node.
+	 * @return The packed move, or Move.NONE for the starting position.
+	 */
+	public int getMove(int _node)
+	{
+		return moves[_node];
+	}
+
+	/**
+	 * Returns the parent of a node.
+	 *
+	 * @param _node The node.
+	 * @return The parent, or NO_NODE for the starting position.
+	 */
+	public int getParent(int _node)
+	{
+		return parents[_node];
+	}
+
+	/**
+	 * Returns the children of a node, the main line first.
+	 *
+	 * @param _node The node.
+	 * @return The children.
+	 */
+	public int[] getChildren(int _node)
+	{
+		int count = 0;
+
+		for (int child = firstChildren[_node]; child != NO_NODE; child = nextSiblings[child])
+		{
+			count++;
+		}
+
+		int[] children = new int[count];
+
+		count = 0;
+
+		for (int child = firstChildren[_node]; child != NO_NODE; child = nextSiblings[child])
+		{
+			children[count++] = child;
+		}
+
+		return children;
+	}
+
+	/**
+	 * Returns the moves from the start to the end of the line redo follows from the current node.
+	 *
+	 * @return The packed moves, in order.
+	 */
+	public int[] getLine()
+	{
+		int end = current;
+
+		while ((lastVisited[end] != NO_NODE ? lastVisited[end] : firstChildren[end]) != NO_NODE) 	// finding the end of the line.
+		{
+			end = lastVisited[end] != NO_NODE ? lastVisited[end] : firstChildren[end];
+		}
+
+		int[] line = new int[depths[end]];
+
+		for (int node = end; node != ROOT; node = parents[node])
+		{
+			line[depths[node] - 1] = moves[node];
+		}
+
+		return line;
+	}
+
+	/**
+	 * Returns the number of nodes, counting the starting position and any removed nodes.
+	 *
+	 * @return The number of nodes.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Plays the move that leads to a child of the current node.
+	 *
+	 * @param _child The child.
+	 */
+	private void down(int _child)
+	{
+		position.makeMove(moves[_child]);
+		lastVisited[current] = _child;
+		current = _child;
+	}
+
+	/**
+	 * Takes back the move that leads to the current node, going to its parent.
+	 */
+	private void up()
+	{
+		position.unmakeMove(moves[current]);
+		current = parents[current];
+	}
+
+	/**
+	 * Finds the child of a node reached by a move.
+	 *
+	 * @param _node The node.
+	 * @param _move The move.
+	 * @return The child, or NO_NODE if the move has not been played from the node.
+	 */
+	private int findChild(int _node, int _move)
+	{
+		for (int child = firstChildren[_node]; child != NO_NODE; child = nextSiblings[child])
+		{
+			if (moves[child] == _move)
+			{
+				return child;
+			}
+		}
+
+		return NO_NODE;
+	}
+
+	/**
+	 * Adds a child after the other children of a node.
+	 *
+	 * @param _node The node.
+	 * @param _move The move that leads to the child.
+	 * @return The new child.
+	 */
+	private int addChild(int _node, int _move)
+	{
+		if (size == moves.length) 									// growing every array together.
+		{
+			int length = size * 2;
+
+			moves = Arrays.copyOf(moves, length);
+			parents = Arrays.copyOf(parents, length);
+			firstChildren = Arrays.copyOf(firstChildren, length);
+			nextSiblings = Arrays.copyOf(nextSiblings, length);
+			lastVisited = Arrays.copyOf(lastVisited, length);
+			depths = Arrays.copyOf(depths, length);
+		}
+
+		int child = size++;
+
+		moves[child] = _move;
+		parents[child] = _node;
+		firstChildren[child] = NO_NODE;
+		nextSiblings[child] = NO_NODE;
+		lastVisited[child] = NO_NODE;
+		depths[child] = depths[_node] + 1;
+
+		if (firstChildren[_node] == NO_NODE)
+		{
+			firstChildren[_node] = child;
+		}
+		else
+		{
+			int last = firstChildren[_node];
+
+			while (nextSiblings[last] != NO_NODE)
+			{
+				last = nextSiblings[last];
+			}
+
+			nextSiblings[last] = child;
+		}
+
+		return child;
+	}
+
+	/**
+	 * Takes a node out of the list of its parent's children.
+	 *
+	 * @param _node The node, which is not the starting position.
+	 */
+	private void unlink(int _node)
+	{
+		int parent = parents[_node];
+
+		if (firstChildren[parent] == _node)
+		{
+			firstChildren[parent] = nextSiblings[_node];
+		}
+		else
+		{
+			int before = firstChildren[parent];
+
+			while (nextSiblings[before] != _node)
+			{
+				before = nextSiblings[before];
+			}
+
+			nextSiblings[before] = nextSiblings[_node];
+		}
+
+		nextSiblings[_node] = NO_NODE;
+	}
+
+	/**
+	 * Checks if a node exists and has not been removed, along with any node before it.
+	 *
+	 * @param _node The node.
+	 * @return Whether the node can be reached from the start.
+	 */
+	private boolean isInTree(int _node)
+	{
+		if (_node < 0 || _node >= size)
+		{
+			return false;
+		}
+
+		int node = _node;
+
+		while (node != ROOT && node != NO_NODE) 					// a removed node has no parent.
+		{
+			node = parents[node];
+		}
+
+		return node == ROOT;
+	}
+
+	/**
+	 * Checks if a node is another node or comes before it.
+	 *
+	 * @param _ancestor The node that may come first.
+	 * @param _node The node.
+	 * @return Whether the line to the node passes through the other node.
+	 */
+	private boolean isAncestor(int _ancestor, int _node)
+	{
+		for (int node = _node; node != NO_NODE && depths[node] >= depths[_ancestor]; node = parents[node])
+		{
+			if (node == _ancestor)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
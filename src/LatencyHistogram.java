@@ -0,0 +1,169 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long something takes, in buckets that grow with the time, so any percentile can be read back to within
+ * about six percent.
+ *
+ * Times below 16 nanoseconds each have a bucket of their own. Above that every power of two is split into 16 equal
+ * buckets, as HdrHistogram does, so the whole range of a long fits in under a thousand buckets. Recording a time is
+ * a few shifts and one atomic add, with no locks and no objects created, so it is cheap enough for code that runs on
+ * every click or every search. Any thread may record, and the percentiles may be read while other threads record.
+ */
+public final class LatencyHistogram
+{
+	private static final int SUB_BITS = 4;						// each power of two is split into 2 to the power of this buckets.
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;	// enough buckets for any long.
+
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);	// holds how many times fell in each bucket.
+	private LongAdder total = new LongAdder();					// holds the sum of the times recorded.
+	private LongAdder count = new LongAdder();					// holds how many times were recorded.
+	private LongAccumulator max = new LongAccumulator(Math::max, 0L);	// holds the longest time recorded.
+
+	/**
+	 * Records one time.
+	 *
+	 * @param _nanos The time in nanoseconds. Negative times are counted as 0.
+	 */
+	public void record(long _nanos)
+	{
+		long nanos = Math.max(0L, _nanos);
+
+		counts.incrementAndGet(bucket(nanos));
+		total.add(nanos);
+		count.increment();
+		max.accumulate(nanos);
+	}
+
+	/**
+	 * Returns how many times have been recorded.
+	 *
+	 * @return The number of times.
+	 */
+	public long getCount()
+	{
+		return count.sum();
+	}
+
+	/**
+	 * Returns the average time recorded.
+	 *
+	 * @return The average in nanoseconds, or 0 if nothing has been recorded.
+	 */
+	public long getMean()
+	{
+		long recorded = count.sum();
+
+		return recorded == 0 ? 0 : total.sum() / recorded;
+	}
+
+	/**
+	 * Returns the longest time recorded.
+	 *
+	 * @return The time in nanoseconds.
+	 */
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * Returns the time that a share of the recorded times were at or below.
+	 *
+	 * @param _percentile The share, from 0 to 100, such as 99 for the 99th percentile.
+	 * @return The time in nanoseconds, rounded down to the start of its bucket, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double _percentile)
+	{
+		long[] snapshot = new long[BUCKETS];
+		long recorded = 0;
+
+		for (int i = 0; i < BUCKETS; i++) 							// the counts are copied once, so they add up while others record.
+		{
+			snapshot[i] = counts.get(i);
+			recorded += snapshot[i];
+		}
+
+		long wanted = Math.max(1, (long) Math.ceil(recorded * Math.min(100.0, Math.max(0.0, _percentile)) / 100.0));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKETS && recorded > 0; i++)
+		{
+			seen += snapshot[i];
+
+			if (seen >= wanted)
+			{
+				return Math.min(lowestIn(i), max.get());
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Forgets every time recorded.
+	 *
+	 * Times recorded while this runs may be partly kept.
+	 */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts.set(i, 0);
+		}
+
+		total.reset();
+		count.reset();
+		max.reset();
+	}
+
+	/**
+	 * Returns the count, average, median, 99th percentile and longest time, in microseconds.
+	 *
+	 * @return The summary, such as count 120 mean 35.2us p50 30.0us p99 80.0us max 95.1us.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format("count %d mean %.1fus p50 %.1fus p99 %.1fus max %.1fus", getCount(), getMean() / 1000.0,
+			getPercentile(50) / 1000.0, getPercentile(99) / 1000.0, getMax() / 1000.0);
+	}
+
+	/**
+	 * Returns the bucket a time falls in.
+	 *
+	 * @param _nanos The time, which is not negative.
+	 * @return The index of the bucket.
+	 */
+	private static int bucket(long _nanos)
+	{
+		if (_nanos < SUB_BUCKETS) 									// small times are counted exactly.
+		{
+			return (int) _nanos;
+		}
+
+		int power = 63 - Long.numberOfLeadingZeros(_nanos); 		// the highest bit set, at least SUB_BITS.
+
+		return ((power - SUB_BITS + 1) << SUB_BITS) + (int) ((_nanos >>> (power - SUB_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	/**
+	 * Returns the shortest time that falls in a bucket.
+	 *
+	 * @param _bucket The index of the bucket.
+	 * @return The time in nanoseconds.
+	 */
+	private static long lowestIn(int _bucket)
+	{
+		if (_bucket < SUB_BUCKETS)
+		{
+			return _bucket;
+		}
+
+		int power = (_bucket >>> SUB_BITS) + SUB_BITS - 1;
+
+		return (long) (SUB_BUCKETS + (_bucket & (SUB_BUCKETS - 1))) << (power - SUB_BITS);
+	}
+}
@@ -0,0 +1,403 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counts and times the busiest parts of the program: the move generator, the search, drawing the squares and
+ * answering clicks on the board.
+ *
+ * The metrics are off unless turned on, and while they are off each recording method only reads one flag, so the
+ * move generator runs at the same speed as without them. When they are on, the counters are LongAdders, which
+ * threads can add to at once without waiting on each other, and the times go into LatencyHistograms.
+ *
+ * The metrics can be read and turned on or off over JMX, under the name chess:type=Metrics, and can be written to a
+ * log at a fixed period. The system properties chess.metrics=true and chess.metrics.log=&lt;seconds&gt; do both from
+ * the command line.
+ */
+public final class Metrics
+{
+	public static final String OBJECT_NAME = "chess:type=Metrics";	// the name the metrics have over JMX.
+
+	private static volatile boolean enabled = false;				// set while the metrics are recorded.
+
+	private static final LongAdder GENERATE_CALLS = new LongAdder();	// how many times the move generator was called.
+	private static final LongAdder MOVES_GENERATED = new LongAdder();	// how many moves it wrote.
+	private static final LongAdder SEARCHES = new LongAdder();		// how many searches finished.
+	private static final LongAdder NODES_SEARCHED = new LongAdder();	// how many positions they visited.
+	private static final LongAdder ICON_LOADS = new LongAdder();		// how many sets of icons were drawn or scaled.
+	private static final LongAdder SQUARE_UPDATES = new LongAdder();	// how many times a square changed its icon.
+	private static final LongAdder CLICKS = new LongAdder();			// how many clicks were answered by drawing the board.
+	private static final LatencyHistogram CLICK_TO_REPAINT = new LatencyHistogram();	// the time from a click to the board being drawn.
+	private static final LatencyHistogram SQUARE_UPDATE = new LatencyHistogram();		// the time taken to change a square's icon.
+	private static final LatencyHistogram SEARCH = new LatencyHistogram();				// the time taken by each search.
+
+	private static ScheduledExecutorService logger;				// writes the metrics at a fixed period, or null.
+
+	/**
+	 * The metrics are only used through the static methods.
+	 */
+	private Metrics()
+	{
+	}
+
+	/**
+	 * Registers the metrics over JMX, and turns them on and starts the log if the system properties ask for it.
+	 *
+	 * Nothing is recorded until the metrics are turned on, here or over JMX.
+	 */
+	public static void start()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new Bean(), MetricsMXBean.class, true),
+				new ObjectName(OBJECT_NAME));
+		}
+		catch (JMException e) 											// the metrics still work, they just can not be seen over JMX.
+		{
+			System.err.println("Could not register the metrics over JMX: " + e.getMessage());
+		}
+
+		if (Boolean.getBoolean("chess.metrics"))
+		{
+			setEnabled(true);
+		}
+
+		long period = Long.getLong("chess.metrics.log", 0L);
+
+		if (period > 0)
+		{
+			startLog(System.err, period);
+		}
+	}
+
+	/**
+	 * Returns whether the metrics are being recorded.
+	 *
+	 * @return Whether they are on.
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Turns recording the metrics on or off.
+	 *
+	 * @param _enabled Whether to record them.
+	 */
+	public static void setEnabled(boolean _enabled)
+	{
+		enabled = _enabled;
+	}
+
+	/**
+	 * Writes the metrics at a fixed period, on a thread of its own, while they are on.
+	 *
+	 * @param _out Where the metrics are written.
+	 * @param _seconds The time between each line.
+	 */
+	public static synchronized void startLog(PrintStream _out, long _seconds)
+	{
+		stopLog();
+
+		logger = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "metrics-log");
+
+			thread.setDaemon(true); 									// the log does not keep the program running.
+
+			return thread;
+		});
+
+		logger.scheduleAtFixedRate(() ->
+		{
+			if (enabled)
+			{
+				_out.println("metrics " + summary());
+			}
+		}, _seconds, _seconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stops writing the metrics, if they were being written.
+	 */
+	public static synchronized void stopLog()
+	{
+		if (logger != null)
+		{
+			logger.shutdownNow();
+			logger = null;
+		}
+	}
+
+	/**
+	 * Counts one call of the move generator.
+	 *
+	 * @param _moves The number of moves it wrote.
+	 */
+	public static void countMoves(int _moves)
+	{
+		if (enabled)
+		{
+			GENERATE_CALLS.increment();
+			MOVES_GENERATED.add(_moves);
+		}
+	}
+
+	/**
+	 * Counts one finished search.
+	 *
+	 * @param _nodes The number of positions it visited.
+	 * @param _nanos The time it took in nanoseconds.
+	 */
+	public static void countSearch(long _nodes, long _nanos)
+	{
+		if (enabled)
+		{
+			SEARCHES.increment();
+			NODES_SEARCHED.add(_nodes);
+			SEARCH.record(_nanos);
+		}
+	}
+
+	/**
+	 * Counts one set of square icons drawn or scaled.
+	 */
+	public static void countIconLoad()
+	{
+		if (enabled)
+		{
+			ICON_LOADS.increment();
+		}
+	}
+
+	/**
+	 * Counts one square changing its icon.
+	 *
+	 * @param _nanos The time it took in nanoseconds.
+	 */
+	public static void countSquareUpdate(long _nanos)
+	{
+		if (enabled)
+		{
+			SQUARE_UPDATES.increment();
+			SQUARE_UPDATE.record(_nanos);
+		}
+	}
+
+	/**
+	 * Counts one click on the board.
+	 *
+	 * @param _nanos The time from the click to the board being drawn again, in nanoseconds.
+	 */
+	public static void countClick(long _nanos)
+	{
+		if (enabled)
+		{
+			CLICKS.increment();
+			CLICK_TO_REPAINT.record(_nanos);
+		}
+	}
+
+	/**
+	 * Sets every counter and time back to zero.
+	 */
+	public static void reset()
+	{
+		for (LongAdder counter : new LongAdder[] {GENERATE_CALLS, MOVES_GENERATED, SEARCHES, NODES_SEARCHED, ICON_LOADS, SQUARE_UPDATES, CLICKS})
+		{
+			counter.reset();
+		}
+
+		CLICK_TO_REPAINT.reset();
+		SQUARE_UPDATE.reset();
+		SEARCH.reset();
+	}
+
+	/**
+	 * Returns every metric on one line.
+	 *
+	 * @return The summary.
+	 */
+	public static String summary()
+	{
+		return "generate calls " + GENERATE_CALLS.sum() + " moves " + MOVES_GENERATED.sum() + ", searches " + SEARCHES.sum()
+			+ " nodes " + NODES_SEARCHED.sum() + ", icon loads " + ICON_LOADS.sum() + ", square updates " + SQUARE_UPDATES.sum()
+			+ ", search [" + SEARCH + "], square update [" + SQUARE_UPDATE + "], click to repaint [" + CLICK_TO_REPAINT + "]";
+	}
+
+	/**
+	 * The object registered over JMX, which reads the metrics.
+	 */
+	private static class Bean implements MetricsMXBean
+	{
+		/**
+		 * Returns whether the metrics are being recorded.
+		 *
+		 * @return Whether they are on.
+		 */
+		@Override
+		public boolean isEnabled()
+		{
+			return Metrics.isEnabled();
+		}
+
+		/**
+		 * Turns recording the metrics on or off.
+		 *
+		 * @param _enabled Whether to record them.
+		 */
+		@Override
+		public void setEnabled(boolean _enabled)
+		{
+			Metrics.setEnabled(_enabled);
+		}
+
+		/**
+		 * Returns how many times the move generator has been called.
+		 *
+		 * @return The number of calls.
+		 */
+		@Override
+		public long getGenerateCalls()
+		{
+			return GENERATE_CALLS.sum();
+		}
+
+		/**
+		 * Returns how many moves the move generator has written.
+		 *
+		 * @return The number of moves.
+		 */
+		@Override
+		public long getMovesGenerated()
+		{
+			return MOVES_GENERATED.sum();
+		}
+
+		/**
+		 * Returns how many searches have finished.
+		 *
+		 * @return The number of searches.
+		 */
+		@Override
+		public long getSearches()
+		{
+			return SEARCHES.sum();
+		}
+
+		/**
+		 * Returns how many positions the finished searches visited.
+		 *
+		 * @return The number of positions.
+		 */
+		@Override
+		public long getNodesSearched()
+		{
+			return NODES_SEARCHED.sum();
+		}
+
+		/**
+		 * Returns how many sets of square icons have been drawn or scaled.
+		 *
+		 * @return The number of icon sets.
+		 */
+		@Override
+		public long getIconLoads()
+		{
+			return ICON_LOADS.sum();
+		}
+
+		/**
+		 * Returns how many times a square has changed its icon.
+		 *
+		 * @return The number of changes.
+		 */
+		@Override
+		public long getSquareUpdates()
+		{
+			return SQUARE_UPDATES.sum();
+		}
+
+		/**
+		 * Returns how many clicks on the board have been answered by drawing it again.
+		 *
+		 * @return The number of clicks.
+		 */
+		@Override
+		public long getClicks()
+		{
+			return CLICKS.sum();
+		}
+
+		/**
+		 * Returns the median time from a click to the board being drawn again.
+		 *
+		 * @return The time in microseconds.
+		 */
+		@Override
+		public double getClickToRepaintMedian()
+		{
+			return CLICK_TO_REPAINT.getPercentile(50) / 1000.0;
+		}
+
+		/**
+		 * Returns the 99th percentile time from a click to the board being drawn again.
+		 *
+		 * @return The time in microseconds.
+		 */
+		@Override
+		public double getClickToRepaint99()
+		{
+			return CLICK_TO_REPAINT.getPercentile(99) / 1000.0;
+		}
+
+		/**
+		 * Returns the median time taken to change the icon of a square.
+		 *
+		 * @return The time in microseconds.
+		 */
+		@Override
+		public double getSquareUpdateMedian()
+		{
+			return SQUARE_UPDATE.getPercentile(50) / 1000.0;
+		}
+
+		/**
+		 * Returns the median time taken by a search.
+		 *
+		 * @return The time in microseconds.
+		 */
+		@Override
+		public double getSearchMedian()
+		{
+			return SEARCH.getPercentile(50) / 1000.0;
+		}
+
+		/**
+		 * Returns every metric on one line, as the periodic log writes it.
+		 *
+		 * @return The summary.
+		 */
+		@Override
+		public String getSummary()
+		{
+			return summary();
+		}
+
+		/**
+		 * Sets every counter and time back to zero.
+		 */
+		@Override
+		public void reset()
+		{
+			Metrics.reset();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * The view of Metrics given over JMX, so the counters can be read and turned on or off from tools such as JConsole
+ * while the program runs.
+ *
+ * Times are in microseconds.
+ */
+public interface MetricsMXBean
+{
+	/**
+	 * Returns whether the metrics are being recorded.
+	 *
+	 * @return Whether they are on.
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Turns recording the metrics on or off.
+	 *
+	 * @param _enabled Whether to record them.
+	 */
+	void setEnabled(boolean _enabled);
+
+	/**
+	 * Returns how many times the move generator has been called.
+	 *
+	 * @return The number of calls.
+	 */
+	long getGenerateCalls();
+
+	/**
+	 * Returns how many moves the move generator has written.
+	 *
+	 * @return The number of moves.
+	 */
+	long getMovesGenerated();
+
+	/**
+	 * Returns how many searches have finished.
+	 *
+	 * @return The number of searches.
+	 */
+	long getSearches();
+
+	/**
+	 * Returns how many positions the finished searches visited.
+	 *
+	 * @return The number of positions.
+	 */
+	long getNodesSearched();
+
+	/**
+	 * Returns how many sets of square icons have been drawn or scaled.
+	 *
+	 * @return The number of icon sets.
+	 */
+	long getIconLoads();
+
+	/**
+	 * Returns how many times a square has changed its icon.
+	 *
+	 * @return The number of changes.
+	 */
+	long getSquareUpdates();
+
+	/**
+	 * Returns how many clicks on the board have been answered by drawing it again.
+	 *
+	 * @return The number of clicks.
+	 */
+	long getClicks();
+
+	/**
+	 * Returns the median time from a click to the board being drawn again.
+	 *
+	 * @return The time in microseconds.
+	 */
+	double getClickToRepaintMedian();
+
+	/**
+	 * Returns the 99th percentile time from a click to the board being drawn again.
+	 *
+	 * @return The time in microseconds.
+	 */
+	double getClickToRepaint99();
+
+	/**
+	 * Returns the median time taken to change the icon of a square.
+	 *
+	 * @return The time in microseconds.
+	 */
+	double getSquareUpdateMedian();
+
+	/**
+	 * Returns the median time taken by a search.
+	 *
+	 * @return The time in microseconds.
+	 */
+	double getSearchMedian();
+
+	/**
+	 * Returns every metric on one line, as the periodic log writes it.
+	 *
+	 * @return The summary.
+	 */
+	String getSummary();
+
+	/**
+	 * Sets every counter and time back to zero.
+	 */
+	void reset();
+}
@@ -0,0 +1,229 @@
+/**
+ * Packs and unpacks the moves used by the move generator.
+ *
+ * A move is a single int, so lists of moves can be held in plain int arrays without creating any objects.
+ * Bits 0 to 5 hold the square the piece moves from, bits 6 to 11 hold the square it moves to and bits 12 to 14
+ * hold the type of the piece. Bits 15 to 17 hold the type of the piece taken, bits 18 to 20 hold the type the
+ * pawn promotes to (0 for none, as a pawn never promotes to a pawn) and bits 21 to 24 are flags for captures,
+ * pawns moving two squares, en passant and castling. The value 0 is never a real move, so it is used to mean no
+ * move.
+ */
+public final class Move
+{
+	public static final int NONE = 0;							// used when there is no move.
+
+	public static final int CAPTURE = 1 << 21;					// the flags of the special kinds of move.
+	public static final int DOUBLE_PUSH = 1 << 22;
+	public static final int EN_PASSANT = 1 << 23;
+	public static final int CASTLE = 1 << 24;
+
+	private static final int SQUARE_MASK = 0x3F;				// the six bits that hold a square.
+	private static final int PIECE_MASK = 0x7;					// the three bits that hold a piece type.
+	private static final int TO_SHIFT = 6;						// where each part of the move starts.
+	private static final int PIECE_SHIFT = 12;
+	private static final int CAPTURED_SHIFT = 15;
+	private static final int PROMOTION_SHIFT = 18;
+
+	private static final String PROMOTION_LETTERS = " nbrq";	// the letter of each piece a pawn can promote to.
+
+	/**
+	 * The moves are only used through the static methods.
+	 */
+	private Move()
+	{
+	}
+
+	/**
+	 * Packs a quiet move into an int.
+	 *
+	 * @param _from The square the piece moves from.
+	 * @param _to The square the piece moves to.
+	 * @param _piece The type of the piece.
+	 * @return The packed move.
+	 */
+	public static int create(int _from, int _to, int _piece)
+	{
+		return _from | (_to << TO_SHIFT) | (_piece << PIECE_SHIFT);
+	}
+
+	/**
+	 * Packs any move into an int.
+	 *
+	 * @param _from The square the piece moves from.
+	 * @param _to The square the piece moves to.
+	 * @param _piece The type of the piece.
+	 * @param _captured The type of the piece taken, which is ignored unless the CAPTURE flag is set.
+	 * @param _promotion The type the pawn promotes to, or 0 for none.
+	 * @param _flags The flags of the move.
+	 * @return The packed move.
+	 */
+	public static int create(int _from, int _to, int _piece, int _captured, int _promotion, int _flags)
+	{
+		return _from | (_to << TO_SHIFT) | (_piece << PIECE_SHIFT) | ((_captured & PIECE_MASK) << CAPTURED_SHIFT)
+			| (_promotion << PROMOTION_SHIFT) | _flags;
+	}
+
+	/**
+	 * Returns the square the piece moves from.
+	 *
+	 * @param _move The packed move.
+	 * @return The square the piece moves from.
+	 */
+	public static int getFrom(int _move)
+	{
+		return _move & SQUARE_MASK;
+	}
+
+	/**
+	 * Returns the square the piece moves to.
+	 *
+	 * @param _move The packed move.
+	 * @return The square the piece moves to.
+	 */
+	public static int getTo(int _move)
+	{
+		return (_move >>> TO_SHIFT) & SQUARE_MASK;
+	}
+
+	/**
+	 * Returns the type of the piece that moves.
+	 *
+	 * @param _move The packed move.
+	 * @return The type of the piece.
+	 */
+	public static int getPiece(int _move)
+	{
+		return (_move >>> PIECE_SHIFT) & PIECE_MASK;
+	}
+
+	/**
+	 * Returns the type of the piece taken.
+	 *
+	 * @param _move The packed move.
+	 * @return The type of the piece taken, which is only meaningful for captures.
+	 */
+	public static int getCaptured(int _move)
+	{
+		return (_move >>> CAPTURED_SHIFT) & PIECE_MASK;
+	}
+
+	/**
+	 * Returns the type the pawn promotes to.
+	 *
+	 * @param _move The packed move.
+	 * @return The type the pawn promotes to, or 0 if the move is not a promotion.
+	 */
+	public static int getPromotion(int _move)
+	{
+		return (_move >>> PROMOTION_SHIFT) & PIECE_MASK;
+	}
+
+	/**
+	 * Checks if a move takes a piece, including en passant.
+	 *
+	 * @param _move The packed move.
+	 * @return Whether the move is a capture.
+	 */
+	public static boolean isCapture(int _move)
+	{
+		return (_move & CAPTURE) != 0;
+	}
+
+	/**
+	 * Checks if a move has a flag set.
+	 *
+	 * @param _move The packed move.
+	 * @param _flag The flag.
+	 * @return Whether the flag is set.
+	 */
+	public static boolean hasFlag(int _move, int _flag)
+	{
+		return (_move & _flag) != 0;
+	}
+
+	/**
+	 * Returns the name of a square, such as e2.
+	 *
+	 * The columns are the letters a to h from the left and the rows are numbered 1 to 8 from the bottom.
+	 *
+	 * @param _square The square.
+	 * @return The name of the square.
+	 */
+	public static String squareName(int _square)
+	{
+		return "" + (char) ('a' + (_square % 8)) + (char) ('8' - (_square / 8));
+	}
+
+	/**
+	 * Returns the square with a name, such as e2.
+	 *
+	 * @param _name The name of the square.
+	 * @return The square, or -1 if the name is not a square.
+	 */
+	public static int parseSquare(String _name)
+	{
+		if (_name.length() != 2 || _name.charAt(0) < 'a' || _name.charAt(0) > 'h' || _name.charAt(1) < '1' || _name.charAt(1) > '8')
+		{
+			return -1;
+		}
+
+		return (8 * ('8' - _name.charAt(1))) + (_name.charAt(0) - 'a');
+	}
+
+	/**
+	 * Finds the move written as the two square names, such as e2e4 or e7e8q, among some moves.
+	 *
+	 * @param _text The move as text.
+	 * @param _moves The moves to look in, such as the legal moves of a position.
+	 * @param _count The number of moves.
+	 * @return The move, or NONE if it is not one of them.
+	 */
+	public static int find(String _text, int[] _moves, int _count)
+	{
+		if (_text.length() != 4 && _text.length() != 5)
+		{
+			return NONE;
+		}
+
+		int from = parseSquare(_text.substring(0, 2)), to = parseSquare(_text.substring(2, 4));
+		int promotion = _text.length() == 5 ? PROMOTION_LETTERS.indexOf(_text.charAt(4)) : 0;
+
+		if (promotion < 0)
+		{
+			return NONE;
+		}
+
+		for (int i = 0; i < _count; i++) 							// comparing the squares rather than writing out each move.
+		{
+			if (getFrom(_moves[i]) == from && getTo(_moves[i]) == to && getPromotion(_moves[i]) == promotion)
+			{
+				return _moves[i];
+			}
+		}
+
+		return NONE;
+	}
+
+	/**
+	 * Returns the move written as the two square names, such as e2e4, with the promotion letter added for promotions.
+	 *
+	 * @param _move The packed move.
+	 * @return The move as text.
+	 */
+	public static String toString(int _move)
+	{
+		if (_move == NONE)
+		{
+			return "0000";
+		}
+
+		String text = squareName(getFrom(_move)) + squareName(getTo(_move));
+
+		if (getPromotion(_move) != 0)
+		{
+			text += PROMOTION_LETTERS.charAt(getPromotion(_move));
+		}
+
+		return text;
+	}
+}
@@ -0,0 +1,395 @@
+/**
+ * Generates the legal moves of a position.
+ *
+ * The moves are written as packed ints into an array owned by the caller, so generating moves does not create
+ * any objects and the same array can be reused for every position.
+ *
+ * Only legal moves are generated, so a move never has to be played to see if it leaves the king in check. Before
+ * any moves are made the generator finds the pieces giving check and the pieces pinned to the king. In check, every
+ * move other than a king move must take the checking piece or block the line to the king, and in double check only
+ * the king can move. A pinned piece can only move along the line between the king and the piece pinning it.
+ */
+public final class MoveGenerator
+{
+	public static final int MAX_MOVES = 256;					// the size of buffer that can hold the moves of any position.
+
+	/**
+	 * The generator is only used through the static methods.
+	 */
+	private MoveGenerator()
+	{
+	}
+
+	/**
+	 * Generates every legal move of the side to move.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to, which must hold at least MAX_MOVES moves.
+	 * @return The number of moves written to the array.
+	 */
+	public static int generateMoves(Position _position, int[] _buffer)
+	{
+		int count = generate(_position, _buffer, -1L, false);
+
+		Metrics.countMoves(count);
+
+		return count;
+	}
+
+	/**
+	 * Generates the legal captures and queen promotions of the side to move, which are the moves the quiescence search
+	 * looks at.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to, which must hold at least MAX_MOVES moves.
+	 * @return The number of moves written to the array.
+	 */
+	public static int generateCaptures(Position _position, int[] _buffer)
+	{
+		int count = generate(_position, _buffer, -1L, true);
+
+		Metrics.countMoves(count);
+
+		return count;
+	}
+
+	/**
+	 * Generates the legal moves of the piece on one square.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _square The square of the piece.
+	 * @param _buffer The array the moves are written to, which must hold at least MAX_MOVES moves.
+	 * @return The number of moves written to the array.
+	 */
+	public static int generateMoves(Position _position, int _square, int[] _buffer)
+	{
+		if (_position.getPieceAt(_square) == Position.NO_PIECE || _position.getColourAt(_square) != _position.getSideToMove())
+		{
+			return 0; 														// only the side to move has moves.
+		}
+
+		int count = generate(_position, _buffer, 1L << _square, false);
+
+		Metrics.countMoves(count);
+
+		return count;
+	}
+
+	/**
+	 * Generates the legal moves of the side to move.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to.
+	 * @param _fromMask The squares of the pieces to generate the moves of.
+	 * @param _capturesOnly Whether to generate only captures and queen promotions.
+	 * @return The number of moves written to the array.
+	 */
+	private static int generate(Position _position, int[] _buffer, long _fromMask, boolean _capturesOnly)
+	{
+		int us = _position.getSideToMove(), them = 1 - us;
+		int king = Long.numberOfTrailingZeros(_position.getPieces(us, Position.KING));
+		long occupancy = _position.getOccupancy();
+		long ours = _position.getColourOccupancy(us), theirs = _position.getColourOccupancy(them);
+		long allowed = _capturesOnly ? theirs : ~ours;					// the squares the pieces may move to.
+		int count = 0;
+
+		long kingTargets = (_fromMask & (1L << king)) != 0 ? Attacks.kingAttacks(king) & allowed : 0L;
+		long withoutKing = occupancy & ~(1L << king); 					// the king must not hide behind itself from a slider.
+
+		while (kingTargets != 0) 										// the king can go to any square that is not attacked.
+		{
+			int to = Long.numberOfTrailingZeros(kingTargets);
+
+			if (_position.attackersTo(to, them, withoutKing) == 0)
+			{
+				count = add(_position, _buffer, count, king, to, Position.KING, 0, 0);
+			}
+
+			kingTargets &= kingTargets - 1;
+		}
+
+		long checkers = _position.attackersTo(king, them, occupancy);
+
+		if (Long.bitCount(checkers) > 1) 								// in double check only the king can move.
+		{
+			return count;
+		}
+
+		long checkMask = checkers == 0 ? -1L : checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+		long pinned = pinnedPieces(_position, us, king, occupancy, ours);
+
+		for (int piece = Position.KNIGHT; piece <= Position.QUEEN; piece++) 	// looping each piece type other than pawns and kings.
+		{
+			long pieces = _position.getPieces(us, piece) & _fromMask;
+
+			while (pieces != 0) 										// looping each piece of the type.
+			{
+				int from = Long.numberOfTrailingZeros(pieces);
+				long targets = targetSquares(piece, from, occupancy) & allowed & checkMask;
+
+				if ((pinned & (1L << from)) != 0) 						// a pinned piece stays on the line to its king.
+				{
+					targets &= Attacks.line(king, from);
+				}
+
+				while (targets != 0) 									// adding a move for each target square.
+				{
+					count = add(_position, _buffer, count, from, Long.numberOfTrailingZeros(targets), piece, 0, 0);
+
+					targets &= targets - 1;
+				}
+
+				pieces &= pieces - 1;
+			}
+		}
+
+		count = addPawnMoves(_position, _buffer, count, _position.getPieces(us, Position.PAWN) & _fromMask, us, king, checkMask,
+			pinned, _capturesOnly);
+
+		if (!_capturesOnly && checkers == 0 && (_fromMask & (1L << king)) != 0) 	// a king in check cannot castle.
+		{
+			count = addCastling(_position, _buffer, count, us, occupancy);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Adds the moves of every pawn of the side to move, including promotions and en passant.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to.
+	 * @param _count The number of moves already in the array.
+	 * @param _pawns The bitboard of the pawns to add the moves of.
+	 * @param _us The colour of the side to move.
+	 * @param _king The square of the king of the side to move.
+	 * @param _checkMask The squares a move must go to in order to deal with a check.
+	 * @param _pinned The bitboard of the pinned pieces.
+	 * @param _capturesOnly Whether to add only captures and queen promotions.
+	 * @return The number of moves in the array.
+	 */
+	private static int addPawnMoves(Position _position, int[] _buffer, int _count, long _pawns, int _us, int _king,
+		long _checkMask, long _pinned, boolean _capturesOnly)
+	{
+		long occupancy = _position.getOccupancy(), theirs = _position.getColourOccupancy(1 - _us);
+		long lastRow = _us == Position.WHITE ? 0xFFL : 0xFF00000000000000L; 	// the row the pawns promote on.
+		long pawns = _pawns;
+		int count = _count;
+
+		while (pawns != 0) 												// looping each pawn.
+		{
+			int from = Long.numberOfTrailingZeros(pawns);
+			long pushes = Attacks.pawnPushes(_us, from, occupancy);
+			long targets = ((_capturesOnly ? pushes & lastRow : pushes) | (Attacks.pawnAttacks(_us, from) & theirs)) & _checkMask;
+
+			if ((_pinned & (1L << from)) != 0) 							// a pinned pawn stays on the line to its king.
+			{
+				targets &= Attacks.line(_king, from);
+			}
+
+			while (targets != 0) 										// adding a move for each target square.
+			{
+				int to = Long.numberOfTrailingZeros(targets);
+				int flags = Math.abs(to - from) == 16 ? Move.DOUBLE_PUSH : 0;
+
+				if ((lastRow & (1L << to)) == 0)
+				{
+					count = add(_position, _buffer, count, from, to, Position.PAWN, 0, flags);
+				}
+				else if (_capturesOnly && _position.getPieceAt(to) == Position.NO_PIECE) 	// the search only looks at queen promotions.
+				{
+					count = add(_position, _buffer, count, from, to, Position.PAWN, Position.QUEEN, 0);
+				}
+				else
+				{
+					for (int promotion = Position.QUEEN; promotion >= Position.KNIGHT; promotion--)
+					{
+						count = add(_position, _buffer, count, from, to, Position.PAWN, promotion, 0);
+					}
+				}
+
+				targets &= targets - 1;
+			}
+
+			pawns &= pawns - 1;
+		}
+
+		return addEnPassant(_position, _buffer, count, _pawns, _us, _king, _checkMask);
+	}
+
+	/**
+	 * Adds the en passant captures of the side to move.
+	 *
+	 * Taking en passant removes two pawns from the row of the king, which a pin check cannot see, so the move is tried
+	 * on the bitboards to see if it opens the king to a sliding piece.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to.
+	 * @param _count The number of moves already in the array.
+	 * @param _pawns The bitboard of the pawns that may take.
+	 * @param _us The colour of the side to move.
+	 * @param _king The square of the king of the side to move.
+	 * @param _checkMask The squares a move must go to in order to deal with a check.
+	 * @return The number of moves in the array.
+	 */
+	private static int addEnPassant(Position _position, int[] _buffer, int _count, long _pawns, int _us, int _king, long _checkMask)
+	{
+		int target = _position.getEnPassant(), them = 1 - _us;
+
+		if (target < 0)
+		{
+			return _count;
+		}
+
+		int victim = _us == Position.WHITE ? target + 8 : target - 8;
+
+		if ((_checkMask & ((1L << target) | (1L << victim))) == 0) 		// it must take the checking pawn or block the check.
+		{
+			return _count;
+		}
+
+		long attackers = Attacks.pawnAttacks(them, target) & _pawns;
+		long rooks = _position.getPieces(them, Position.ROOK) | _position.getPieces(them, Position.QUEEN);
+		long bishops = _position.getPieces(them, Position.BISHOP) | _position.getPieces(them, Position.QUEEN);
+		int count = _count;
+
+		while (attackers != 0) 											// looping each pawn that can take.
+		{
+			int from = Long.numberOfTrailingZeros(attackers);
+			long after = (_position.getOccupancy() ^ (1L << from) ^ (1L << victim)) | (1L << target);
+
+			if ((Attacks.rookAttacks(_king, after) & rooks) == 0 && (Attacks.bishopAttacks(_king, after) & bishops) == 0)
+			{
+				_buffer[count++] = Move.create(from, target, Position.PAWN, Position.PAWN, 0, Move.CAPTURE | Move.EN_PASSANT);
+			}
+
+			attackers &= attackers - 1;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Adds the castling moves of the side to move, which must not be in check.
+	 *
+	 * @param _position The position to generate the moves of.
+	 * @param _buffer The array the moves are written to.
+	 * @param _count The number of moves already in the array.
+	 * @param _us The colour of the side to move.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The number of moves in the array.
+	 */
+	private static int addCastling(Position _position, int[] _buffer, int _count, int _us, long _occupancy)
+	{
+		int rights = _position.getCastling();
+		int king = _us == Position.WHITE ? 60 : 4; 						// the king starts on the e column.
+		int kingside = _us == Position.WHITE ? Position.WHITE_KINGSIDE : Position.BLACK_KINGSIDE;
+		int queenside = _us == Position.WHITE ? Position.WHITE_QUEENSIDE : Position.BLACK_QUEENSIDE;
+		int count = _count;
+
+		if ((rights & kingside) != 0 && (_occupancy & (3L << (king + 1))) == 0 			// the f and g squares are empty,
+			&& !_position.isSquareAttacked(king + 1, 1 - _us) && !_position.isSquareAttacked(king + 2, 1 - _us)) 	// and not attacked.
+		{
+			_buffer[count++] = Move.create(king, king + 2, Position.KING, 0, 0, Move.CASTLE);
+		}
+
+		if ((rights & queenside) != 0 && (_occupancy & (7L << (king - 3))) == 0 			// the b, c and d squares are empty,
+			&& !_position.isSquareAttacked(king - 1, 1 - _us) && !_position.isSquareAttacked(king - 2, 1 - _us)) 	// and c and d are not attacked.
+		{
+			_buffer[count++] = Move.create(king, king - 2, Position.KING, 0, 0, Move.CASTLE);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Finds the pieces of the side to move that are pinned to their king.
+	 *
+	 * @param _position The position.
+	 * @param _us The colour of the side to move.
+	 * @param _king The square of the king of the side to move.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @param _ours The bitboard of the pieces of the side to move.
+	 * @return The bitboard of the pinned pieces.
+	 */
+	private static long pinnedPieces(Position _position, int _us, int _king, long _occupancy, long _ours)
+	{
+		int them = 1 - _us;
+		long theirs = _position.getColourOccupancy(them), queens = _position.getPieces(them, Position.QUEEN);
+		long snipers = (Attacks.rookAttacks(_king, theirs) & (_position.getPieces(them, Position.ROOK) | queens))
+			| (Attacks.bishopAttacks(_king, theirs) & (_position.getPieces(them, Position.BISHOP) | queens)); 	// the sliders that would see the king through our pieces.
+		long pinned = 0L;
+
+		while (snipers != 0) 											// a slider with one of our pieces alone in the way pins it.
+		{
+			long blockers = Attacks.between(_king, Long.numberOfTrailingZeros(snipers)) & _occupancy;
+
+			if (Long.bitCount(blockers) == 1)
+			{
+				pinned |= blockers & _ours;
+			}
+
+			snipers &= snipers - 1;
+		}
+
+		return pinned;
+	}
+
+	/**
+	 * Adds a move to the array, filling in the piece taken if there is one.
+	 *
+	 * @param _position The position the move is played in.
+	 * @param _buffer The array the move is written to.
+	 * @param _count The number of moves already in the array.
+	 * @param _from The square the piece moves from.
+	 * @param _to The square the piece moves to.
+	 * @param _piece The type of the piece.
+	 * @param _promotion The type the pawn promotes to, or 0 for none.
+	 * @param _flags The flags of the move.
+	 * @return The number of moves in the array.
+	 */
+	private static int add(Position _position, int[] _buffer, int _count, int _from, int _to, int _piece, int _promotion, int _flags)
+	{
+		int captured = _position.getPieceAt(_to);
+
+		if (captured != Position.NO_PIECE)
+		{
+			_buffer[_count] = Move.create(_from, _to, _piece, captured, _promotion, _flags | Move.CAPTURE);
+		}
+		else
+		{
+			_buffer[_count] = Move.create(_from, _to, _piece, 0, _promotion, _flags);
+		}
+
+		return _count + 1;
+	}
+
+	/**
+	 * Works out the squares a knight, bishop, rook or queen can reach.
+	 *
+	 * @param _piece The type of the piece.
+	 * @param _square The square the piece is on.
+	 * @param _occupancy The bitboard of every piece on the board.
+	 * @return The bitboard of the squares the piece can reach.
+	 */
+	private static long targetSquares(int _piece, int _square, long _occupancy)
+	{
+		switch (_piece)
+		{
+			case Position.KNIGHT:
+				return Attacks.knightAttacks(_square);
+
+			case Position.BISHOP:
+				return Attacks.bishopAttacks(_square, _occupancy);
+
+			case Position.ROOK:
+				return Attacks.rookAttacks(_square, _occupancy);
+
+			case Position.QUEEN:
+				return Attacks.queenAttacks(_square, _occupancy);
+
+			default:
+				return 0L;
+		}
+	}
+}
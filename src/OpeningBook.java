@@ -0,0 +1,181 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+/**
+ * Looks up moves in an opening book written by OpeningBookBuilder.
+ *
+ * The book is laid out like a Polyglot book: a file of 16 byte entries, each holding a position's hash (8 bytes), a
+ * move (2 bytes), a weight (2 bytes) and a learn value (4 bytes, unused), sorted by hash as an unsigned number. The
+ * hash is the position's own Zobrist hash rather than the Polyglot one, and the move uses the 16 bit encoding of the
+ * game database.
+ *
+ * The file is memory mapped read only, so a lookup is a binary search that reads a few entries and creates nothing.
+ * Every process that opens the same book shares the one copy the operating system keeps in memory. Lookups do not
+ * change the mapped buffer, so one book can be used by many threads at once.
+ */
+public class OpeningBook implements Closeable
+{
+	static final int ENTRY_SIZE = 16;							// the size of each entry in bytes.
+
+	private FileChannel channel;								// holds the open book file.
+	private MappedByteBuffer entries;							// holds the mapped entries.
+	private int entryCount;										// holds the number of entries.
+
+	/**
+	 * Opens a book.
+	 *
+	 * @param _path The path of the book file.
+	 * @throws IOException If the file can not be read, or is not a whole number of entries or over 2GB.
+	 */
+	public OpeningBook(Path _path) throws IOException
+	{
+		channel = FileChannel.open(_path, StandardOpenOption.READ);
+
+		long size = channel.size();
+
+		if (size % ENTRY_SIZE != 0 || size > Integer.MAX_VALUE)
+		{
+			channel.close();
+
+			throw new IOException("Not an opening book: " + _path);
+		}
+
+		entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		entryCount = (int) (size / ENTRY_SIZE);
+	}
+
+	/**
+	 * Returns the number of entries in the book.
+	 *
+	 * @return The number of entries.
+	 */
+	public int size()
+	{
+		return entryCount;
+	}
+
+	/**
+	 * Finds the book moves of a position.
+	 *
+	 * Moves that are not legal in the position, which can only come from two positions sharing a hash, are left out.
+	 *
+	 * @param _position The position.
+	 * @param _moves The array the packed moves are written to, which must hold at least MoveGenerator.MAX_MOVES moves.
+	 * @param _weights The array the weight of each move is written to, the same size as the moves.
+	 * @return The number of moves found.
+	 */
+	public int getMoves(Position _position, int[] _moves, int[] _weights)
+	{
+		long hash = _position.getHash();
+		int count = 0;
+		int[] legal = null;
+		int legalCount = 0;
+
+		for (int i = firstEntry(hash); i < entryCount && entries.getLong(i * ENTRY_SIZE) == hash; i++) 	// the entries of the position are together.
+		{
+			int code = entries.getShort((i * ENTRY_SIZE) + 8) & 0xFFFF;
+
+			if (legal == null) 										// the legal moves are only needed once there is an entry.
+			{
+				legal = new int[MoveGenerator.MAX_MOVES];
+				legalCount = MoveGenerator.generateMoves(_position, legal);
+			}
+
+			for (int j = 0; j < legalCount; j++)
+			{
+				if (GameDatabase.encodeMove(legal[j]) == code)
+				{
+					_moves[count] = legal[j];
+					_weights[count++] = entries.getShort((i * ENTRY_SIZE) + 10) & 0xFFFF;
+
+					break;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Picks a book move at random, with each move as likely as its weight.
+	 *
+	 * @param _position The position.
+	 * @param _random The random numbers to pick with.
+	 * @return The move, or Move.NONE if the position is not in the book.
+	 */
+	public int pickMove(Position _position, Random _random)
+	{
+		int[] moves = new int[MoveGenerator.MAX_MOVES], weights = new int[MoveGenerator.MAX_MOVES];
+		int count = getMoves(_position, moves, weights);
+		int total = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			total += weights[i];
+		}
+
+		if (total == 0)
+		{
+			return Move.NONE;
+		}
+
+		int pick = _random.nextInt(total);
+
+		for (int i = 0; i < count; i++) 							// finding the move the pick falls in.
+		{
+			pick -= weights[i];
+
+			if (pick < 0)
+			{
+				return moves[i];
+			}
+		}
+
+		return Move.NONE;
+	}
+
+	/**
+	 * Closes the book.
+	 *
+	 * The mapped buffer must not be used once the book is closed.
+	 *
+	 * @throws IOException If the file can not be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		channel.close();
+	}
+
+	/**
+	 * Finds the first entry with a hash, by binary search.
+	 *
+	 * @param _hash The hash.
+	 * @return The index of the first entry with the hash, or of the first entry after it if there is none.
+	 */
+	private int firstEntry(long _hash)
+	{
+		int low = 0, high = entryCount; 							// the first entry is in low to high.
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (Long.compareUnsigned(entries.getLong(middle * ENTRY_SIZE), _hash) < 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
@@ -0,0 +1,276 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Builds an opening book from games, to be read with OpeningBook.
+ *
+ * Every move played in the first plies of each game is counted, weighted by how the game went for the side that
+ * played it: 2 for a win, 1 for a draw and nothing for a loss, as Polyglot books do. When the book is written the
+ * moves are sorted by position hash and move, repeats are added together, and a position's weights are scaled
+ * down if any is too large for 16 bits.
+ *
+ * The moves are kept in plain arrays rather than objects, so books can be built from millions of games.
+ */
+public class OpeningBookBuilder
+{
+	private int maxPlies;										// holds how many plies of each game are used.
+	private long[] hashes = new long[1024];						// holds the hash of the position of each counted move.
+	private int[] values = new int[1024];						// holds each counted move, as its 16 bit code shifted left 16, plus its weight.
+	private int count = 0;										// holds the number of moves counted.
+
+	/**
+	 * Generates a new book builder.
+	 *
+	 * @param _maxPlies How many plies from the start of each game are used.
+	 */
+	public OpeningBookBuilder(int _maxPlies)
+	{
+		maxPlies = _maxPlies;
+	}
+
+	/**
+	 * Counts the opening moves of a game.
+	 *
+	 * @param _game The game.
+	 */
+	public void addGame(PgnGame _game)
+	{
+		int[] moves = new int[_game.getMoveCount()];
+
+		for (int i = 0; i < moves.length; i++)
+		{
+			moves[i] = _game.getMove(i);
+		}
+
+		addGame(_game.startPosition(), moves, moves.length, _game.getResult());
+	}
+
+	/**
+	 * Counts the opening moves of a game.
+	 *
+	 * @param _position The position the game starts from, which is left unchanged.
+	 * @param _moves The moves of the game.
+	 * @param _count The number of moves.
+	 * @param _result The result, 1-0, 0-1, 1/2-1/2 or *. Games with no result are not counted.
+	 */
+	public void addGame(Position _position, int[] _moves, int _count, String _result)
+	{
+		int whiteWeight, blackWeight;
+
+		switch (_result)
+		{
+			case "1-0":
+				whiteWeight = 2;
+				blackWeight = 0;
+				break;
+
+			case "0-1":
+				whiteWeight = 0;
+				blackWeight = 2;
+				break;
+
+			case "1/2-1/2":
+				whiteWeight = 1;
+				blackWeight = 1;
+				break;
+
+			default: 												// a game with no result says nothing about its moves.
+				return;
+		}
+
+		int plies = Math.min(_count, maxPlies);
+
+		for (int i = 0; i < plies; i++) 							// counting each move from the position it was played in.
+		{
+			int weight = _position.getSideToMove() == Position.WHITE ? whiteWeight : blackWeight;
+
+			if (weight > 0)
+			{
+				add(_position.getHash(), GameDatabase.encodeMove(_moves[i]), weight);
+			}
+
+			_position.makeMove(_moves[i]);
+		}
+
+		for (int i = plies - 1; i >= 0; i--) 						// putting the position back.
+		{
+			_position.unmakeMove(_moves[i]);
+		}
+	}
+
+	/**
+	 * Counts the opening moves of every game in a database.
+	 *
+	 * @param _database The database.
+	 */
+	public void addDatabase(GameDatabase _database)
+	{
+		Position position = new Position();
+		int[] moves = new int[GameDatabase.MAX_MOVES];
+
+		for (long game = 0; game < _database.size(); game++)
+		{
+			int total = _database.replay(game, position, moves);
+
+			for (int i = total - 1; i >= 0; i--) 					// going back to the start of the game.
+			{
+				position.unmakeMove(moves[i]);
+			}
+
+			addGame(position, moves, total, _database.getResult(game));
+		}
+	}
+
+	/**
+	 * Writes the book.
+	 *
+	 * @param _path The path of the book file, which is replaced.
+	 * @return The number of entries written.
+	 * @throws IOException If the file can not be written.
+	 */
+	public int write(Path _path) throws IOException
+	{
+		sort(0, count, new long[count], new int[count]);
+
+		int written = 0;
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_path.toFile()), 1 << 16)))
+		{
+			int start = 0;
+
+			while (start < count) 									// writing each position's moves together.
+			{
+				int end = start;
+
+				while (end < count && hashes[end] == hashes[start])
+				{
+					end++;
+				}
+
+				written += writePosition(out, start, end);
+				start = end;
+			}
+		}
+
+		return written;
+	}
+
+	/**
+	 * Writes the entries of one position, adding together the weights of each move.
+	 *
+	 * @param _out Where the entries are written.
+	 * @param _start The first counted move of the position, in the sorted arrays.
+	 * @param _end The counted move after the last one of the position.
+	 * @return The number of entries written.
+	 * @throws IOException If the file can not be written.
+	 */
+	private int writePosition(DataOutputStream _out, int _start, int _end) throws IOException
+	{
+		int[] codes = new int[_end - _start];
+		long[] weights = new long[_end - _start];
+		int moves = 0;
+		long heaviest = 0;
+
+		for (int i = _start; i < _end; i++) 						// the same move is next to itself once sorted.
+		{
+			int code = values[i] >>> 16;
+
+			if (moves == 0 || codes[moves - 1] != code)
+			{
+				codes[moves++] = code;
+			}
+
+			weights[moves - 1] += values[i] & 0xFFFF;
+			heaviest = Math.max(heaviest, weights[moves - 1]);
+		}
+
+		for (int i = 0; i < moves; i++)
+		{
+			long weight = heaviest > 0xFFFF ? Math.max(1, (weights[i] * 0xFFFF) / heaviest) : weights[i]; 	// scaling to fit 16 bits.
+
+			_out.writeLong(hashes[_start]);
+			_out.writeShort(codes[i]);
+			_out.writeShort((int) weight);
+			_out.writeInt(0); 										// the learn value, which is not used.
+		}
+
+		return moves;
+	}
+
+	/**
+	 * Adds a counted move.
+	 *
+	 * @param _hash The hash of the position the move was played in.
+	 * @param _code The move in 16 bits.
+	 * @param _weight The weight.
+	 */
+	private void add(long _hash, int _code, int _weight)
+	{
+		if (count == hashes.length)
+		{
+			hashes = Arrays.copyOf(hashes, count * 2);
+			values = Arrays.copyOf(values, count * 2);
+		}
+
+		hashes[count] = _hash;
+		values[count++] = (_code << 16) | _weight;
+	}
+
+	/**
+	 * Sorts part of the counted moves by hash, as an unsigned number, and then by move, using a merge sort.
+	 *
+	 * @param _from The first index to sort.
+	 * @param _to The index after the last one to sort.
+	 * @param _hashSpace Spare space the size of the counted moves.
+	 * @param _valueSpace Spare space the size of the counted moves.
+	 */
+	private void sort(int _from, int _to, long[] _hashSpace, int[] _valueSpace)
+	{
+		if (_to - _from < 2)
+		{
+			return;
+		}
+
+		int middle = (_from + _to) >>> 1;
+
+		sort(_from, middle, _hashSpace, _valueSpace);
+		sort(middle, _to, _hashSpace, _valueSpace);
+
+		int left = _from, right = middle, out = _from;
+
+		while (left < middle || right < _to) 						// merging the two sorted halves into the spare space.
+		{
+			if (right == _to || (left < middle && compare(left, right) <= 0))
+			{
+				_hashSpace[out] = hashes[left];
+				_valueSpace[out++] = values[left++];
+			}
+			else
+			{
+				_hashSpace[out] = hashes[right];
+				_valueSpace[out++] = values[right++];
+			}
+		}
+
+		System.arraycopy(_hashSpace, _from, hashes, _from, _to - _from);
+		System.arraycopy(_valueSpace, _from, values, _from, _to - _from);
+	}
+
+	/**
+	 * Compares two counted moves.
+	 *
+	 * @param _a The index of the first move.
+	 * @param _b The index of the second move.
+	 * @return Less than 0, 0 or more than 0 as the first sorts before, with or after the second.
+	 */
+	private int compare(int _a, int _b)
+	{
+		int byHash = Long.compareUnsigned(hashes[_a], hashes[_b]);
+
+		return byHash != 0 ? byHash : Integer.compare(values[_a] >>> 16, values[_b] >>> 16);
+	}
+}
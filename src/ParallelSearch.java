@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Searches a position on several threads at once, using Lazy SMP.
+ *
+ * Every thread runs its own search of its own copy of the position, and they all share one transposition table.
+ * The helpers fill the table with results the main search then finds, so the main search reaches each depth sooner.
+ * The main search runs on the calling thread and its result is the one returned. Once it finishes the helpers are
+ * stopped.
+ */
+public class ParallelSearch
+{
+	private TranspositionTable table;							// holds the table shared by all the threads.
+	private Search[] searches;									// holds one search for each thread, the first being the main search.
+	private ExecutorService helpers;							// runs the helper searches.
+	private Tablebase tablebase;								// holds the endgame tablebases, or null if there are none.
+
+	/**
+	 * Generates a new parallel search.
+	 *
+	 * @param _table The transposition table shared by all the threads.
+	 * @param _threads The number of threads to search with.
+	 */
+	public ParallelSearch(TranspositionTable _table, int _threads)
+	{
+		table = _table;
+
+		setThreads(_threads);
+	}
+
+	/**
+	 * Changes the number of threads used to search.
+	 *
+	 * Must not be called while a search is running.
+	 *
+	 * @param _threads The number of threads, at least 1.
+	 */
+	public void setThreads(int _threads)
+	{
+		shutdown();
+
+		searches = new Search[Math.max(1, _threads)];
+
+		for (int i = 0; i < searches.length; i++)
+		{
+			searches[i] = new Search(table);
+			searches[i].setHelperIndex(i);
+			searches[i].setSharedTable(true); 						// the table is aged once in search, not by each thread.
+			searches[i].setTablebase(tablebase);
+		}
+
+		if (searches.length > 1)
+		{
+			helpers = Executors.newFixedThreadPool(searches.length - 1, runnable ->
+			{
+				Thread thread = new Thread(runnable, "search-helper");
+
+				thread.setDaemon(true); 								// the helpers do not keep the program running.
+
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Sets the endgame tablebases every thread looks positions up in.
+	 *
+	 * Must not be called while a search is running.
+	 *
+	 * @param _tablebase The tablebases, or null to search every position.
+	 */
+	public void setTablebase(Tablebase _tablebase)
+	{
+		tablebase = _tablebase;
+
+		for (Search search : searches)
+		{
+			search.setTablebase(_tablebase);
+		}
+	}
+
+	/**
+	 * Returns the number of threads used to search.
+	 *
+	 * @return The number of threads.
+	 */
+	public int getThreads()
+	{
+		return searches.length;
+	}
+
+	/**
+	 * Searches a position for the best move on every thread.
+	 *
+	 * @param _position The position to search, which is left unchanged.
+	 * @param _maxDepth The deepest depth to search.
+	 * @param _timeMillis The time the search may take in milliseconds, or 0 for no limit.
+	 * @param _maxNodes The number of positions the main search may visit, or 0 for no limit.
+	 * @return The best move, or Move.NONE if the side to move has no moves.
+	 */
+	public int search(Position _position, int _maxDepth, long _timeMillis, long _maxNodes)
+	{
+		List<Future<?>> running = new ArrayList<>();
+
+		table.newSearch(); 											// before any thread stores an entry, so they all store the same age.
+
+		for (int i = 1; i < searches.length; i++) 					// starting the helpers on their own copies of the position.
+		{
+			Search helper = searches[i];
+			Position copy = new Position(_position);
+
+			running.add(helpers.submit(() -> helper.search(copy, Search.MAX_PLY, _timeMillis, 0)));
+		}
+
+		int move = searches[0].search(_position, _maxDepth, _timeMillis, _maxNodes);
+
+		for (int i = 1; i < searches.length; i++) 					// the main search has finished, so the helpers stop.
+		{
+			Future<?> future = running.get(i - 1);
+
+			try
+			{
+				while (!future.isDone()) 							// stopping again in case the helper had not started yet.
+				{
+					searches[i].stop();
+
+					try
+					{
+						future.get(1, TimeUnit.MILLISECONDS);
+					}
+					catch (TimeoutException e)
+					{
+						// still running, so stop it again.
+					}
+				}
+
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch (ExecutionException e)
+			{
+				throw new IllegalStateException("A helper search failed", e.getCause());
+			}
+		}
+
+		return move;
+	}
+
+	/**
+	 * Forgets everything learned from earlier searches, on every thread.
+	 *
+	 * Must not be called while a search is running.
+	 */
+	public void newGame()
+	{
+		for (Search search : searches)
+		{
+			search.newGame();
+		}
+	}
+
+	/**
+	 * Stops the search on every thread as soon as possible.
+	 *
+	 * This can be called from another thread.
+	 */
+	public void stop()
+	{
+		for (Search search : searches)
+		{
+			search.stop();
+		}
+	}
+
+	/**
+	 * Returns the score of the best move found by the last search.
+	 *
+	 * @return The score in centipawns from the point of view of the side to move.
+	 */
+	public int getBestScore()
+	{
+		return searches[0].getBestScore();
+	}
+
+	/**
+	 * Returns the last depth the main search fully searched.
+	 *
+	 * @return The depth.
+	 */
+	public int getCompletedDepth()
+	{
+		return searches[0].getCompletedDepth();
+	}
+
+	/**
+	 * Returns the number of positions visited by all the threads in the last search.
+	 *
+	 * @return The number of positions.
+	 */
+	public long getNodes()
+	{
+		long nodes = 0;
+
+		for (Search search : searches)
+		{
+			nodes += search.getNodes();
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * Stops the helper threads.
+	 */
+	public void shutdown()
+	{
+		if (helpers != null)
+		{
+			helpers.shutdownNow();
+			helpers = null;
+		}
+	}
+}
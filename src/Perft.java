@@ -0,0 +1,111 @@
+import java.io.PrintStream;
+
+/**
+ * Counts the positions reached by playing every move to a fixed depth.
+ *
+ * The counts can be checked against known values to test the move rules, and the time taken shows how fast the
+ * move generator is.
+ */
+public class Perft
+{
+	private int[][] moves;						// holds one move buffer for each ply, so counting does not create any objects.
+
+	/**
+	 * Generates a new perft counter.
+	 *
+	 * @param _maxDepth The deepest depth that will be counted.
+	 */
+	public Perft(int _maxDepth)
+	{
+		moves = new int[Math.max(_maxDepth, 1)][MoveGenerator.MAX_MOVES];
+	}
+
+	/**
+	 * Counts the positions at a depth.
+	 *
+	 * @param _position The position to start from.
+	 * @param _depth The number of moves to play.
+	 * @return The number of positions reached.
+	 */
+	public long count(Position _position, int _depth)
+	{
+		if (_depth == 0)
+		{
+			return 1;
+		}
+
+		int[] buffer = moves[_depth - 1];
+		int total = MoveGenerator.generateMoves(_position, buffer);
+
+		if (_depth == 1) 										// the last ply only needs the number of moves.
+		{
+			return total;
+		}
+
+		long nodes = 0;
+
+		for (int i = 0; i < total; i++)
+		{
+			_position.makeMove(buffer[i]);
+
+			nodes += count(_position, _depth - 1);
+
+			_position.unmakeMove(buffer[i]);
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * Counts the positions at a depth and prints the count below each first move.
+	 *
+	 * @param _position The position to start from.
+	 * @param _depth The number of moves to play.
+	 * @param _out Where the counts are printed.
+	 * @return The number of positions reached.
+	 */
+	public long divide(Position _position, int _depth, PrintStream _out)
+	{
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+		int total = MoveGenerator.generateMoves(_position, buffer);
+		long nodes = 0;
+
+		for (int i = 0; i < total; i++) 						// counting below each first move.
+		{
+			_position.makeMove(buffer[i]);
+
+			long moveNodes = count(_position, _depth - 1);
+
+			_position.unmakeMove(buffer[i]);
+
+			_out.println(Move.toString(buffer[i]) + ": " + moveNodes);
+
+			nodes += moveNodes;
+		}
+
+		return nodes;
+	}
+
+	/**
+	 * Runs perft from the command line and prints the divide counts, total and speed.
+	 *
+	 * @param _position The position to start from.
+	 * @param _depth The number of moves to play.
+	 * @param _out Where the results are printed.
+	 */
+	public static void run(Position _position, int _depth, PrintStream _out)
+	{
+		Perft perft = new Perft(_depth);
+
+		perft.count(_position, 1); 								// loading the attack tables before the timing starts.
+
+		long start = System.nanoTime();
+		long nodes = perft.divide(_position, _depth, _out);
+		long time = System.nanoTime() - start;
+
+		_out.println();
+		_out.println("Nodes: " + nodes);
+		_out.println("Time: " + (time / 1000000) + " ms");
+		_out.println("Nodes/sec: " + (long) (nodes / Math.max(time / 1e9, 1e-9)));
+	}
+}
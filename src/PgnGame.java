@@ -0,0 +1,122 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds one game read from or written to a PGN file.
+ *
+ * The game is its tags, the moves played from the starting position as packed ints, and the result. Only the main
+ * line is kept, so comments and variations are dropped when a game is read.
+ */
+public class PgnGame
+{
+	private Map<String, String> tags = new LinkedHashMap<>();	// holds the tags, in the order they were added.
+	private int[] moves = new int[128];							// holds the moves, only the first moveCount are used.
+	private int moveCount = 0;									// holds the number of moves played.
+	private String result = "*";								// holds the result, 1-0, 0-1, 1/2-1/2 or * if unknown.
+
+	/**
+	 * Returns the value of a tag.
+	 *
+	 * @param _name The name of the tag, such as White.
+	 * @return The value, or null if the tag is not set.
+	 */
+	public String getTag(String _name)
+	{
+		return tags.get(_name);
+	}
+
+	/**
+	 * Sets the value of a tag.
+	 *
+	 * @param _name The name of the tag.
+	 * @param _value The value.
+	 */
+	public void setTag(String _name, String _value)
+	{
+		tags.put(_name, _value);
+	}
+
+	/**
+	 * Returns every tag.
+	 *
+	 * @return The tags by name, in the order they were added, which can not be changed.
+	 */
+	public Map<String, String> getTags()
+	{
+		return Collections.unmodifiableMap(tags);
+	}
+
+	/**
+	 * Creates the position the game starts from.
+	 *
+	 * This is the FEN tag when the game has one, otherwise the usual starting position.
+	 *
+	 * @return A new copy of the starting position.
+	 * @throws IllegalArgumentException If the FEN tag is not valid.
+	 */
+	public Position startPosition()
+	{
+		String fen = tags.get("FEN");
+
+		return fen == null ? Position.startPosition() : Fen.parse(fen);
+	}
+
+	/**
+	 * Adds a move to the end of the game.
+	 *
+	 * @param _move The packed move, which must be legal after the moves already added.
+	 */
+	public void addMove(int _move)
+	{
+		if (moveCount == moves.length)
+		{
+			moves = Arrays.copyOf(moves, moveCount * 2);
+		}
+
+		moves[moveCount++] = _move;
+	}
+
+	/**
+	 * Returns one of the moves.
+	 *
+	 * @param _index The index of the move, starting from 0.
+	 * @return The packed move.
+	 */
+	public int getMove(int _index)
+	{
+		return moves[_index];
+	}
+
+	/**
+	 * Returns the number of moves played.
+	 *
+	 * @return The number of moves, counting each side's move separately.
+	 */
+	public int getMoveCount()
+	{
+		return moveCount;
+	}
+
+	/**
+	 * Returns the result.
+	 *
+	 * @return 1-0, 0-1, 1/2-1/2 or * if the result is unknown.
+	 */
+	public String getResult()
+	{
+		return result;
+	}
+
+	/**
+	 * Sets the result, and the Result tag to match.
+	 *
+	 * @param _result 1-0, 0-1, 1/2-1/2 or *.
+	 */
+	public void setResult(String _result)
+	{
+		result = _result;
+		tags.put("Result", _result);
+	}
+}
@@ -0,0 +1,400 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads games from a PGN file one at a time.
+ *
+ * The file is read as a stream of characters, so only the game being read is held in memory and files of any size
+ * can be read. Each move is checked against the rules as it is read. Comments, variations, move numbers and
+ * annotation glyphs are skipped.
+ *
+ * When a game holds a move that is not legal, the rest of that game is skipped and an IllegalArgumentException is
+ * thrown. Calling next again carries on from the game after it.
+ */
+public class PgnReader implements Closeable
+{
+	private static final int BUFFER_SIZE = 1 << 16;				// the number of characters read from the file at a time.
+
+	private BufferedReader in;									// holds the stream the games are read from.
+	private int peeked = -2;									// holds a character read ahead, or -2 if there is none.
+	private boolean lineStart = false;							// set when the last character read started a line.
+	private boolean afterNewline = true;						// set when the last character read was a new line.
+	private String heldTagName, heldTagValue;					// holds a tag of the next game that was read while finishing a game.
+	private long gamesRead = 0;									// holds the number of games read so far.
+
+	/**
+	 * Generates a new PGN reader.
+	 *
+	 * @param _in The stream to read the games from.
+	 */
+	public PgnReader(Reader _in)
+	{
+		in = _in instanceof BufferedReader ? (BufferedReader) _in : new BufferedReader(_in, BUFFER_SIZE);
+	}
+
+	/**
+	 * Reads the next game.
+	 *
+	 * @return The game, or null if there are no more games.
+	 * @throws IOException If the stream can not be read.
+	 * @throws IllegalArgumentException If the game has a move that is not legal, or a bad FEN tag.
+	 */
+	public PgnGame next() throws IOException
+	{
+		PgnGame game = null;
+		Position position = null;									// set up once the first move is read.
+		int variationDepth = 0;
+
+		if (heldTagName != null) 									// a tag read while finishing the last game.
+		{
+			game = new PgnGame();
+			game.setTag(heldTagName, heldTagValue);
+			heldTagName = null;
+		}
+
+		while (true)
+		{
+			int c = skipWhitespace();
+
+			if (c < 0) 												// the end of the file ends the last game.
+			{
+				return finish(game);
+			}
+
+			if (c == '[') 											// a tag.
+			{
+				String name = readSymbol();
+				String value = readTagValue();
+
+				if (position != null) 								// a tag after the moves starts the next game.
+				{
+					heldTagName = name;
+					heldTagValue = value;
+
+					return finish(game);
+				}
+
+				if (game == null)
+				{
+					game = new PgnGame();
+				}
+
+				game.setTag(name, value);
+			}
+			else if (c == '{') 										// a comment, which can run over several lines.
+			{
+				skipPast('}');
+			}
+			else if (c == ';' || (c == '%' && lineStart)) 			// a comment or escape to the end of the line.
+			{
+				skipPast('\n');
+			}
+			else if (c == '(') 										// the start of a variation, which is skipped.
+			{
+				variationDepth++;
+			}
+			else if (c == ')')
+			{
+				variationDepth = Math.max(variationDepth - 1, 0);
+			}
+			else if (c == '$') 										// a numeric annotation glyph.
+			{
+				readSymbol();
+			}
+			else
+			{
+				String token = (char) c + readSymbol();
+
+				if (game == null)
+				{
+					game = new PgnGame();
+				}
+
+				if (isResult(token))
+				{
+					if (variationDepth == 0) 						// the result ends the game.
+					{
+						game.setResult(token);
+
+						return finish(game);
+					}
+				}
+				else if (variationDepth == 0)
+				{
+					String san = stripMoveNumber(token);
+
+					if (san.isEmpty())
+					{
+						continue;
+					}
+
+					int move;
+
+					try
+					{
+						if (position == null)
+						{
+							position = game.startPosition();
+						}
+
+						move = San.parse(position, san);
+					}
+					catch (IllegalArgumentException e)
+					{
+						long number = gamesRead + 1;
+
+						skipGame();
+
+						throw new IllegalArgumentException("Game " + number + ": " + e.getMessage(), e);
+					}
+
+					position.makeMove(move);
+					game.addMove(move);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of games read so far, including games with a bad move.
+	 *
+	 * @return The number of games.
+	 */
+	public long getGamesRead()
+	{
+		return gamesRead;
+	}
+
+	/**
+	 * Closes the stream.
+	 *
+	 * @throws IOException If the stream can not be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	/**
+	 * Counts a finished game.
+	 *
+	 * @param _game The game, or null if there was none.
+	 * @return The game.
+	 */
+	private PgnGame finish(PgnGame _game)
+	{
+		if (_game != null)
+		{
+			gamesRead++;
+		}
+
+		return _game;
+	}
+
+	/**
+	 * Skips the rest of a game, up to and including its result or the first tag of the next game.
+	 *
+	 * @throws IOException If the stream can not be read.
+	 */
+	private void skipGame() throws IOException
+	{
+		gamesRead++;
+
+		while (true)
+		{
+			int c = skipWhitespace();
+
+			if (c < 0)
+			{
+				return;
+			}
+
+			if (c == '[') 											// the next game has started.
+			{
+				heldTagName = readSymbol();
+				heldTagValue = readTagValue();
+
+				return;
+			}
+
+			if (c == '{')
+			{
+				skipPast('}');
+			}
+			else if (c == ';')
+			{
+				skipPast('\n');
+			}
+			else if (c != '(' && c != ')' && isResult((char) c + readSymbol()))
+			{
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Reads the quoted value of a tag and the closing bracket.
+	 *
+	 * @return The value, with escaped quotes and backslashes unescaped.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private String readTagValue() throws IOException
+	{
+		StringBuilder value = new StringBuilder();
+		int c = skipWhitespace();
+
+		if (c == '"')
+		{
+			for (c = read(); c >= 0 && c != '"'; c = read()) 		// reading up to the closing quote.
+			{
+				if (c == '\\')
+				{
+					c = read();
+				}
+
+				if (c >= 0)
+				{
+					value.append((char) c);
+				}
+			}
+		}
+
+		skipPast(']');
+
+		return value.toString();
+	}
+
+	/**
+	 * Reads the rest of a symbol, up to whitespace or a character with its own meaning.
+	 *
+	 * @return The characters read.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private String readSymbol() throws IOException
+	{
+		StringBuilder symbol = new StringBuilder();
+
+		while (true)
+		{
+			int c = peek();
+
+			if (c < 0 || Character.isWhitespace(c) || "[]{}();\"".indexOf(c) >= 0)
+			{
+				return symbol.toString();
+			}
+
+			symbol.append((char) read());
+		}
+	}
+
+	/**
+	 * Skips characters up to and including one character.
+	 *
+	 * @param _end The character to stop after.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private void skipPast(char _end) throws IOException
+	{
+		int c;
+
+		do
+		{
+			c = read();
+		}
+		while (c >= 0 && c != _end);
+	}
+
+	/**
+	 * Skips whitespace and reads the next character.
+	 *
+	 * @return The character, or -1 at the end of the stream.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private int skipWhitespace() throws IOException
+	{
+		int c;
+
+		do
+		{
+			c = read();
+		}
+		while (c >= 0 && Character.isWhitespace(c));
+
+		return c;
+	}
+
+	/**
+	 * Reads one character.
+	 *
+	 * @return The character, or -1 at the end of the stream.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private int read() throws IOException
+	{
+		int c = peek();
+
+		peeked = -2;
+		lineStart = afterNewline;
+		afterNewline = c == '\n';
+
+		return c;
+	}
+
+	/**
+	 * Looks at the next character without reading it.
+	 *
+	 * @return The character, or -1 at the end of the stream.
+	 * @throws IOException If the stream can not be read.
+	 */
+	private int peek() throws IOException
+	{
+		if (peeked == -2)
+		{
+			peeked = in.read();
+		}
+
+		return peeked;
+	}
+
+	/**
+	 * Removes the move number from the front of a move, such as 12. or 12... .
+	 *
+	 * @param _token The move as read.
+	 * @return The move without the number, which is empty if the token was only a number.
+	 */
+	private static String stripMoveNumber(String _token)
+	{
+		int i = 0;
+
+		while (i < _token.length() && Character.isDigit(_token.charAt(i)))
+		{
+			i++;
+		}
+
+		if (i > 0 && (i == _token.length() || _token.charAt(i) == '.')) 	// digits are only a move number when followed by dots.
+		{
+			while (i < _token.length() && _token.charAt(i) == '.')
+			{
+				i++;
+			}
+
+			return _token.substring(i);
+		}
+
+		return _token.startsWith("..") ? _token.replaceFirst("^\\.+", "") : _token;
+	}
+
+	/**
+	 * Checks if a token is a game result.
+	 *
+	 * @param _token The token.
+	 * @return Whether it is 1-0, 0-1, 1/2-1/2 or *.
+	 */
+	private static boolean isResult(String _token)
+	{
+		return _token.equals("1-0") || _token.equals("0-1") || _token.equals("1/2-1/2") || _token.equals("*");
+	}
+}
@@ -0,0 +1,167 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes games to a PGN file one at a time.
+ *
+ * Each game is written as soon as it is given, so games can be streamed to a file of any size. The seven standard
+ * tags are always written first, with ? for any that are missing, followed by the other tags, the moves in SAN and
+ * the result. Lines of moves are kept under 80 characters.
+ */
+public class PgnWriter implements Closeable, Flushable
+{
+	private static final String[] STANDARD_TAGS = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};	// the tags every game has, in order.
+	private static final int LINE_LENGTH = 79;					// the longest line of moves written.
+
+	private Writer out;											// holds the stream the games are written to.
+
+	/**
+	 * Generates a new PGN writer.
+	 *
+	 * @param _out The stream to write the games to.
+	 */
+	public PgnWriter(Writer _out)
+	{
+		out = _out instanceof BufferedWriter ? _out : new BufferedWriter(_out);
+	}
+
+	/**
+	 * Writes a game.
+	 *
+	 * @param _game The game.
+	 * @throws IOException If the stream can not be written to.
+	 */
+	public void write(PgnGame _game) throws IOException
+	{
+		Map<String, String> tags = _game.getTags();
+
+		for (String name : STANDARD_TAGS) 						// the standard tags come first, in their set order.
+		{
+			String value = name.equals("Result") ? _game.getResult() : tags.get(name);
+
+			writeTag(name, value != null ? value : (name.equals("Date") ? "????.??.??" : "?"));
+		}
+
+		for (Map.Entry<String, String> tag : tags.entrySet()) 	// then any other tags.
+		{
+			if (tag.getKey().equals("FEN") && !tags.containsKey("SetUp")) 	// a FEN tag needs SetUp to be read.
+			{
+				writeTag("SetUp", "1");
+			}
+
+			if (!isStandard(tag.getKey()))
+			{
+				writeTag(tag.getKey(), tag.getValue());
+			}
+		}
+
+		out.write('\n');
+
+		Position position = _game.startPosition();
+		StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+
+		for (int i = 0; i < _game.getMoveCount(); i++) 			// replaying the moves to write them in SAN.
+		{
+			int move = _game.getMove(i);
+			String text = San.toSan(position, move);
+
+			if (position.getSideToMove() == Position.WHITE)
+			{
+				text = position.getFullmoveNumber() + ". " + text;
+			}
+			else if (i == 0) 									// a game that starts with black to move.
+			{
+				text = position.getFullmoveNumber() + "... " + text;
+			}
+
+			append(line, text);
+			position.makeMove(move);
+		}
+
+		append(line, _game.getResult());
+
+		out.write(line.toString());
+		out.write("\n\n");
+	}
+
+	/**
+	 * Writes any games held in the buffer to the stream.
+	 *
+	 * @throws IOException If the stream can not be written to.
+	 */
+	@Override
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Writes any games held in the buffer and closes the stream.
+	 *
+	 * @throws IOException If the stream can not be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+	/**
+	 * Adds text to the current line of moves, starting a new line first if it would be too long.
+	 *
+	 * @param _line The current line.
+	 * @param _text The text to add.
+	 * @throws IOException If the stream can not be written to.
+	 */
+	private void append(StringBuilder _line, String _text) throws IOException
+	{
+		if (_line.length() > 0 && _line.length() + 1 + _text.length() > LINE_LENGTH) 	// the full line is written out.
+		{
+			out.write(_line.toString());
+			out.write('\n');
+			_line.setLength(0);
+		}
+
+		if (_line.length() > 0)
+		{
+			_line.append(' ');
+		}
+
+		_line.append(_text);
+	}
+
+	/**
+	 * Writes a tag, escaping quotes and backslashes in the value.
+	 *
+	 * @param _name The name of the tag.
+	 * @param _value The value.
+	 * @throws IOException If the stream can not be written to.
+	 */
+	private void writeTag(String _name, String _value) throws IOException
+	{
+		out.write("[" + _name + " \"" + _value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"]\n");
+	}
+
+	/**
+	 * Checks if a tag is one of the seven standard tags.
+	 *
+	 * @param _name The name of the tag.
+	 * @return Whether the tag is standard.
+	 */
+	private static boolean isStandard(String _name)
+	{
+		for (String name : STANDARD_TAGS)
+		{
+			if (name.equals(_name))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,747 @@
+import java.util.Arrays;
+
+/**
+ * Holds a chess position without any Swing components.
+ *
+ * The position is stored as one bitboard (a long) for each piece type of each colour, plus the side to move, the
+ * castling rights, the en passant square and the move counters.
+ * Bit n of a bitboard is set when the piece is on square n, where the squares use the same numbering as the
+ * chess board, so square 0 is the top left square and square 63 is the bottom right square.
+ *
+ * The occupancy of each colour and the piece on each square are kept up to date as moves are played, and each
+ * move can be taken back with unmakeMove, which restores the position from a small history stack. The Zobrist
+ * hash of the position is kept up to date in the same way, and so are the hash of the pawns alone and the material
+ * and square values used by Evaluation.
+ */
+public class Position
+{
+	public static final int WHITE = 0;				// the colour of the pieces that start on the bottom two rows.
+	public static final int BLACK = 1;				// the colour of the pieces that start on the top two rows.
+
+	public static final int PAWN = 0;				// the piece types, used to index the bitboards.
+	public static final int KNIGHT = 1;
+	public static final int BISHOP = 2;
+	public static final int ROOK = 3;
+	public static final int QUEEN = 4;
+	public static final int KING = 5;
+
+	public static final int NO_PIECE = -1;			// returned when a square has no piece on it.
+
+	public static final int WHITE_KINGSIDE = 1;		// the castling rights, one bit each.
+	public static final int WHITE_QUEENSIDE = 2;
+	public static final int BLACK_KINGSIDE = 4;
+	public static final int BLACK_QUEENSIDE = 8;
+
+	private static final int[] CASTLING_KEPT = new int[64];	// the castling rights kept when a piece moves from or to each square.
+
+	static
+	{
+		for (int i = 0; i < 64; i++)
+		{
+			CASTLING_KEPT[i] = 15;
+		}
+
+		CASTLING_KEPT[60] = 15 & ~(WHITE_KINGSIDE | WHITE_QUEENSIDE); 	// moving a king loses both rights.
+		CASTLING_KEPT[4] = 15 & ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+		CASTLING_KEPT[63] = 15 & ~WHITE_KINGSIDE; 						// moving or taking a rook loses its right.
+		CASTLING_KEPT[56] = 15 & ~WHITE_QUEENSIDE;
+		CASTLING_KEPT[7] = 15 & ~BLACK_KINGSIDE;
+		CASTLING_KEPT[0] = 15 & ~BLACK_QUEENSIDE;
+	}
+
+	private long[] pieces = new long[12];			// holds one bitboard for each piece type of each colour, indexed by (colour * 6) + piece.
+	private long[] colours = new long[2];			// holds the bitboard of all the pieces of each colour.
+	private int[] squares = new int[64];			// holds the bitboard index of the piece on each square, or NO_PIECE.
+	private int sideToMove = WHITE;					// holds the colour of the side that moves next.
+	private long hash = 0L;							// holds the Zobrist hash of the position.
+	private int castling = 0;						// holds the castling rights that are left.
+	private int enPassant = -1;						// holds the square a pawn can be taken en passant on, or -1.
+	private int halfmoveClock = 0;					// holds the number of moves since a pawn moved or a piece was taken.
+	private int fullmoveNumber = 1;					// holds the number of the move, which goes up after black moves.
+	private int middlegameScore = 0;				// holds the material and square values of the pieces in the middle game, for white.
+	private int endgameScore = 0;					// holds the same in the end game.
+	private int phase = 0;							// holds how far from the end game the pieces left are.
+	private long pawnHash = 0L;						// holds the Zobrist hash of the pawns alone.
+
+	private int[] history = new int[256];			// holds what each played move removed, packed with the castling, en passant and clock before it.
+	private long[] hashHistory = new long[256];		// holds the hash before each played move.
+	private int ply = 0;							// holds the number of moves in the history.
+
+	/**
+	 * Generates a new empty position.
+	 */
+	public Position()
+	{
+		clear();
+	}
+
+	/**
+	 * Generates a new position which is a copy of another position.
+	 *
+	 * @param _other The position to copy.
+	 */
+	public Position(Position _other)
+	{
+		copyFrom(_other);
+	}
+
+	/**
+	 * Makes this position a copy of another position, including its history.
+	 *
+	 * The arrays of this position are reused where they are large enough, so a position can be reset many times
+	 * without creating objects.
+	 *
+	 * @param _other The position to copy.
+	 */
+	public void copyFrom(Position _other)
+	{
+		System.arraycopy(_other.pieces, 0, pieces, 0, 12);		// copying the bitboards.
+		System.arraycopy(_other.colours, 0, colours, 0, 2);
+		System.arraycopy(_other.squares, 0, squares, 0, 64);
+		sideToMove = _other.sideToMove;
+		hash = _other.hash;
+		castling = _other.castling;
+		enPassant = _other.enPassant;
+		halfmoveClock = _other.halfmoveClock;
+		fullmoveNumber = _other.fullmoveNumber;
+		middlegameScore = _other.middlegameScore;
+		endgameScore = _other.endgameScore;
+		phase = _other.phase;
+		pawnHash = _other.pawnHash;
+
+		if (history.length < _other.history.length) 			// growing the history to fit.
+		{
+			history = new int[_other.history.length];
+			hashHistory = new long[_other.history.length];
+		}
+
+		System.arraycopy(_other.history, 0, history, 0, _other.ply);
+		System.arraycopy(_other.hashHistory, 0, hashHistory, 0, _other.ply);
+		ply = _other.ply;
+	}
+
+	/**
+	 * Creates the starting position of the game.
+	 *
+	 * @return The starting position.
+	 */
+	public static Position startPosition()
+	{
+		Position position = new Position();
+
+		position.setupStart();
+
+		return position;
+	}
+
+	/**
+	 * Sets up the starting position.
+	 *
+	 * Places the white pieces on the bottom two rows and the black pieces on the top two rows, and makes the rest of
+	 * the squares empty.
+	 */
+	public void setupStart()
+	{
+		clear();
+
+		int[] backRow = {ROOK, KNIGHT, BISHOP, QUEEN, KING, BISHOP, KNIGHT, ROOK}; 	// the pieces from the left column.
+
+		for (int i = 0; i < 8; i++) 								// looping each column.
+		{
+			addPiece(BLACK, backRow[i], i);
+			addPiece(BLACK, PAWN, 8 + i);
+			addPiece(WHITE, PAWN, 48 + i);
+			addPiece(WHITE, backRow[i], 56 + i);
+		}
+
+		setCastling(WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE | BLACK_QUEENSIDE);
+	}
+
+	/**
+	 * Removes all the pieces from the position.
+	 */
+	public void clear()
+	{
+		for (int i = 0; i < 12; i++)
+		{
+			pieces[i] = 0L;
+		}
+
+		for (int i = 0; i < 64; i++)
+		{
+			squares[i] = NO_PIECE;
+		}
+
+		colours[WHITE] = 0L;
+		colours[BLACK] = 0L;
+		sideToMove = WHITE;
+		castling = 0;
+		enPassant = -1;
+		halfmoveClock = 0;
+		fullmoveNumber = 1;
+		hash = Zobrist.castling(0);
+		middlegameScore = 0;
+		endgameScore = 0;
+		phase = 0;
+		pawnHash = 0L;
+		ply = 0;
+	}
+
+	/**
+	 * Places a piece on a square.
+	 *
+	 * @param _colour The colour of the piece.
+	 * @param _piece The type of the piece.
+	 * @param _square The square to place the piece on.
+	 */
+	public void addPiece(int _colour, int _piece, int _square)
+	{
+		removePiece(_square); 										// a square only holds one piece.
+
+		put((_colour * 6) + _piece, _square);
+	}
+
+	/**
+	 * Removes whatever piece is on a square.
+	 *
+	 * @param _square The square to clear.
+	 */
+	public void removePiece(int _square)
+	{
+		if (squares[_square] != NO_PIECE) 							// only clearing a square that holds a piece.
+		{
+			take(_square);
+		}
+	}
+
+	/**
+	 * Plays a move and passes the turn to the other side.
+	 *
+	 * Only the bitboards, occupancy and squares the move touches are changed, along with the castling rights, en
+	 * passant square, move counters and hash. What the move removed is pushed onto the history, so the move can be
+	 * taken back with unmakeMove.
+	 *
+	 * @param _move The packed move to play, which must be a legal move from the move generator.
+	 */
+	public void makeMove(int _move)
+	{
+		int from = Move.getFrom(_move), to = Move.getTo(_move);
+		int colour = sideToMove, moving = squares[from], captured = NO_PIECE;
+
+		if (ply == history.length) 									// making room for longer games.
+		{
+			history = Arrays.copyOf(history, ply * 2);
+			hashHistory = Arrays.copyOf(hashHistory, ply * 2);
+		}
+
+		hashHistory[ply] = hash;
+
+		hash ^= Zobrist.castling(castling) ^ Zobrist.enPassant(enPassant); 	// these are added back once they have changed.
+
+		if (Move.hasFlag(_move, Move.EN_PASSANT)) 					// the taken pawn is beside the pawn, not on the new square.
+		{
+			captured = squares[enPassantVictim(to, colour)];
+
+			take(enPassantVictim(to, colour));
+		}
+		else if (squares[to] != NO_PIECE) 							// taking the piece off the new square.
+		{
+			captured = squares[to];
+
+			take(to);
+		}
+
+		history[ply++] = (captured + 1) | (castling << 4) | ((enPassant + 1) << 8) | (halfmoveClock << 16);
+
+		take(from); 												// moving the piece across.
+		put(Move.getPromotion(_move) != 0 ? (colour * 6) + Move.getPromotion(_move) : moving, to);
+
+		if (Move.hasFlag(_move, Move.CASTLE)) 						// the rook jumps over the king.
+		{
+			int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+
+			put(squares[rookFrom], rookTo);
+			take(rookFrom);
+		}
+
+		enPassant = Move.hasFlag(_move, Move.DOUBLE_PUSH) ? (from + to) / 2 : -1;
+		castling &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+		halfmoveClock = (moving % 6 == PAWN || captured != NO_PIECE) ? 0 : halfmoveClock + 1;
+
+		if (colour == BLACK)
+		{
+			fullmoveNumber++;
+		}
+
+		sideToMove = 1 - sideToMove;
+		hash ^= Zobrist.castling(castling) ^ Zobrist.enPassant(enPassant) ^ Zobrist.BLACK_TO_MOVE;
+	}
+
+	/**
+	 * Takes back the last move played with makeMove.
+	 *
+	 * @param _move The packed move to take back, which must be the last move played.
+	 */
+	public void unmakeMove(int _move)
+	{
+		int from = Move.getFrom(_move), to = Move.getTo(_move);
+		int state = history[--ply];
+
+		sideToMove = 1 - sideToMove;
+
+		int colour = sideToMove, captured = (state & 0xF) - 1;
+
+		if (Move.hasFlag(_move, Move.CASTLE)) 						// putting the rook back.
+		{
+			int rookFrom = to > from ? from + 3 : from - 4, rookTo = to > from ? from + 1 : from - 1;
+
+			put(squares[rookTo], rookFrom);
+			take(rookTo);
+		}
+
+		int moved = Move.getPromotion(_move) != 0 ? (colour * 6) + PAWN : squares[to];
+
+		take(to); 													// moving the piece back.
+		put(moved, from);
+
+		if (captured != NO_PIECE) 									// putting back the piece that was taken.
+		{
+			put(captured, Move.hasFlag(_move, Move.EN_PASSANT) ? enPassantVictim(to, colour) : to);
+		}
+
+		castling = (state >>> 4) & 0xF;
+		enPassant = ((state >>> 8) & 0xFF) - 1;
+		halfmoveClock = state >>> 16;
+
+		if (colour == BLACK)
+		{
+			fullmoveNumber--;
+		}
+
+		hash = hashHistory[ply];
+	}
+
+	/**
+	 * Returns the square of the pawn taken by an en passant capture.
+	 *
+	 * @param _to The square the capturing pawn moves to.
+	 * @param _colour The colour of the capturing pawn.
+	 * @return The square of the taken pawn, which is one row behind the new square.
+	 */
+	private static int enPassantVictim(int _to, int _colour)
+	{
+		return _colour == WHITE ? _to + 8 : _to - 8;
+	}
+
+	/**
+	 * Puts a piece on an empty square, keeping the bitboards, squares, hashes and scores up to date.
+	 *
+	 * @param _index The bitboard index of the piece.
+	 * @param _square The square.
+	 */
+	private void put(int _index, int _square)
+	{
+		long bit = 1L << _square;
+
+		pieces[_index] |= bit;
+		colours[_index / 6] |= bit;
+		squares[_square] = _index;
+		hash ^= Zobrist.piece(_index, _square);
+		middlegameScore += Evaluation.MIDDLEGAME[_index][_square];
+		endgameScore += Evaluation.ENDGAME[_index][_square];
+		phase += Evaluation.PHASE[_index];
+
+		if (_index % 6 == PAWN)
+		{
+			pawnHash ^= Zobrist.piece(_index, _square);
+		}
+	}
+
+	/**
+	 * Takes the piece off a square, keeping the bitboards, squares, hashes and scores up to date.
+	 *
+	 * @param _square The square, which must hold a piece.
+	 */
+	private void take(int _square)
+	{
+		int index = squares[_square];
+		long mask = ~(1L << _square);
+
+		pieces[index] &= mask;
+		colours[index / 6] &= mask;
+		squares[_square] = NO_PIECE;
+		hash ^= Zobrist.piece(index, _square);
+		middlegameScore -= Evaluation.MIDDLEGAME[index][_square];
+		endgameScore -= Evaluation.ENDGAME[index][_square];
+		phase -= Evaluation.PHASE[index];
+
+		if (index % 6 == PAWN)
+		{
+			pawnHash ^= Zobrist.piece(index, _square);
+		}
+	}
+
+	/**
+	 * Returns the type of the piece on a square.
+	 *
+	 * @param _square The square to look at.
+	 * @return The type of the piece, or NO_PIECE if the square is empty.
+	 */
+	public int getPieceAt(int _square)
+	{
+		int index = squares[_square];
+
+		return index == NO_PIECE ? NO_PIECE : index % 6;
+	}
+
+	/**
+	 * Returns the colour of the piece on a square.
+	 *
+	 * @param _square The square to look at.
+	 * @return The colour of the piece, or NO_PIECE if the square is empty.
+	 */
+	public int getColourAt(int _square)
+	{
+		int index = squares[_square];
+
+		return index == NO_PIECE ? NO_PIECE : index / 6;
+	}
+
+	/**
+	 * Returns the bitboard for one piece type of one colour.
+	 *
+	 * @param _colour The colour of the pieces.
+	 * @param _piece The type of the pieces.
+	 * @return The bitboard of the pieces.
+	 */
+	public long getPieces(int _colour, int _piece)
+	{
+		return pieces[(_colour * 6) + _piece];
+	}
+
+	/**
+	 * Returns the bitboard of all the pieces of one colour.
+	 *
+	 * @param _colour The colour of the pieces.
+	 * @return The bitboard of the pieces.
+	 */
+	public long getColourOccupancy(int _colour)
+	{
+		return colours[_colour];
+	}
+
+	/**
+	 * Returns the bitboard of every piece on the board.
+	 *
+	 * @return The bitboard of every piece.
+	 */
+	public long getOccupancy()
+	{
+		return colours[WHITE] | colours[BLACK];
+	}
+
+	/**
+	 * Checks if a square is attacked by any piece of one colour.
+	 *
+	 * Works backwards from the square, so a square is attacked by a knight if a knight sits on a square a knight
+	 * could reach from it, and so on for each piece type.
+	 *
+	 * @param _square The square to check.
+	 * @param _colour The colour of the attacking pieces.
+	 * @return Whether the square is attacked.
+	 */
+	public boolean isSquareAttacked(int _square, int _colour)
+	{
+		return attackersTo(_square, _colour, getOccupancy()) != 0;
+	}
+
+	/**
+	 * Finds the pieces of one colour that attack a square.
+	 *
+	 * @param _square The square to check.
+	 * @param _colour The colour of the attacking pieces.
+	 * @param _occupancy The pieces that block the sliding pieces, which may differ from the real board.
+	 * @return The bitboard of the attacking pieces.
+	 */
+	public long attackersTo(int _square, int _colour, long _occupancy)
+	{
+		long queens = getPieces(_colour, QUEEN);
+
+		return (Attacks.pawnAttacks(1 - _colour, _square) & getPieces(_colour, PAWN))
+			| (Attacks.knightAttacks(_square) & getPieces(_colour, KNIGHT))
+			| (Attacks.kingAttacks(_square) & getPieces(_colour, KING))
+			| (Attacks.bishopAttacks(_square, _occupancy) & (getPieces(_colour, BISHOP) | queens))
+			| (Attacks.rookAttacks(_square, _occupancy) & (getPieces(_colour, ROOK) | queens));
+	}
+
+	/**
+	 * Checks if the king of the side to move is attacked.
+	 *
+	 * @return Whether the side to move is in check, which is false if it has no king.
+	 */
+	public boolean isInCheck()
+	{
+		long king = getPieces(sideToMove, KING);
+
+		return king != 0 && isSquareAttacked(Long.numberOfTrailingZeros(king), 1 - sideToMove);
+	}
+
+	/**
+	 * Returns the colour of the side that moves next.
+	 *
+	 * @return The colour of the side to move.
+	 */
+	public int getSideToMove()
+	{
+		return sideToMove;
+	}
+
+	/**
+	 * Sets the colour of the side that moves next.
+	 *
+	 * @param _colour The colour of the side to move.
+	 */
+	public void setSideToMove(int _colour)
+	{
+		if (_colour != sideToMove)
+		{
+			sideToMove = _colour;
+			hash ^= Zobrist.BLACK_TO_MOVE;
+		}
+	}
+
+	/**
+	 * Returns the castling rights that are left.
+	 *
+	 * @return The castling rights, as the WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE bits.
+	 */
+	public int getCastling()
+	{
+		return castling;
+	}
+
+	/**
+	 * Sets the castling rights.
+	 *
+	 * @param _castling The castling rights, as the WHITE_KINGSIDE, WHITE_QUEENSIDE, BLACK_KINGSIDE and BLACK_QUEENSIDE bits.
+	 */
+	public void setCastling(int _castling)
+	{
+		hash ^= Zobrist.castling(castling) ^ Zobrist.castling(_castling);
+		castling = _castling;
+	}
+
+	/**
+	 * Returns the square a pawn can be taken en passant on.
+	 *
+	 * @return The square behind the pawn that has just moved two squares, or -1.
+	 */
+	public int getEnPassant()
+	{
+		return enPassant;
+	}
+
+	/**
+	 * Sets the square a pawn can be taken en passant on.
+	 *
+	 * @param _square The square behind the pawn that has just moved two squares, or -1.
+	 */
+	public void setEnPassant(int _square)
+	{
+		hash ^= Zobrist.enPassant(enPassant) ^ Zobrist.enPassant(_square);
+		enPassant = _square;
+	}
+
+	/**
+	 * Returns the number of moves since a pawn moved or a piece was taken.
+	 *
+	 * @return The number of half moves.
+	 */
+	public int getHalfmoveClock()
+	{
+		return halfmoveClock;
+	}
+
+	/**
+	 * Sets the number of moves since a pawn moved or a piece was taken.
+	 *
+	 * @param _halfmoves The number of half moves.
+	 */
+	public void setHalfmoveClock(int _halfmoves)
+	{
+		halfmoveClock = _halfmoves;
+	}
+
+	/**
+	 * Returns the number of the move, which starts at 1 and goes up after black moves.
+	 *
+	 * @return The move number.
+	 */
+	public int getFullmoveNumber()
+	{
+		return fullmoveNumber;
+	}
+
+	/**
+	 * Sets the number of the move.
+	 *
+	 * @param _number The move number.
+	 */
+	public void setFullmoveNumber(int _number)
+	{
+		fullmoveNumber = _number;
+	}
+
+	/**
+	 * Checks if the position is drawn by the fifty move rule, by repeating a position, or because neither side has
+	 * enough pieces left to give checkmate.
+	 *
+	 * A position is counted as drawn the first time it comes back, which is what a search needs, as the side that
+	 * could avoid the repeat can be assumed to.
+	 *
+	 * @return Whether the position is a draw.
+	 */
+	public boolean isDraw()
+	{
+		return halfmoveClock >= 100 || countRepetitions() > 0 || hasInsufficientMaterial();
+	}
+
+	/**
+	 * Checks if the game has been drawn under the rules, where a position must come up three times.
+	 *
+	 * @return Whether the game is drawn.
+	 */
+	public boolean isGameDrawn()
+	{
+		return halfmoveClock >= 100 || countRepetitions() >= 2 || hasInsufficientMaterial();
+	}
+
+	/**
+	 * Counts how many times the position has come up before in the history.
+	 *
+	 * Only the positions since the last pawn move or capture, with the same side to move, are compared.
+	 *
+	 * @return The number of earlier times the position came up.
+	 */
+	public int countRepetitions()
+	{
+		int count = 0;
+
+		for (int i = ply - 2; i >= 0 && i >= ply - halfmoveClock; i -= 2)
+		{
+			if (hashHistory[i] == hash)
+			{
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Checks if neither side has enough pieces left to give checkmate.
+	 *
+	 * This is true with only the kings, or the kings and a single knight or bishop.
+	 *
+	 * @return Whether there is not enough material to give checkmate.
+	 */
+	public boolean hasInsufficientMaterial()
+	{
+		long heavy = pieces[PAWN] | pieces[ROOK] | pieces[QUEEN] | pieces[6 + PAWN] | pieces[6 + ROOK] | pieces[6 + QUEEN];
+
+		if (heavy != 0)
+		{
+			return false;
+		}
+
+		long minors = pieces[KNIGHT] | pieces[BISHOP] | pieces[6 + KNIGHT] | pieces[6 + BISHOP];
+
+		return Long.bitCount(minors) <= 1;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the position.
+	 *
+	 * Two positions with the same pieces on the same squares, side to move, castling rights and en passant square have
+	 * the same hash, however they were reached.
+	 *
+	 * @return The hash.
+	 */
+	public long getHash()
+	{
+		return hash;
+	}
+
+	/**
+	 * Returns the material and square values of the pieces in the middle game.
+	 *
+	 * @return The score in centipawns for white, kept up to date as pieces move.
+	 */
+	public int getMiddlegameScore()
+	{
+		return middlegameScore;
+	}
+
+	/**
+	 * Returns the material and square values of the pieces in the end game.
+	 *
+	 * @return The score in centipawns for white, kept up to date as pieces move.
+	 */
+	public int getEndgameScore()
+	{
+		return endgameScore;
+	}
+
+	/**
+	 * Returns how far from the end game the pieces left are.
+	 *
+	 * @return Evaluation.TOTAL_PHASE with all the pieces on the board, falling to 0 with only kings and pawns.
+	 */
+	public int getPhase()
+	{
+		return phase;
+	}
+
+	/**
+	 * Returns the Zobrist hash of the pawns alone, which only changes when a pawn moves, is taken or promotes.
+	 *
+	 * @return The pawn hash.
+	 */
+	public long getPawnHash()
+	{
+		return pawnHash;
+	}
+
+	/**
+	 * Returns the square type used to display a square.
+	 *
+	 * @param _square The square to look at.
+	 * @return The square type of the piece on the square, or EMPTYSQUARE if there is no piece.
+	 */
+	public squareType getSquareType(int _square)
+	{
+		switch (getPieceAt(_square))
+		{
+			case PAWN:
+				return squareType.PAWN;
+
+			case KNIGHT:
+				return squareType.KNIGHT;
+
+			case BISHOP:
+				return squareType.BISHOP;
+
+			case ROOK:
+				return squareType.ROOK;
+
+			case QUEEN:
+				return squareType.QUEEN;
+
+			case KING:
+				return squareType.KING;
+
+			default:
+				return squareType.EMPTYSQUARE;
+		}
+	}
+}
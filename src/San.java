@@ -0,0 +1,237 @@
+/**
+ * Reads and writes moves in Standard Algebraic Notation (SAN), as used in PGN files.
+ *
+ * A move is written as the piece letter (none for pawns), enough of the starting square to tell it apart from
+ * other pieces of the same type that could reach the same square, an x for captures, the square moved to, and the
+ * promotion piece. Castling is written O-O or O-O-O. A + is added for check and a # for checkmate.
+ */
+public final class San
+{
+	private static final String PIECE_LETTERS = " NBRQK";		// the letter of each piece type, with none for pawns.
+
+	/**
+	 * The notation is only used through the static methods.
+	 */
+	private San()
+	{
+	}
+
+	/**
+	 * Writes a move in SAN.
+	 *
+	 * @param _position The position the move is played in, which is left unchanged.
+	 * @param _move The legal move.
+	 * @return The move in SAN.
+	 */
+	public static String toSan(Position _position, int _move)
+	{
+		StringBuilder san = new StringBuilder(8);
+		int from = Move.getFrom(_move), to = Move.getTo(_move), piece = Move.getPiece(_move);
+
+		if (Move.hasFlag(_move, Move.CASTLE))
+		{
+			san.append(to > from ? "O-O" : "O-O-O");
+		}
+		else if (piece == Position.PAWN)
+		{
+			if (Move.isCapture(_move)) 								// a pawn capture names the column it came from.
+			{
+				san.append((char) ('a' + (from % 8))).append('x');
+			}
+
+			san.append(Move.squareName(to));
+
+			if (Move.getPromotion(_move) != 0)
+			{
+				san.append('=').append(PIECE_LETTERS.charAt(Move.getPromotion(_move)));
+			}
+		}
+		else
+		{
+			san.append(PIECE_LETTERS.charAt(piece));
+
+			appendDisambiguation(san, _position, _move);
+
+			if (Move.isCapture(_move))
+			{
+				san.append('x');
+			}
+
+			san.append(Move.squareName(to));
+		}
+
+		_position.makeMove(_move); 									// the check mark needs the position after the move.
+
+		if (_position.isInCheck())
+		{
+			san.append(MoveGenerator.generateMoves(_position, new int[MoveGenerator.MAX_MOVES]) == 0 ? '#' : '+');
+		}
+
+		_position.unmakeMove(_move);
+
+		return san.toString();
+	}
+
+	/**
+	 * Reads a move written in SAN.
+	 *
+	 * Check marks and annotations such as ! and ? are ignored, castling may be written with zeros, and the = before a
+	 * promotion piece may be left out.
+	 *
+	 * @param _position The position the move is played in, which is left unchanged.
+	 * @param _san The move in SAN.
+	 * @return The legal move.
+	 * @throws IllegalArgumentException If the text is not a legal move, or could be more than one move.
+	 */
+	public static int parse(Position _position, String _san)
+	{
+		String text = _san;
+
+		while (!text.isEmpty() && "+#!?".indexOf(text.charAt(text.length() - 1)) >= 0) 	// dropping the check mark and annotations.
+		{
+			text = text.substring(0, text.length() - 1);
+		}
+
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateMoves(_position, buffer);
+
+		if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0"))
+		{
+			boolean kingside = text.length() == 3;
+
+			for (int i = 0; i < count; i++)
+			{
+				if (Move.hasFlag(buffer[i], Move.CASTLE) && (Move.getTo(buffer[i]) > Move.getFrom(buffer[i])) == kingside)
+				{
+					return buffer[i];
+				}
+			}
+
+			throw new IllegalArgumentException("Illegal castling move: " + _san);
+		}
+
+		int promotion = 0;
+
+		if (text.length() > 2 && PIECE_LETTERS.indexOf(text.charAt(text.length() - 1)) > Position.PAWN) 	// the promotion piece at the end.
+		{
+			promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+			text = text.substring(0, text.length() - (text.charAt(text.length() - 2) == '=' ? 2 : 1));
+		}
+
+		int piece = Position.PAWN;
+
+		if (!text.isEmpty() && PIECE_LETTERS.indexOf(text.charAt(0)) > Position.PAWN) 	// a piece letter, as pawns have none.
+		{
+			piece = PIECE_LETTERS.indexOf(text.charAt(0));
+			text = text.substring(1);
+		}
+
+		int to = text.length() >= 2 ? Move.parseSquare(text.substring(text.length() - 2)) : -1;
+
+		if (to < 0)
+		{
+			throw new IllegalArgumentException("Bad move: " + _san);
+		}
+
+		String from = text.substring(0, text.length() - 2).replace("x", ""); 	// what is left names the starting square.
+		int found = Move.NONE;
+
+		for (int i = 0; i < count; i++) 							// finding the one legal move that fits.
+		{
+			int move = buffer[i];
+
+			if (Move.getPiece(move) != piece || Move.getTo(move) != to || Move.getPromotion(move) != promotion
+				|| Move.hasFlag(move, Move.CASTLE) || !matchesFrom(Move.getFrom(move), from))
+			{
+				continue;
+			}
+
+			if (found != Move.NONE)
+			{
+				throw new IllegalArgumentException("Ambiguous move: " + _san);
+			}
+
+			found = move;
+		}
+
+		if (found == Move.NONE)
+		{
+			throw new IllegalArgumentException("Illegal move: " + _san);
+		}
+
+		return found;
+	}
+
+	/**
+	 * Adds the column, row or both of the starting square, when another piece of the same type can reach the same
+	 * square.
+	 *
+	 * @param _san The text the move is written to.
+	 * @param _position The position the move is played in.
+	 * @param _move The move.
+	 */
+	private static void appendDisambiguation(StringBuilder _san, Position _position, int _move)
+	{
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateMoves(_position, buffer);
+		int from = Move.getFrom(_move);
+		boolean other = false, sameColumn = false, sameRow = false;
+
+		for (int i = 0; i < count; i++) 							// looking for other pieces of the type reaching the square.
+		{
+			int move = buffer[i];
+			int otherFrom = Move.getFrom(move);
+
+			if (otherFrom != from && Move.getPiece(move) == Move.getPiece(_move) && Move.getTo(move) == Move.getTo(_move))
+			{
+				other = true;
+				sameColumn |= otherFrom % 8 == from % 8;
+				sameRow |= otherFrom / 8 == from / 8;
+			}
+		}
+
+		if (!other)
+		{
+			return;
+		}
+
+		String name = Move.squareName(from);
+
+		if (!sameColumn) 											// the column is enough when it differs.
+		{
+			_san.append(name.charAt(0));
+		}
+		else if (!sameRow)
+		{
+			_san.append(name.charAt(1));
+		}
+		else
+		{
+			_san.append(name);
+		}
+	}
+
+	/**
+	 * Checks if a starting square fits the column, row or square given in a move.
+	 *
+	 * @param _square The starting square.
+	 * @param _text The column letter, row number, both, or nothing.
+	 * @return Whether the square fits.
+	 */
+	private static boolean matchesFrom(int _square, String _text)
+	{
+		String name = Move.squareName(_square);
+
+		for (char c : _text.toCharArray())
+		{
+			boolean column = c >= 'a' && c <= 'h', row = c >= '1' && c <= '8';
+
+			if ((!column && !row) || (column && c != name.charAt(0)) || (row && c != name.charAt(1)))
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
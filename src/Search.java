@@ -0,0 +1,604 @@
+import java.util.Arrays;
+
+/**
+ * Searches a position for the best move.
+ *
+ * Uses negamax alpha-beta search with iterative deepening, so a result from the last completed depth is always
+ * ready when the time or node budget runs out. Moves are tried in the order most likely to cause a cutoff: the move
+ * stored in the transposition table, then captures with the most valuable victim and least valuable attacker, then
+ * killer moves and moves with a good history. At the end of the search captures are followed in a quiescence
+ * search, so positions are not judged in the middle of an exchange. A position that repeats one already played, or
+ * is drawn by the fifty move rule, scores 0. Once few enough pieces are left, a position in the endgame tablebases
+ * is scored from its tablebase result rather than searched.
+ *
+ * One search object must only be used by one thread at a time, but several searches can share a transposition table.
+ */
+public class Search
+{
+	public static final int MAX_PLY = 128;						// the deepest the search will go.
+	public static final int INFINITY = 32000;					// a score larger than any real score.
+	public static final int MATE = 30000;						// the score of giving checkmate straight away.
+	public static final int MATE_BOUND = MATE - MAX_PLY - TablebaseGenerator.MAX_DISTANCE;	// scores this far from 0 are mates, found in the search or a tablebase.
+
+	private static final int TT_MOVE_SCORE = 1 << 30;			// the ordering scores of each kind of move.
+	private static final int CAPTURE_SCORE = 1 << 28;
+	private static final int KILLER_SCORE = 1 << 27;
+
+	private TranspositionTable table;							// holds the results of positions already searched.
+	private Tablebase tablebase;								// holds the endgame tablebases, or null if there are none.
+	private Evaluation evaluation = new Evaluation();			// holds this search's evaluation, with its own pawn table.
+	private Position position;									// holds the position being searched, changed by make and unmake.
+
+	private int[][] moves = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];	// holds one move buffer for each ply.
+	private int[][] orderScores = new int[MAX_PLY + 1][MoveGenerator.MAX_MOVES];	// holds the ordering score of each move.
+	private int[][] killers = new int[MAX_PLY + 1][2];			// holds two quiet moves that caused a cutoff at each ply.
+	private int[][] historyScores = new int[12][64];			// holds how often each piece moving to each square caused a cutoff.
+
+	private long nodes;											// holds the number of positions searched.
+	private long nodeLimit;										// holds the number of positions the search may visit.
+	private long deadline;										// holds the System.nanoTime the search must stop by.
+	private volatile boolean stopped;							// set when the search must stop as soon as possible.
+
+	private int rootMove;										// holds the best move found so far at the current depth.
+	private int bestMove;										// holds the best move of the last completed depth.
+	private int bestScore;										// holds the score of the best move.
+	private int completedDepth;									// holds the last depth that was fully searched.
+	private int helperIndex = 0;								// holds which helper thread this search is, 0 for the main search.
+	private boolean sharedTable = false;						// set when the owner of the table starts each search on it.
+
+	/**
+	 * Generates a new search.
+	 *
+	 * @param _table The transposition table used by the search.
+	 */
+	public Search(TranspositionTable _table)
+	{
+		table = _table;
+	}
+
+	/**
+	 * Searches a position for the best move.
+	 *
+	 * The search goes one depth deeper each time until the depth, time or node limit is reached, or stop is called.
+	 * The first depth is always completed.
+	 *
+	 * @param _position The position to search, which is left unchanged.
+	 * @param _maxDepth The deepest depth to search.
+	 * @param _timeMillis The time the search may take in milliseconds, or 0 for no limit.
+	 * @param _maxNodes The number of positions the search may visit, or 0 for no limit.
+	 * @return The best move, or Move.NONE if the side to move has no moves.
+	 */
+	public int search(Position _position, int _maxDepth, long _timeMillis, long _maxNodes)
+	{
+		long start = System.nanoTime();
+
+		position = _position;
+		nodes = 0;
+		nodeLimit = _maxNodes > 0 ? _maxNodes : Long.MAX_VALUE;
+		deadline = _timeMillis > 0 ? System.nanoTime() + (_timeMillis * 1000000L) : Long.MAX_VALUE;
+		stopped = false;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+
+		for (int[] killer : killers) 								// the killers of the last search do not apply.
+		{
+			killer[0] = Move.NONE;
+			killer[1] = Move.NONE;
+		}
+
+		if (!sharedTable) 											// a shared table is aged once for all its threads.
+		{
+			table.newSearch();
+		}
+
+		int count = MoveGenerator.generateMoves(_position, moves[0]);
+
+		rootMove = count > 0 ? moves[0][0] : Move.NONE; 			// a move to give even if the search is stopped straight away.
+
+		for (int depth = 1; depth <= Math.min(_maxDepth, MAX_PLY); depth++) 	// searching one depth deeper each time.
+		{
+			if (helperIndex > 0 && depth > 1 && depth < _maxDepth && ((depth + helperIndex) % 2) == 0)
+			{
+				continue; 											// helpers skip some depths, so they run ahead of the main search.
+			}
+
+			int score = alphaBeta(depth, -INFINITY, INFINITY, 0);
+
+			if (stopped) 											// the depth was not finished, so its result is not used.
+			{
+				if (completedDepth == 0) 							// unless no depth was, when the best move so far is better than none.
+				{
+					bestMove = rootMove;
+				}
+
+				break;
+			}
+
+			completedDepth = depth;
+			bestScore = score;
+			bestMove = rootMove;
+
+			if (Math.abs(score) >= MATE_BOUND) 						// a forced mate has been found, so searching deeper will not change it.
+			{
+				break;
+			}
+		}
+
+		Metrics.countSearch(nodes, System.nanoTime() - start);
+
+		return bestMove;
+	}
+
+	/**
+	 * Forgets everything learned from earlier searches, clearing the transposition table and the move history.
+	 *
+	 * After this the search of a position gives the same result as a new search object would.
+	 */
+	public void newGame()
+	{
+		table.clear();
+
+		for (int[] scores : historyScores)
+		{
+			Arrays.fill(scores, 0);
+		}
+	}
+
+	/**
+	 * Stops the search as soon as possible.
+	 *
+	 * This can be called from another thread. The search still returns the best move of the last completed depth, or
+	 * the best move found so far if the first depth was not completed.
+	 */
+	public void stop()
+	{
+		stopped = true;
+	}
+
+	/**
+	 * Sets the endgame tablebases the search looks positions up in.
+	 *
+	 * @param _tablebase The tablebases, or null to search every position.
+	 */
+	public void setTablebase(Tablebase _tablebase)
+	{
+		tablebase = _tablebase;
+	}
+
+	/**
+	 * Makes this search a helper in a parallel search.
+	 *
+	 * Helpers skip some depths, so the threads sharing a transposition table search different parts of the tree.
+	 *
+	 * @param _helperIndex Which helper thread this is, or 0 for the main search.
+	 */
+	public void setHelperIndex(int _helperIndex)
+	{
+		helperIndex = _helperIndex;
+	}
+
+	/**
+	 * Sets whether the transposition table is shared with other searches.
+	 *
+	 * A search on a shared table does not start a new search age on it, as each thread would age it again. Whoever
+	 * shares the table must call newSearch on it once before the searches start.
+	 *
+	 * @param _sharedTable Whether the table is shared.
+	 */
+	public void setSharedTable(boolean _sharedTable)
+	{
+		sharedTable = _sharedTable;
+	}
+
+	/**
+	 * Returns the best move found by the last search.
+	 *
+	 * @return The best move.
+	 */
+	public int getBestMove()
+	{
+		return bestMove;
+	}
+
+	/**
+	 * Returns the score of the best move found by the last search.
+	 *
+	 * @return The score in centipawns from the point of view of the side to move.
+	 */
+	public int getBestScore()
+	{
+		return bestScore;
+	}
+
+	/**
+	 * Returns the last depth that was fully searched.
+	 *
+	 * @return The depth.
+	 */
+	public int getCompletedDepth()
+	{
+		return completedDepth;
+	}
+
+	/**
+	 * Returns the number of positions visited by the last search.
+	 *
+	 * @return The number of positions.
+	 */
+	public long getNodes()
+	{
+		return nodes;
+	}
+
+	/**
+	 * Searches a position to a depth.
+	 *
+	 * @param _depth The depth left to search.
+	 * @param _alpha The score the side to move is already sure of.
+	 * @param _beta The score the other side is already sure of.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The score of the position from the point of view of the side to move.
+	 */
+	private int alphaBeta(int _depth, int _alpha, int _beta, int _ply)
+	{
+		if (_depth <= 0 || _ply >= MAX_PLY) 						// at the end of the search only captures are followed.
+		{
+			return quiescence(_alpha, _beta, _ply);
+		}
+
+		if (shouldStop())
+		{
+			return 0;
+		}
+
+		nodes++;
+
+		if (_ply > 0 && position.isDraw()) 							// a repeated position, the fifty move rule or too few pieces.
+		{
+			return 0;
+		}
+
+		if (_ply > 0 && tablebase != null) 							// an ending in the tablebases is looked up rather than searched.
+		{
+			int result = tablebase.probe(position);
+
+			if (result != Tablebase.NO_RESULT)
+			{
+				return tablebaseScore(result, _ply);
+			}
+		}
+
+		long hash = position.getHash();
+		long entry = table.probe(hash);
+		int tableMove = Move.NONE;
+
+		if (entry != TranspositionTable.NO_ENTRY)
+		{
+			tableMove = TranspositionTable.getMove(entry);
+
+			if (_ply > 0 && TranspositionTable.getDepth(entry) >= _depth) 	// the stored result is deep enough to use.
+			{
+				int score = fromTable(TranspositionTable.getScore(entry), _ply);
+				int bound = TranspositionTable.getBound(entry);
+
+				if (bound == TranspositionTable.EXACT
+					|| (bound == TranspositionTable.LOWER && score >= _beta)
+					|| (bound == TranspositionTable.UPPER && score <= _alpha))
+				{
+					return score;
+				}
+			}
+		}
+
+		int[] buffer = moves[_ply];
+		int count = MoveGenerator.generateMoves(position, buffer);
+
+		if (count == 0) 											// no moves is checkmate if in check, otherwise a draw.
+		{
+			return position.isInCheck() ? -MATE + _ply : 0;
+		}
+
+		scoreMoves(buffer, count, tableMove, _ply);
+
+		int originalAlpha = _alpha, best = -INFINITY, bestHere = Move.NONE;
+
+		for (int i = 0; i < count; i++)
+		{
+			int move = pickMove(buffer, count, i, _ply);
+			boolean quiet = !Move.isCapture(move) && Move.getPromotion(move) == 0;
+
+			position.makeMove(move);
+
+			int score = -alphaBeta(_depth - 1, -_beta, -_alpha, _ply + 1);
+
+			position.unmakeMove(move);
+
+			if (stopped)
+			{
+				return 0;
+			}
+
+			if (score > best)
+			{
+				best = score;
+				bestHere = move;
+
+				if (_ply == 0)
+				{
+					rootMove = move;
+				}
+
+				if (score > _alpha)
+				{
+					_alpha = score;
+
+					if (_alpha >= _beta) 							// the other side will not allow this position.
+					{
+						if (quiet) 									// remembering quiet moves that cause cutoffs.
+						{
+							storeKiller(move, _ply);
+							historyScores[position.getSideToMove() * 6 + Move.getPiece(move)][Move.getTo(move)] += _depth * _depth;
+						}
+
+						break;
+					}
+				}
+			}
+		}
+
+		int bound = best >= _beta ? TranspositionTable.LOWER : (best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER);
+
+		table.store(hash, bestHere, toTable(best, _ply), _depth, bound);
+
+		return best;
+	}
+
+	/**
+	 * Searches only the captures of a position, until the position is quiet.
+	 *
+	 * The side to move may stand pat, taking the static score instead of capturing.
+	 *
+	 * @param _alpha The score the side to move is already sure of.
+	 * @param _beta The score the other side is already sure of.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The score of the position from the point of view of the side to move.
+	 */
+	private int quiescence(int _alpha, int _beta, int _ply)
+	{
+		if (shouldStop())
+		{
+			return 0;
+		}
+
+		nodes++;
+
+		int standPat = evaluation.evaluate(position);
+
+		if (standPat >= _beta || _ply >= MAX_PLY)
+		{
+			return standPat;
+		}
+
+		if (standPat > _alpha)
+		{
+			_alpha = standPat;
+		}
+
+		int[] buffer = moves[_ply];
+		int count = MoveGenerator.generateCaptures(position, buffer);
+
+		scoreMoves(buffer, count, Move.NONE, _ply);
+
+		for (int i = 0; i < count; i++)
+		{
+			int move = pickMove(buffer, count, i, _ply);
+
+			position.makeMove(move);
+
+			int score = -quiescence(-_beta, -_alpha, _ply + 1);
+
+			position.unmakeMove(move);
+
+			if (stopped)
+			{
+				return 0;
+			}
+
+			if (score > _alpha)
+			{
+				_alpha = score;
+
+				if (_alpha >= _beta)
+				{
+					break;
+				}
+			}
+		}
+
+		return _alpha;
+	}
+
+	/**
+	 * Checks if the search has run out of time or nodes.
+	 *
+	 * The clock is only read every 1024 positions. The first depth is always finished.
+	 *
+	 * @return Whether the search must stop.
+	 */
+	private boolean shouldStop()
+	{
+		if (completedDepth == 0)
+		{
+			return false;
+		}
+
+		if (nodes >= nodeLimit || ((nodes & 1023) == 0 && System.nanoTime() > deadline))
+		{
+			stopped = true;
+		}
+
+		return stopped;
+	}
+
+	/**
+	 * Gives each move a score used to decide the order the moves are searched in.
+	 *
+	 * @param _buffer The moves.
+	 * @param _count The number of moves.
+	 * @param _tableMove The move stored in the transposition table, which is searched first.
+	 * @param _ply How many moves from the root the position is.
+	 */
+	private void scoreMoves(int[] _buffer, int _count, int _tableMove, int _ply)
+	{
+		int[] scores = orderScores[_ply];
+		int colour = position.getSideToMove();
+
+		for (int i = 0; i < _count; i++)
+		{
+			int move = _buffer[i];
+
+			if (move == _tableMove)
+			{
+				scores[i] = TT_MOVE_SCORE;
+			}
+			else if (Move.isCapture(move) || Move.getPromotion(move) != 0) 	// the most valuable victim with the least valuable attacker first.
+			{
+				int gain = Move.isCapture(move) ? Evaluation.PIECE_VALUES[Move.getCaptured(move)] : 0;
+
+				if (Move.getPromotion(move) != 0) 					// a promotion gains the new piece.
+				{
+					gain += Evaluation.PIECE_VALUES[Move.getPromotion(move)];
+				}
+
+				scores[i] = CAPTURE_SCORE + (gain * 8) - Move.getPiece(move);
+			}
+			else if (move == killers[_ply][0] || move == killers[_ply][1])
+			{
+				scores[i] = KILLER_SCORE;
+			}
+			else
+			{
+				scores[i] = Math.min(historyScores[colour * 6 + Move.getPiece(move)][Move.getTo(move)], KILLER_SCORE - 1);
+			}
+		}
+	}
+
+	/**
+	 * Moves the best scoring of the remaining moves to the front and returns it.
+	 *
+	 * Picking one move at a time means the moves after a cutoff are never sorted.
+	 *
+	 * @param _buffer The moves.
+	 * @param _count The number of moves.
+	 * @param _index The index of the next move to search.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The move to search next.
+	 */
+	private int pickMove(int[] _buffer, int _count, int _index, int _ply)
+	{
+		int[] scores = orderScores[_ply];
+		int best = _index;
+
+		for (int i = _index + 1; i < _count; i++)
+		{
+			if (scores[i] > scores[best])
+			{
+				best = i;
+			}
+		}
+
+		int move = _buffer[best], score = scores[best];
+
+		_buffer[best] = _buffer[_index];
+		scores[best] = scores[_index];
+		_buffer[_index] = move;
+		scores[_index] = score;
+
+		return move;
+	}
+
+	/**
+	 * Remembers a quiet move that caused a cutoff.
+	 *
+	 * @param _move The move.
+	 * @param _ply How many moves from the root the position is.
+	 */
+	private void storeKiller(int _move, int _ply)
+	{
+		if (killers[_ply][0] != _move)
+		{
+			killers[_ply][1] = killers[_ply][0];
+			killers[_ply][0] = _move;
+		}
+	}
+
+	/**
+	 * Turns a tablebase result into a score.
+	 *
+	 * A win scores as a mate the tablebase distance beyond this position, so the search still prefers the quickest
+	 * mate, and a loss the other way around. Even the longest distance at the deepest ply stays within MATE_BOUND.
+	 *
+	 * @param _result The result and distance returned by Tablebase.probe.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The score from the point of view of the side to move.
+	 */
+	private static int tablebaseScore(int _result, int _ply)
+	{
+		switch (Tablebase.getResult(_result))
+		{
+			case Tablebase.WIN:
+				return MATE - _ply - Tablebase.getDistance(_result);
+
+			case Tablebase.LOSS:
+				return -MATE + _ply + Tablebase.getDistance(_result);
+
+			default:
+				return 0;
+		}
+	}
+
+	/**
+	 * Changes a mate score to be counted from the stored position, rather than the root.
+	 *
+	 * @param _score The score.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The score to store.
+	 */
+	private static int toTable(int _score, int _ply)
+	{
+		if (_score >= MATE_BOUND)
+		{
+			return _score + _ply;
+		}
+
+		if (_score <= -MATE_BOUND)
+		{
+			return _score - _ply;
+		}
+
+		return _score;
+	}
+
+	/**
+	 * Changes a stored mate score back to be counted from the root.
+	 *
+	 * @param _score The stored score.
+	 * @param _ply How many moves from the root the position is.
+	 * @return The score.
+	 */
+	private static int fromTable(int _score, int _ply)
+	{
+		if (_score >= MATE_BOUND)
+		{
+			return _score - _ply;
+		}
+
+		if (_score <= -MATE_BOUND)
+		{
+			return _score + _ply;
+		}
+
+		return _score;
+	}
+}
@@ -0,0 +1,344 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Hosts many games at once, without the board, for players connecting through another program.
+ *
+ * The games are split into shards by their id, and each shard has one thread of its own that is the only thread to
+ * touch its games. So no game needs a lock, and the number of threads stays fixed however many games are open. Each
+ * request is queued on the shard of its game and answered with a future, and a shard with too many requests waiting
+ * turns new ones away rather than letting the queue grow without bound.
+ *
+ * The server can be used in the same program through its methods, or from other programs on the same machine
+ * through listen, which reads one request on each line of a socket and writes one answer for each:
+ * new [fen] starts a game and answers ok and its id, move &lt;id&gt; &lt;move&gt; plays a move and answers ok and
+ * the state of the game, undo &lt;id&gt; takes a move back, fen &lt;id&gt; and moves &lt;id&gt; give the position and
+ * the legal moves, status &lt;id&gt; gives the state, close &lt;id&gt; ends a game and count gives the number of games
+ * open. Anything that fails is answered with error and the reason.
+ */
+public class SessionServer
+{
+	private static final int QUEUE_PER_SHARD = 4096;			// how many requests may wait for each shard.
+
+	private Shard[] shards;										// holds the shards, each with its thread and its games.
+	private AtomicLong nextId = new AtomicLong(1);				// holds the id the next game is given.
+	private AtomicInteger open = new AtomicInteger();			// holds the number of games open.
+
+	/**
+	 * Generates a new session server.
+	 *
+	 * @param _shards The number of shards, each with one thread.
+	 */
+	public SessionServer(int _shards)
+	{
+		shards = new Shard[Math.max(1, _shards)];
+
+		for (int i = 0; i < shards.length; i++)
+		{
+			shards[i] = new Shard(i);
+		}
+	}
+
+	/**
+	 * Starts a game.
+	 *
+	 * @param _start The position the game starts from, which the server takes over.
+	 * @return The id of the game, when it has been set up.
+	 */
+	public CompletableFuture<Long> newGame(Position _start)
+	{
+		long id = nextId.getAndIncrement();
+
+		return submit(id, games ->
+		{
+			games.put(id, new GameSession(id, _start));
+			open.incrementAndGet();
+
+			return id;
+		});
+	}
+
+	/**
+	 * Plays a move in a game.
+	 *
+	 * @param _id The id of the game.
+	 * @param _move The move, as its two squares or in SAN.
+	 * @return The state of the game after the move.
+	 */
+	public CompletableFuture<GameSession.Status> play(long _id, String _move)
+	{
+		return withGame(_id, game -> game.play(_move));
+	}
+
+	/**
+	 * Ends a game, forgetting it.
+	 *
+	 * @param _id The id of the game.
+	 * @return Whether the game was open.
+	 */
+	public CompletableFuture<Boolean> close(long _id)
+	{
+		return submit(_id, games ->
+		{
+			boolean removed = games.remove(_id) != null;
+
+			if (removed)
+			{
+				open.decrementAndGet();
+			}
+
+			return removed;
+		});
+	}
+
+	/**
+	 * Runs some work on a game, on the thread of its shard.
+	 *
+	 * @param _id The id of the game.
+	 * @param _work The work, which may read and change the game.
+	 * @param <T> The type of the result of the work.
+	 * @return The result of the work, or a failure if there is no such game.
+	 */
+	public <T> CompletableFuture<T> withGame(long _id, Function<GameSession, T> _work)
+	{
+		return submit(_id, games ->
+		{
+			GameSession game = games.get(_id);
+
+			if (game == null)
+			{
+				throw new IllegalArgumentException("No game " + _id);
+			}
+
+			return _work.apply(game);
+		});
+	}
+
+	/**
+	 * Returns the number of games open.
+	 *
+	 * @return The number of games.
+	 */
+	public int getOpenGames()
+	{
+		return open.get();
+	}
+
+	/**
+	 * Answers requests on a socket of this machine, one line each, for as long as the program runs.
+	 *
+	 * Each connection is served by a thread of its own, which waits for the shards to answer its requests in turn.
+	 *
+	 * @param _port The port to listen on.
+	 * @throws IOException If the port can not be listened on.
+	 */
+	public void listen(int _port) throws IOException
+	{
+		try (ServerSocket server = new ServerSocket(_port, 64, InetAddress.getLoopbackAddress())) 	// only programs on this machine may connect.
+		{
+			while (true)
+			{
+				Socket socket = server.accept();
+				Thread thread = new Thread(() -> serve(socket), "session-connection");
+
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads of every shard, dropping any requests still waiting.
+	 */
+	public void shutdown()
+	{
+		for (Shard shard : shards)
+		{
+			shard.executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Answers the requests of one connection until it is closed.
+	 *
+	 * @param _socket The connection.
+	 */
+	private void serve(Socket _socket)
+	{
+		try (Socket socket = _socket;
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true))
+		{
+			for (String line = in.readLine(); line != null && !line.trim().equals("quit"); line = in.readLine())
+			{
+				try
+				{
+					out.println("ok " + answer(line.trim().split("\\s+")).join());
+				}
+				catch (CompletionException e) 							// the move was not legal, there was no such game, or the shard was too busy.
+				{
+					out.println("error " + e.getCause().getMessage());
+				}
+				catch (RuntimeException e) 								// the request could not be read.
+				{
+					out.println("error " + e.getMessage());
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// the connection was lost, and there is no one left to tell.
+		}
+	}
+
+	/**
+	 * Carries out one request of the line protocol.
+	 *
+	 * @param _words The words of the request.
+	 * @return The answer, without the ok in front.
+	 * @throws IllegalArgumentException If the request is not known or has the wrong words.
+	 */
+	private CompletableFuture<String> answer(String[] _words)
+	{
+		switch (_words[0])
+		{
+			case "new":
+				return newGame(_words.length > 1 ? Fen.parse(String.join(" ", Arrays.copyOfRange(_words, 1, _words.length)))
+					: Position.startPosition()).thenApply(String::valueOf);
+
+			case "move":
+				return play(id(_words), word(_words, 2)).thenApply(status -> status.name().toLowerCase());
+
+			case "undo":
+				return withGame(id(_words), game ->
+				{
+					if (!game.undo())
+					{
+						throw new IllegalArgumentException("No moves to take back");
+					}
+
+					return game.getStatus().name().toLowerCase();
+				});
+
+			case "fen":
+				return withGame(id(_words), GameSession::getFen);
+
+			case "moves":
+				return withGame(id(_words), GameSession::legalMoves);
+
+			case "status":
+				return withGame(id(_words), game -> game.getStatus().name().toLowerCase());
+
+			case "close":
+				return close(id(_words)).thenApply(removed -> removed ? "closed" : "no game");
+
+			case "count":
+				return CompletableFuture.completedFuture(String.valueOf(getOpenGames()));
+
+			default:
+				throw new IllegalArgumentException("Unknown request " + _words[0]);
+		}
+	}
+
+	/**
+	 * Reads the id of the game a request is for.
+	 *
+	 * @param _words The words of the request.
+	 * @return The id.
+	 * @throws IllegalArgumentException If there is no id.
+	 */
+	private static long id(String[] _words)
+	{
+		return Long.parseLong(word(_words, 1));
+	}
+
+	/**
+	 * Returns a word of a request.
+	 *
+	 * @param _words The words of the request.
+	 * @param _index The index of the word.
+	 * @return The word.
+	 * @throws IllegalArgumentException If the request is too short.
+	 */
+	private static String word(String[] _words, int _index)
+	{
+		if (_index >= _words.length)
+		{
+			throw new IllegalArgumentException("Missing words in " + _words[0]);
+		}
+
+		return _words[_index];
+	}
+
+	/**
+	 * Runs some work on the games of the shard a game id belongs to.
+	 *
+	 * @param _id The id of the game.
+	 * @param _work The work.
+	 * @param <T> The type of the result of the work.
+	 * @return The result of the work, or a failure if the work failed or the shard is too busy.
+	 */
+	private <T> CompletableFuture<T> submit(long _id, Function<Map<Long, GameSession>, T> _work)
+	{
+		Shard shard = shards[(int) Long.remainderUnsigned(_id, shards.length)];
+
+		try
+		{
+			return CompletableFuture.supplyAsync(() -> _work.apply(shard.games), shard.executor);
+		}
+		catch (RejectedExecutionException e)
+		{
+			CompletableFuture<T> failed = new CompletableFuture<>();
+
+			failed.completeExceptionally(new IllegalStateException("Too busy"));
+
+			return failed;
+		}
+	}
+
+	/**
+	 * One shard of the games, with the one thread that touches them.
+	 */
+	private static class Shard
+	{
+		private Map<Long, GameSession> games = new HashMap<>();	// holds the games of the shard by id, only used on its thread.
+		private ExecutorService executor;						// holds the thread of the shard and its queue of requests.
+
+		/**
+		 * Generates a new shard.
+		 *
+		 * @param _index The number of the shard, used to name its thread.
+		 */
+		private Shard(int _index)
+		{
+			executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_PER_SHARD), runnable ->
+			{
+				Thread thread = new Thread(runnable, "session-shard-" + _index);
+
+				thread.setDaemon(true); 								// the shards do not keep the program running.
+
+				return thread;
+			});
+		}
+	}
+}
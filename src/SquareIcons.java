@@ -0,0 +1,281 @@
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.ImageIcon;
+
+/**
+ * Holds the icons used to draw the squares.
+ *
+ * The images are read and decoded once when the class is loaded and shared by every square. Icons for other
+ * square sizes are scaled the first time that size is asked for. Only the few sizes used last are kept, so dragging
+ * the edge of the window through many sizes does not keep a set of icons for each one.
+ *
+ * Each square type also has a highlighted icon, used to show the squares a piece can move to. An empty square uses
+ * the selected square image, and a piece is drawn with the selected square image faded over it.
+ *
+ * The image files only show one set of pieces, so the black pieces are drawn from them by darkening every pixel
+ * that is not part of the white background.
+ */
+public final class SquareIcons
+{
+	public static final int NATIVE_SIZE = 44;							// the width and height of the image files in pixels.
+
+	private static final float HIGHLIGHT_ALPHA = 0.5f;					// how strongly the highlight is drawn over a piece.
+	private static final float BLACK_SHADE = 0.35f;						// how bright a black piece is drawn compared to a white one.
+	private static final int BACKGROUND_LEVEL = 230;					// pixels with every channel above this are background.
+	private static final int KEPT_SIZES = 4;							// how many scaled sizes are kept, the least recently used going first.
+
+	private static final Map<squareType, ImageIcon> ORIGINALS = new EnumMap<>(squareType.class);		// the icons at their native size.
+	private static final Map<squareType, ImageIcon> HIGHLIGHTED = new EnumMap<>(squareType.class);		// the highlighted icons at their native size.
+	private static final Map<squareType, ImageIcon> BLACK = new EnumMap<>(squareType.class);			// the black piece icons at their native size.
+	private static final Map<squareType, ImageIcon> BLACK_HIGHLIGHTED = new EnumMap<>(squareType.class);	// the highlighted black piece icons at their native size.
+	private static final Map<Integer, Map<squareType, ImageIcon>> SCALED = recentSizes();				// the scaled icons, keyed by size.
+	private static final Map<Integer, Map<squareType, ImageIcon>> SCALED_HIGHLIGHTED = recentSizes();	// the scaled highlighted icons, keyed by size.
+	private static final Map<Integer, Map<squareType, ImageIcon>> SCALED_BLACK = recentSizes();			// the scaled black piece icons, keyed by size.
+	private static final Map<Integer, Map<squareType, ImageIcon>> SCALED_BLACK_HIGHLIGHTED = recentSizes();	// the scaled highlighted black piece icons, keyed by size.
+
+	static
+	{
+		for (squareType type : squareType.values()) 					// loading the image for every square type.
+		{
+			ORIGINALS.put(type, new ImageIcon(SquareIcons.class.getResource(fileName(type))));
+		}
+
+		Metrics.countIconLoad();
+
+		for (squareType type : squareType.values()) 					// drawing the black pieces and the highlights of every square type.
+		{
+			BLACK.put(type, darken(type));
+			HIGHLIGHTED.put(type, highlight(ORIGINALS.get(type), type));
+			BLACK_HIGHLIGHTED.put(type, highlight(BLACK.get(type), type));
+		}
+	}
+
+	/**
+	 * The icons are only used through the static methods.
+	 */
+	private SquareIcons()
+	{
+	}
+
+	/**
+	 * Returns the icon for a square type at the native size.
+	 *
+	 * @param _type The square type.
+	 * @return The icon.
+	 */
+	public static ImageIcon get(squareType _type)
+	{
+		return ORIGINALS.get(_type);
+	}
+
+	/**
+	 * Returns the icon for a square type scaled to a size.
+	 *
+	 * @param _type The square type.
+	 * @param _size The width and height of the square in pixels.
+	 * @return The icon.
+	 */
+	public static ImageIcon get(squareType _type, int _size)
+	{
+		return get(_type, _size, false);
+	}
+
+	/**
+	 * Returns the icon for a square type scaled to a size, with or without the highlight.
+	 *
+	 * @param _type The square type.
+	 * @param _size The width and height of the square in pixels.
+	 * @param _highlighted Whether the square is highlighted.
+	 * @return The icon.
+	 */
+	public static ImageIcon get(squareType _type, int _size, boolean _highlighted)
+	{
+		return get(_type, _size, _highlighted, false);
+	}
+
+	/**
+	 * Returns the icon for a piece of either colour scaled to a size, with or without the highlight.
+	 *
+	 * @param _type The square type.
+	 * @param _size The width and height of the square in pixels.
+	 * @param _highlighted Whether the square is highlighted.
+	 * @param _black Whether the piece is black.
+	 * @return The icon.
+	 */
+	public static ImageIcon get(squareType _type, int _size, boolean _highlighted, boolean _black)
+	{
+		int size = Math.max(_size, 1);
+
+		if (size == NATIVE_SIZE) 										// the native icons are always kept, so need no scaling.
+		{
+			return (_black ? (_highlighted ? BLACK_HIGHLIGHTED : BLACK) : (_highlighted ? HIGHLIGHTED : ORIGINALS)).get(_type);
+		}
+
+		if (_black)
+		{
+			if (_highlighted)
+			{
+				return SCALED_BLACK_HIGHLIGHTED.computeIfAbsent(size, s -> scaleAll(BLACK_HIGHLIGHTED, s)).get(_type);
+			}
+
+			return SCALED_BLACK.computeIfAbsent(size, s -> scaleAll(BLACK, s)).get(_type);
+		}
+
+		if (_highlighted)
+		{
+			return SCALED_HIGHLIGHTED.computeIfAbsent(size, s -> scaleAll(HIGHLIGHTED, s)).get(_type);
+		}
+
+		return SCALED.computeIfAbsent(size, s -> scaleAll(ORIGINALS, s)).get(_type);
+	}
+
+	/**
+	 * Draws the black icon of a square type, by darkening everything but the background.
+	 *
+	 * @param _type The square type.
+	 * @return The black icon, which is the original icon for squares without a piece.
+	 */
+	private static ImageIcon darken(squareType _type)
+	{
+		if (_type == squareType.EMPTYSQUARE || _type == squareType.SELECTEDSQUARE) 	// only pieces have a colour.
+		{
+			return ORIGINALS.get(_type);
+		}
+
+		BufferedImage image = new BufferedImage(NATIVE_SIZE, NATIVE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+
+		graphics.drawImage(ORIGINALS.get(_type).getImage(), 0, 0, NATIVE_SIZE, NATIVE_SIZE, null);
+		graphics.dispose();
+
+		for (int y = 0; y < NATIVE_SIZE; y++) 							// darkening each pixel of the piece.
+		{
+			for (int x = 0; x < NATIVE_SIZE; x++)
+			{
+				int rgb = image.getRGB(x, y);
+				int red = (rgb >> 16) & 0xFF, green = (rgb >> 8) & 0xFF, blue = rgb & 0xFF;
+
+				if (red <= BACKGROUND_LEVEL || green <= BACKGROUND_LEVEL || blue <= BACKGROUND_LEVEL)
+				{
+					image.setRGB(x, y, ((int) (red * BLACK_SHADE) << 16) | ((int) (green * BLACK_SHADE) << 8) | (int) (blue * BLACK_SHADE));
+				}
+			}
+		}
+
+		return new ImageIcon(image);
+	}
+
+	/**
+	 * Draws the highlighted icon of a square type.
+	 *
+	 * @param _icon The icon of the square type, which is drawn under the highlight.
+	 * @param _type The square type.
+	 * @return The highlighted icon.
+	 */
+	private static ImageIcon highlight(ImageIcon _icon, squareType _type)
+	{
+		ImageIcon selected = ORIGINALS.get(squareType.SELECTEDSQUARE);
+
+		if (_type == squareType.EMPTYSQUARE || _type == squareType.SELECTEDSQUARE) 	// an empty square is just the selected image.
+		{
+			return selected;
+		}
+
+		BufferedImage image = new BufferedImage(NATIVE_SIZE, NATIVE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+
+		graphics.drawImage(_icon.getImage(), 0, 0, NATIVE_SIZE, NATIVE_SIZE, null); 	// the piece underneath.
+		graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, HIGHLIGHT_ALPHA));
+		graphics.drawImage(selected.getImage(), 0, 0, NATIVE_SIZE, NATIVE_SIZE, null); 				// the highlight faded over it.
+		graphics.dispose();
+
+		return new ImageIcon(image);
+	}
+
+	/**
+	 * Scales every icon to a size.
+	 *
+	 * @param _icons The icons at their native size.
+	 * @param _size The width and height in pixels.
+	 * @return The scaled icons.
+	 */
+	private static Map<squareType, ImageIcon> scaleAll(Map<squareType, ImageIcon> _icons, int _size)
+	{
+		Map<squareType, ImageIcon> icons = new EnumMap<>(squareType.class);
+
+		Metrics.countIconLoad();
+
+		for (squareType type : squareType.values())
+		{
+			Image image = _icons.get(type).getImage().getScaledInstance(_size, _size, Image.SCALE_SMOOTH);
+
+			icons.put(type, new ImageIcon(image)); 						// the icon waits for the scaled image to be ready.
+		}
+
+		return icons;
+	}
+
+	/**
+	 * Creates a map of scaled icons that only keeps the sizes used last.
+	 *
+	 * The map is ordered by use, so the size used longest ago is dropped when another is added past the limit. It is
+	 * synchronized, as the squares can be drawn from more than one thread.
+	 *
+	 * @return The map.
+	 */
+	private static Map<Integer, Map<squareType, ImageIcon>> recentSizes()
+	{
+		return Collections.synchronizedMap(new LinkedHashMap<Integer, Map<squareType, ImageIcon>>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Map<squareType, ImageIcon>> _eldest)
+			{
+				return size() > KEPT_SIZES;
+			}
+		});
+	}
+
+	/**
+	 * Returns the name of the image file for a square type.
+	 *
+	 * @param _type The square type.
+	 * @return The file name.
+	 */
+	private static String fileName(squareType _type)
+	{
+		switch (_type) 													// switch using the square type.
+		{
+			case BISHOP:
+				return "Bishop.jpg";
+
+			case KING:
+				return "King.jpg";
+
+			case KNIGHT:
+				return "Knight.jpg";
+
+			case PAWN:
+				return "Pawn.jpg";
+
+			case QUEEN:
+				return "Queen.jpg";
+
+			case ROOK:
+				return "Rook.jpg";
+
+			case SELECTEDSQUARE:
+				return "SelectedSquare.jpg";
+
+			default: 													// if the value is not right then it will be empty.
+				return "EmptySquare.jpg";
+		}
+	}
+}
@@ -0,0 +1,419 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks up endgame positions in tablebases written by TablebaseGenerator.
+ *
+ * A tablebase covers one set of pieces, such as a king and queen against a king, and holds the result of every
+ * position with those pieces: whether the side to move wins, draws or loses with best play, and in how many plies
+ * checkmate is given. Positions with only the two kings are drawn and need no tablebase.
+ *
+ * Each tablebase is two files in one directory, named after its pieces: KQvK.wdl holds the result of each position
+ * in 2 bits, and KQvK.dtm the distance to mate in as few bits as the longest mate needs. A position's entry is
+ * found from the side to move and the square of each piece, the kings first, so a lookup is a little arithmetic and
+ * two reads whatever the size of the table. The files are memory mapped, so a lookup creates nothing and many
+ * threads can look up at once.
+ *
+ * Only one side of each ending is kept, with the stronger pieces as white. A position with the pieces the other way
+ * around is looked up with the board turned over and the colours swapped. Castling and en passant are not part of
+ * the tablebases, so positions where either is possible are not looked up. A pawn that has just moved two squares
+ * with no pawn beside it to take it is looked up as usual.
+ */
+public class Tablebase implements Closeable
+{
+	public static final int MAX_PIECES = 4;						// the most pieces, kings included, a tablebase can cover.
+	public static final int NO_RESULT = -1;						// returned when a position is not in the tablebases.
+
+	public static final int DRAW = 0;							// the results, from the point of view of the side to move.
+	public static final int WIN = 1;
+	public static final int LOSS = 2;
+
+	static final int INVALID = 3;								// the result stored for an entry that is not a legal position.
+	static final int RESULTS_MAGIC = 0x43544257;				// "CTBW", the first four bytes of a results file.
+	static final int DISTANCES_MAGIC = 0x43544244;				// "CTBD", the first four bytes of a distances file.
+	static final int VERSION = 1;								// the version of the file layout.
+	static final int HEADER_SIZE = 12;							// the size of the magic number, version and bits for each distance.
+
+	private static final String PIECE_LETTERS = "PNBRQK";		// the letter of each piece type in a tablebase name.
+
+	private List<FileChannel> channels = new ArrayList<>();		// holds the open files.
+	private Map<Integer, Table> tables = new HashMap<>();		// holds the tablebases, by the pieces they cover.
+
+	/**
+	 * Opens every tablebase in a directory.
+	 *
+	 * @param _directory The directory holding the files.
+	 * @throws IOException If a file can not be read or is not a tablebase.
+	 */
+	public Tablebase(Path _directory) throws IOException
+	{
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(_directory, "*.wdl"))
+		{
+			for (Path file : files)
+			{
+				String name = file.getFileName().toString();
+
+				open(_directory, name.substring(0, name.length() - 4));
+			}
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			close();
+
+			throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Returns the number of tablebases open.
+	 *
+	 * @return The number of tablebases.
+	 */
+	public int size()
+	{
+		return tables.size();
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param _position The position.
+	 * @return The result packed with the distance to mate, read with getResult and getDistance, or NO_RESULT if the
+	 * position is not covered.
+	 */
+	public int probe(Position _position)
+	{
+		long occupancy = _position.getOccupancy();
+		int enPassant = _position.getEnPassant(), side = _position.getSideToMove();
+
+		if (Long.bitCount(occupancy) > MAX_PIECES || _position.getCastling() != 0
+			|| (enPassant != -1 && (Attacks.pawnAttacks(1 - side, enPassant) & _position.getPieces(side, Position.PAWN)) != 0))
+		{
+			return NO_RESULT; 									// a pawn that can be taken en passant changes the result.
+		}
+
+		if (Long.bitCount(occupancy) == 2) 						// two kings alone can not give checkmate.
+		{
+			return DRAW;
+		}
+
+		int flip = 0;
+		Table table = tables.get(materialKey(_position, 0));
+
+		if (table == null) 										// the stronger pieces may be black.
+		{
+			flip = 1;
+			table = tables.get(materialKey(_position, 1));
+		}
+
+		if (table == null)
+		{
+			return NO_RESULT;
+		}
+
+		int index = index(_position, table.pieces, flip);
+		int result = (table.results.get(HEADER_SIZE + (index >>> 2)) >>> ((index & 3) * 2)) & 3;
+
+		if (result == INVALID)
+		{
+			return NO_RESULT;
+		}
+
+		long bit = (long) index * table.bits;
+		long word = table.distances.getLong(HEADER_SIZE + (int) (bit >>> 3));
+		int distance = (int) (word >>> (64 - (bit & 7) - table.bits)) & ((1 << table.bits) - 1);
+
+		return (distance << 2) | result;
+	}
+
+	/**
+	 * Closes the files.
+	 *
+	 * The tablebases must not be looked up once they are closed.
+	 *
+	 * @throws IOException If a file can not be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		for (FileChannel channel : channels)
+		{
+			channel.close();
+		}
+
+		channels.clear();
+		tables.clear();
+	}
+
+	/**
+	 * Returns the result of a lookup.
+	 *
+	 * @param _probe The value returned by probe.
+	 * @return WIN, DRAW or LOSS, for the side to move.
+	 */
+	public static int getResult(int _probe)
+	{
+		return _probe & 3;
+	}
+
+	/**
+	 * Returns the distance to mate of a lookup.
+	 *
+	 * @param _probe The value returned by probe.
+	 * @return The number of plies until checkmate is given with best play, or 0 for a draw.
+	 */
+	public static int getDistance(int _probe)
+	{
+		return _probe >>> 2;
+	}
+
+	/**
+	 * Puts the pieces of a tablebase name in order, with the stronger side first.
+	 *
+	 * Each side is a K followed by its other pieces, and the sides are split by a v, such as KRvKN. The pieces of each
+	 * side are ordered queen, rook, bishop, knight, pawn. The stronger side has more pieces, or the better piece where
+	 * the sides first differ.
+	 *
+	 * @param _name The name.
+	 * @return The name of the tablebase covering the pieces.
+	 * @throws IllegalArgumentException If the name is not a set of pieces a tablebase can cover.
+	 */
+	static String canonicalName(String _name)
+	{
+		String[] sides = _name.split("v");
+
+		if (sides.length != 2 || !sides[0].startsWith("K") || !sides[1].startsWith("K")
+			|| sides[0].length() + sides[1].length() > MAX_PIECES)
+		{
+			throw new IllegalArgumentException("Not a tablebase: " + _name);
+		}
+
+		String white = sortPieces(sides[0].substring(1), _name), black = sortPieces(sides[1].substring(1), _name);
+		boolean swap = black.length() > white.length();
+
+		for (int i = 0; i < white.length() && black.length() == white.length(); i++) 	// the first piece that differs decides.
+		{
+			if (white.charAt(i) != black.charAt(i))
+			{
+				swap = PIECE_LETTERS.indexOf(black.charAt(i)) > PIECE_LETTERS.indexOf(white.charAt(i));
+
+				break;
+			}
+		}
+
+		return "K" + (swap ? black : white) + "vK" + (swap ? white : black);
+	}
+
+	/**
+	 * Finds the pieces of a tablebase, in the order their squares make up an index.
+	 *
+	 * @param _name The name of the tablebase, which must be canonical.
+	 * @return Each piece as its colour times 6 plus its type: the white king, the black king, then the other white
+	 * pieces and the other black pieces in the order of the name.
+	 */
+	static int[] pieces(String _name)
+	{
+		String[] sides = _name.split("v");
+		int[] pieces = new int[_name.length() - 1];
+		int count = 0;
+
+		pieces[count++] = Position.KING;
+		pieces[count++] = 6 + Position.KING;
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			for (int i = 1; i < sides[colour].length(); i++)
+			{
+				pieces[count++] = (colour * 6) + PIECE_LETTERS.indexOf(sides[colour].charAt(i));
+			}
+		}
+
+		return pieces;
+	}
+
+	/**
+	 * Works out the index of a position in a tablebase.
+	 *
+	 * The index is the side to move followed by 6 bits for the square of each piece. Where a side has two of the same
+	 * piece, the lower square comes first.
+	 *
+	 * @param _position The position, which must have exactly the pieces of the tablebase.
+	 * @param _pieces The pieces of the tablebase.
+	 * @param _flip 1 to look the position up with the board turned over and the colours swapped, otherwise 0.
+	 * @return The index.
+	 */
+	static int index(Position _position, int[] _pieces, int _flip)
+	{
+		int index = _position.getSideToMove() ^ _flip, mirror = _flip * 56;
+
+		for (int i = 0; i < _pieces.length; i++)
+		{
+			long squares = _position.getPieces((_pieces[i] / 6) ^ _flip, _pieces[i] % 6);
+			int square = Long.numberOfTrailingZeros(squares) ^ mirror;
+
+			if (i + 1 < _pieces.length && _pieces[i + 1] == _pieces[i]) 	// two of the same piece go in together.
+			{
+				int other = (63 - Long.numberOfLeadingZeros(squares)) ^ mirror;
+
+				index = (((index << 6) | Math.min(square, other)) << 6) | Math.max(square, other);
+				i++;
+			}
+			else
+			{
+				index = (index << 6) | square;
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * Works out a number that is the same for every position with the same pieces.
+	 *
+	 * @param _pieces The pieces, as in the pieces method.
+	 * @return The number.
+	 */
+	static int materialKey(int[] _pieces)
+	{
+		int key = 0;
+
+		for (int piece : _pieces)
+		{
+			if (piece % 6 != Position.KING)
+			{
+				key += 1 << (3 * (((piece / 6) * 5) + (piece % 6)));
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Works out the number for a position's pieces, as materialKey does for a tablebase.
+	 *
+	 * @param _position The position.
+	 * @param _flip 1 to swap the colours, otherwise 0.
+	 * @return The number.
+	 */
+	private static int materialKey(Position _position, int _flip)
+	{
+		int key = 0;
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			for (int piece = Position.PAWN; piece < Position.KING; piece++)
+			{
+				key += Long.bitCount(_position.getPieces(colour ^ _flip, piece)) << (3 * ((colour * 5) + piece));
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 * Checks the pieces of one side of a name and puts them in order.
+	 *
+	 * @param _pieces The letters of the pieces other than the king.
+	 * @param _name The whole name, for the error message.
+	 * @return The letters, strongest first.
+	 * @throws IllegalArgumentException If a letter is not a piece other than a king.
+	 */
+	private static String sortPieces(String _pieces, String _name)
+	{
+		StringBuilder sorted = new StringBuilder(_pieces.length());
+
+		for (int type = Position.QUEEN; type >= Position.PAWN; type--)
+		{
+			for (int i = 0; i < _pieces.length(); i++)
+			{
+				if (_pieces.charAt(i) == PIECE_LETTERS.charAt(type))
+				{
+					sorted.append(_pieces.charAt(i));
+				}
+			}
+		}
+
+		if (sorted.length() != _pieces.length())
+		{
+			throw new IllegalArgumentException("Not a tablebase: " + _name);
+		}
+
+		return sorted.toString();
+	}
+
+	/**
+	 * Maps the two files of a tablebase.
+	 *
+	 * @param _directory The directory holding the files.
+	 * @param _name The name of the tablebase.
+	 * @throws IOException If a file can not be read or does not hold the tablebase.
+	 */
+	private void open(Path _directory, String _name) throws IOException
+	{
+		Table table = new Table();
+		int size = 2 << (6 * (_name.length() - 1));
+
+		if (!canonicalName(_name).equals(_name))
+		{
+			throw new IOException("Not a tablebase name: " + _name);
+		}
+
+		table.pieces = pieces(_name);
+		table.results = map(_directory.resolve(_name + ".wdl"), RESULTS_MAGIC);
+		table.distances = map(_directory.resolve(_name + ".dtm"), DISTANCES_MAGIC);
+		table.bits = table.distances.getInt(8);
+
+		if (table.results.capacity() != HEADER_SIZE + (size / 4) || table.bits < 1 || table.bits > 8
+			|| table.distances.capacity() != HEADER_SIZE + ((((long) size * table.bits) + 7) / 8) + 8)
+		{
+			throw new IOException("Tablebase files are the wrong size: " + _name);
+		}
+
+		tables.put(materialKey(table.pieces), table);
+	}
+
+	/**
+	 * Maps a whole tablebase file into memory and checks its header.
+	 *
+	 * @param _path The path of the file.
+	 * @param _magic The magic number the file must start with.
+	 * @return The mapped file.
+	 * @throws IOException If the file can not be read or does not start with the header.
+	 */
+	private MappedByteBuffer map(Path _path, int _magic) throws IOException
+	{
+		FileChannel channel = FileChannel.open(_path, StandardOpenOption.READ);
+
+		channels.add(channel);
+
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != _magic || buffer.getInt(4) != VERSION)
+		{
+			throw new IOException("Not a tablebase: " + _path);
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Holds one open tablebase.
+	 */
+	private static final class Table
+	{
+		private int[] pieces;									// holds the pieces, in the order of the index.
+		private MappedByteBuffer results;						// holds the result of each position in 2 bits.
+		private MappedByteBuffer distances;						// holds the distance to mate of each position.
+		private int bits;										// holds the number of bits of each distance.
+	}
+}
@@ -0,0 +1,762 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Builds endgame tablebases by retrograde analysis, to be read with Tablebase.
+ *
+ * Every position with the pieces is set up and its moves generated with MoveGenerator, so a tablebase follows
+ * exactly the rules the rest of the program plays by. Checkmated positions are lost in 0 plies. From there the work
+ * goes backwards one ply at a time: each position just decided has its moves taken back, and the positions found
+ * that way are looked at again. A position with a move to a position lost for the other side is won, and a position
+ * whose every move reaches a position won for the other side is lost, one ply further from mate. Each position keeps
+ * a count of its moves not yet known to lose, so it is only looked at for a loss once the last one is known. When
+ * nothing more changes, the positions left undecided are drawn.
+ *
+ * Captures and promotions change the pieces, so they lead into smaller tablebases. Those are built first, and looked
+ * up as each position's moves are generated.
+ *
+ * While a tablebase is built every position takes 4 bytes, so the four piece tablebases need about 130MB.
+ */
+public class TablebaseGenerator
+{
+	static final int MAX_DISTANCE = 255;						// the longest distance to mate a tablebase can hold.
+	private static final int BUFFER_SIZE = 1 << 16;				// the number of bytes written to the files at a time.
+	private static final int[] PROMOTIONS = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT};
+
+	private Path directory;										// holds the directory the tablebases are written to.
+	private PrintStream progress;								// holds where a line is printed as each tablebase is finished.
+
+	private Tablebase smaller;									// holds the tablebases the captures and promotions lead into.
+	private int[] pieces;										// holds the pieces of the tablebase being built.
+	private byte[] results;										// holds the result of each position, with DRAW until it is decided.
+	private byte[] distances;									// holds the distance to mate of each decided position.
+	private byte[] remaining;									// holds how many moves of each position are not yet known to lose.
+	private byte[] scheduled;									// holds the pass each position must be looked at again in, plus 1.
+	private int lastScheduled;									// holds the latest pass any position is waiting for.
+
+	private int[] decided = new int[1024];						// holds the positions decided in the last pass.
+	private int decidedCount;									// holds the number of them.
+	private int[] next = new int[1024];							// holds the positions decided in this pass.
+	private int nextCount;										// holds the number of them.
+
+	private Position position = new Position();					// holds the position being looked at.
+	private int[] moves = new int[MoveGenerator.MAX_MOVES];		// holds the moves of the position.
+	private int[] replies = new int[MoveGenerator.MAX_MOVES];	// holds the replies to a pawn moving two squares.
+	private int[] predecessors = new int[MoveGenerator.MAX_MOVES];	// holds the positions a move could have come from.
+
+	/**
+	 * Generates a new tablebase generator.
+	 *
+	 * @param _directory The directory the tablebases are written to, which may already hold some of them.
+	 * @param _progress Where a line is printed as each tablebase is finished.
+	 */
+	public TablebaseGenerator(Path _directory, PrintStream _progress)
+	{
+		directory = _directory;
+		progress = _progress;
+	}
+
+	/**
+	 * Builds a tablebase, and first every smaller tablebase it leads into, unless they are already in the directory.
+	 *
+	 * @param _name The pieces, such as KQvK or KRvKP, in any order.
+	 * @throws IOException If a file can not be read or written.
+	 * @throws IllegalArgumentException If the name is not a set of pieces a tablebase can cover.
+	 */
+	public void generate(String _name) throws IOException
+	{
+		String name = Tablebase.canonicalName(_name);
+
+		if (name.equals("KvK") || Files.exists(directory.resolve(name + ".wdl"))) 	// nothing to build.
+		{
+			return;
+		}
+
+		for (String smallerName : smallerNames(name))
+		{
+			generate(smallerName);
+		}
+
+		build(name);
+	}
+
+	/**
+	 * Builds every tablebase with up to the most pieces a tablebase can cover.
+	 *
+	 * @throws IOException If a file can not be read or written.
+	 */
+	public void generateAll() throws IOException
+	{
+		String letters = "QRBNP";
+
+		for (int i = 0; i < letters.length(); i++)
+		{
+			generate("K" + letters.charAt(i) + "vK");
+		}
+
+		for (int i = 0; i < letters.length(); i++)
+		{
+			for (int j = i; j < letters.length(); j++)
+			{
+				generate("K" + letters.charAt(i) + letters.charAt(j) + "vK");
+				generate("K" + letters.charAt(i) + "vK" + letters.charAt(j));
+			}
+		}
+	}
+
+	/**
+	 * Finds the tablebases a capture or promotion can lead into from a tablebase.
+	 *
+	 * @param _name The name of the tablebase.
+	 * @return The names of the smaller tablebases.
+	 */
+	private static Set<String> smallerNames(String _name)
+	{
+		Set<String> names = new LinkedHashSet<>();
+		String[] sides = _name.split("v");
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			String own = sides[colour], other = sides[1 - colour];
+
+			for (int i = 1; i < own.length(); i++)
+			{
+				String taken = own.substring(0, i) + own.substring(i + 1); 	// the piece is taken.
+
+				names.add(Tablebase.canonicalName(colour == Position.WHITE ? taken + "v" + other : other + "v" + taken));
+
+				if (own.charAt(i) != 'P')
+				{
+					continue;
+				}
+
+				for (int promotion : PROMOTIONS) 							// the pawn promotes, perhaps taking a piece as it does.
+				{
+					String promoted = taken + "PNBRQK".charAt(promotion);
+
+					for (int j = 0; j < other.length(); j++) 	// j of 0 leaves the other side whole, as its king can not be taken.
+					{
+						String left = j == 0 ? other : other.substring(0, j) + other.substring(j + 1);
+
+						names.add(Tablebase.canonicalName(colour == Position.WHITE ? promoted + "v" + left : left + "v" + promoted));
+					}
+				}
+			}
+		}
+
+		names.remove("KvK");
+
+		return names;
+	}
+
+	/**
+	 * Builds one tablebase, whose smaller tablebases must already be in the directory.
+	 *
+	 * @param _name The canonical name of the tablebase.
+	 * @throws IOException If a file can not be read or written.
+	 */
+	private void build(String _name) throws IOException
+	{
+		long start = System.nanoTime();
+
+		pieces = Tablebase.pieces(_name);
+
+		int size = 2 << (6 * pieces.length);
+
+		results = new byte[size];
+		distances = new byte[size];
+		remaining = new byte[size];
+		scheduled = new byte[size];
+		lastScheduled = 0;
+		nextCount = 0;
+
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			smaller = tablebase;
+
+			for (int index = 0; index < size; index++) 					// first deciding the checkmates and counting the moves.
+			{
+				firstLook(index);
+			}
+
+			int[] checkmates = decided;
+
+			decided = next;
+			decidedCount = nextCount;
+			next = checkmates;
+
+			for (int pass = 0; decidedCount > 0 || pass < lastScheduled; pass++) 	// then working back one ply each pass.
+			{
+				nextCount = 0;
+
+				for (int i = 0; i < decidedCount; i++)
+				{
+					lookBack(decided[i], pass);
+				}
+
+				for (int index = 0; index < size; index++) 				// positions waiting for a capture or promotion decided long ago.
+				{
+					if ((scheduled[index] & 0xFF) == pass + 1 && results[index] == Tablebase.DRAW)
+					{
+						decide(index, pass);
+					}
+				}
+
+				int[] swap = decided;
+
+				decided = next;
+				decidedCount = nextCount;
+				next = swap;
+			}
+		}
+		finally
+		{
+			smaller = null;
+		}
+
+		long[] counts = new long[4];
+		int longest = 0;
+
+		for (int index = 0; index < size; index++)
+		{
+			counts[results[index]]++;
+			longest = Math.max(longest, distances[index] & 0xFF);
+		}
+
+		write(_name, longest);
+
+		progress.println(_name + ": " + (size - counts[Tablebase.INVALID]) + " positions, " + counts[Tablebase.WIN] + " won, "
+			+ counts[Tablebase.DRAW] + " drawn, " + counts[Tablebase.LOSS] + " lost, longest mate " + longest + " plies, "
+			+ ((System.nanoTime() - start) / 1000000) + " ms");
+
+		results = null;
+		distances = null;
+		remaining = null;
+		scheduled = null;
+	}
+
+	/**
+	 * Looks at a position for the first time, marking it if it is not legal or is checkmate, and counting its moves
+	 * that stay in the tablebase.
+	 *
+	 * @param _index The index of the position.
+	 */
+	private void firstLook(int _index)
+	{
+		if (!setUp(_index))
+		{
+			results[_index] = Tablebase.INVALID;
+
+			return;
+		}
+
+		int count = MoveGenerator.generateMoves(position, moves);
+
+		if (count == 0) 												// checkmate is lost straight away, stalemate is drawn.
+		{
+			if (position.isInCheck())
+			{
+				results[_index] = Tablebase.LOSS;
+				addDecided(_index);
+			}
+
+			return;
+		}
+
+		int stays = 0, best = Tablebase.LOSS;
+
+		for (int i = 0; i < count; i++)
+		{
+			int move = moves[i];
+
+			best = better(best, reply(successor(move))); 				// captures and promotions may already decide it.
+
+			if (Move.isCapture(move) || Move.getPromotion(move) != 0)
+			{
+				continue;
+			}
+
+			if (Move.hasFlag(move, Move.DOUBLE_PUSH)) 					// a move that allows en passant also depends on the capture.
+			{
+				position.makeMove(move);
+
+				boolean enPassant = countEnPassant() > 0;
+
+				position.unmakeMove(move);
+
+				if (enPassant)
+				{
+					continue;
+				}
+			}
+
+			stays++;
+		}
+
+		remaining[_index] = (byte) stays;
+
+		record(_index, best, -1);
+	}
+
+	/**
+	 * Takes back the moves into a position decided in the last pass, and looks again at the positions they came from.
+	 *
+	 * @param _index The index of the decided position.
+	 * @param _pass The pass, which is the distance to mate of the decided position.
+	 */
+	private void lookBack(int _index, int _pass)
+	{
+		boolean lost = results[_index] == Tablebase.LOSS;
+		int count = findPredecessors(_index);
+
+		for (int i = 0; i < count; i++)
+		{
+			int predecessor = predecessors[i];
+
+			if (results[predecessor] != Tablebase.DRAW) 				// already decided, or not a legal position.
+			{
+				continue;
+			}
+
+			if (lost) 													// a move to a lost position wins.
+			{
+				decide(predecessor, _pass);
+			}
+			else if (--remaining[predecessor] <= 0) 					// every move may now be known to lose.
+			{
+				decide(predecessor, _pass);
+			}
+		}
+	}
+
+	/**
+	 * Works out a position's result from what is known of the positions its moves reach, and records it if the
+	 * distance to mate is certain.
+	 *
+	 * A result is certain once it is no further than one ply past this pass, as every position nearer to mate has
+	 * been decided by then, so no shorter win can still turn up.
+	 *
+	 * @param _index The index of the position.
+	 * @param _pass The pass, or -1 while the positions are first looked at.
+	 */
+	private void decide(int _index, int _pass)
+	{
+		setUp(_index);
+
+		int count = MoveGenerator.generateMoves(position, moves);
+		int best = Tablebase.LOSS;
+
+		for (int i = 0; i < count; i++)
+		{
+			best = better(best, reply(successor(moves[i])));
+		}
+
+		record(_index, best, _pass);
+	}
+
+	/**
+	 * Records a position's result if the distance to mate is certain, otherwise schedules it to be looked at again in
+	 * the pass the result would be certain in.
+	 *
+	 * @param _index The index of the position.
+	 * @param _best The best result and distance known for the side to move.
+	 * @param _pass The pass, or -1 while the positions are first looked at.
+	 */
+	private void record(int _index, int _best, int _pass)
+	{
+		if (Tablebase.getResult(_best) == Tablebase.DRAW)
+		{
+			return;
+		}
+
+		int distance = Tablebase.getDistance(_best);
+
+		if (distance > MAX_DISTANCE)
+		{
+			throw new IllegalStateException("Mate is too far away to store: " + distance + " plies");
+		}
+
+		if (distance <= _pass + 1) 										// the result is certain.
+		{
+			results[_index] = (byte) Tablebase.getResult(_best);
+			distances[_index] = (byte) distance;
+			addDecided(_index);
+		}
+		else
+		{
+			scheduled[_index] = (byte) distance;
+			lastScheduled = Math.max(lastScheduled, distance);
+		}
+	}
+
+	/**
+	 * Finds the result of the position a move leads to.
+	 *
+	 * @param _move The move, which is legal in the position.
+	 * @return The result packed with the distance, as Tablebase.probe returns, from the point of view of the side
+	 * that moves next. A position not yet decided is counted as a draw.
+	 */
+	private int successor(int _move)
+	{
+		int result;
+
+		position.makeMove(_move);
+
+		if (Move.isCapture(_move) || Move.getPromotion(_move) != 0) 	// the pieces change, so the result is in a smaller tablebase.
+		{
+			result = smaller.probe(position);
+
+			if (result == Tablebase.NO_RESULT)
+			{
+				throw new IllegalStateException("No tablebase for " + Fen.toFen(position));
+			}
+		}
+		else
+		{
+			int index = Tablebase.index(position, pieces, 0);
+
+			result = ((distances[index] & 0xFF) << 2) | results[index];
+
+			if (Move.hasFlag(_move, Move.DOUBLE_PUSH)) 				// the other side may also take the pawn en passant.
+			{
+				int count = countEnPassant();
+
+				for (int i = 0; i < count; i++)
+				{
+					position.makeMove(replies[i]);
+					result = better(result, reply(smaller.probe(position)));
+					position.unmakeMove(replies[i]);
+				}
+			}
+		}
+
+		position.unmakeMove(_move);
+
+		return result;
+	}
+
+	/**
+	 * Finds the en passant captures of the position.
+	 *
+	 * @return The number of captures, which are put in the replies.
+	 */
+	private int countEnPassant()
+	{
+		int count = MoveGenerator.generateCaptures(position, replies), found = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			if (Move.hasFlag(replies[i], Move.EN_PASSANT))
+			{
+				replies[found++] = replies[i];
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Finds the positions that could have come before a position by a move that is not a capture or promotion.
+	 *
+	 * The positions found may not be legal, which is checked by their result.
+	 *
+	 * @param _index The index of the position.
+	 * @return The number of positions found, whose indexes are put in the predecessors.
+	 */
+	private int findPredecessors(int _index)
+	{
+		setUp(_index);
+
+		int moved = 1 - position.getSideToMove(), count = 0;
+		long occupancy = position.getOccupancy();
+
+		for (int i = 0; i < pieces.length; i++)
+		{
+			if (pieces[i] / 6 != moved)
+			{
+				continue;
+			}
+
+			int to = square(_index, i);
+			long from;
+
+			switch (pieces[i] % 6)
+			{
+				case Position.PAWN: 									// a pawn can only have come from behind it.
+					int behind = moved == Position.WHITE ? 8 : -8;
+
+					from = 0L;
+
+					if (to + behind >= 0 && to + behind < 64 && (occupancy & (1L << (to + behind))) == 0)
+					{
+						from |= 1L << (to + behind);
+
+						if (to / 8 == (moved == Position.WHITE ? 4 : 3) && (occupancy & (1L << (to + (2 * behind)))) == 0)
+						{
+							from |= 1L << (to + (2 * behind));
+						}
+					}
+					break;
+
+				case Position.KNIGHT:
+					from = Attacks.knightAttacks(to);
+					break;
+
+				case Position.BISHOP:
+					from = Attacks.bishopAttacks(to, occupancy);
+					break;
+
+				case Position.ROOK:
+					from = Attacks.rookAttacks(to, occupancy);
+					break;
+
+				case Position.QUEEN:
+					from = Attacks.queenAttacks(to, occupancy);
+					break;
+
+				default:
+					from = Attacks.kingAttacks(to);
+					break;
+			}
+
+			for (from &= ~occupancy; from != 0; from &= from - 1)
+			{
+				predecessors[count++] = moveIndex(_index, i, Long.numberOfTrailingZeros(from), moved);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Works out the index of a position with one piece on another square.
+	 *
+	 * @param _index The index of the position.
+	 * @param _piece Which of the pieces moves.
+	 * @param _square The square it moves to.
+	 * @param _sideToMove The side to move in the new position.
+	 * @return The index of the new position, with two of the same piece kept lowest square first.
+	 */
+	private int moveIndex(int _index, int _piece, int _square, int _sideToMove)
+	{
+		int[] squares = new int[pieces.length];
+
+		for (int i = 0; i < pieces.length; i++)
+		{
+			squares[i] = i == _piece ? _square : square(_index, i);
+		}
+
+		int index = _sideToMove;
+
+		for (int i = 0; i < pieces.length; i++)
+		{
+			if (i + 1 < pieces.length && pieces[i + 1] == pieces[i] && squares[i + 1] < squares[i])
+			{
+				int swap = squares[i];
+
+				squares[i] = squares[i + 1];
+				squares[i + 1] = swap;
+			}
+
+			index = (index << 6) | squares[i];
+		}
+
+		return index;
+	}
+
+	/**
+	 * Sets up the position of an index.
+	 *
+	 * @param _index The index.
+	 * @return Whether the index is a legal position: no two pieces share a square, no pawn is on the first or last
+	 * row, two of the same piece are lowest square first, and the side that has just moved is not in check.
+	 */
+	private boolean setUp(int _index)
+	{
+		long used = 0L;
+
+		position.clear();
+
+		for (int i = 0; i < pieces.length; i++)
+		{
+			int square = square(_index, i), row = square / 8;
+
+			if ((used & (1L << square)) != 0 || (pieces[i] % 6 == Position.PAWN && (row == 0 || row == 7))
+				|| (i > 0 && pieces[i - 1] == pieces[i] && square < square(_index, i - 1)))
+			{
+				return false;
+			}
+
+			used |= 1L << square;
+			position.addPiece(pieces[i] / 6, pieces[i] % 6, square);
+		}
+
+		position.setSideToMove(_index >>> (6 * pieces.length));
+
+		int other = 1 - position.getSideToMove();
+
+		return !position.isSquareAttacked(Long.numberOfTrailingZeros(position.getPieces(other, Position.KING)), position.getSideToMove());
+	}
+
+	/**
+	 * Returns the square of one piece in an index.
+	 *
+	 * @param _index The index.
+	 * @param _piece Which of the pieces.
+	 * @return The square.
+	 */
+	private int square(int _index, int _piece)
+	{
+		return (_index >>> (6 * (pieces.length - 1 - _piece))) & 63;
+	}
+
+	/**
+	 * Adds a position to those decided in this pass.
+	 *
+	 * @param _index The index of the position.
+	 */
+	private void addDecided(int _index)
+	{
+		if (nextCount == next.length)
+		{
+			next = Arrays.copyOf(next, nextCount * 2);
+		}
+
+		next[nextCount++] = _index;
+	}
+
+	/**
+	 * Turns a result around to the point of view of the side that moved into the position.
+	 *
+	 * @param _result The result and distance, for the side to move.
+	 * @return The result and distance, for the other side, one ply further from mate.
+	 */
+	private static int reply(int _result)
+	{
+		switch (Tablebase.getResult(_result))
+		{
+			case Tablebase.WIN:
+				return ((Tablebase.getDistance(_result) + 1) << 2) | Tablebase.LOSS;
+
+			case Tablebase.LOSS:
+				return ((Tablebase.getDistance(_result) + 1) << 2) | Tablebase.WIN;
+
+			default:
+				return Tablebase.DRAW;
+		}
+	}
+
+	/**
+	 * Picks the better of two results for the side to move: the quickest win, then a draw, then the slowest loss.
+	 *
+	 * @param _a The first result and distance.
+	 * @param _b The second result and distance.
+	 * @return The better one.
+	 */
+	private static int better(int _a, int _b)
+	{
+		return rank(_a) >= rank(_b) ? _a : _b;
+	}
+
+	/**
+	 * Ranks a result so better results rank higher.
+	 *
+	 * @param _result The result and distance.
+	 * @return The rank.
+	 */
+	private static int rank(int _result)
+	{
+		switch (Tablebase.getResult(_result))
+		{
+			case Tablebase.WIN:
+				return 2 * MAX_DISTANCE + 2 - Tablebase.getDistance(_result);
+
+			case Tablebase.LOSS:
+				return Tablebase.getDistance(_result);
+
+			default:
+				return MAX_DISTANCE + 1;
+		}
+	}
+
+	/**
+	 * Writes the results and distances of the tablebase.
+	 *
+	 * Each file is written under a temporary name and then renamed, so a file that is there is always whole.
+	 *
+	 * @param _name The name of the tablebase.
+	 * @param _longest The longest distance to mate, which sets the bits for each distance.
+	 * @throws IOException If a file can not be written.
+	 */
+	private void write(String _name, int _longest) throws IOException
+	{
+		int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(_longest));
+		Path resultsPath = directory.resolve(_name + ".wdl"), distancesPath = directory.resolve(_name + ".dtm");
+		Path resultsTemporary = directory.resolve(_name + ".wdl.tmp"), distancesTemporary = directory.resolve(_name + ".dtm.tmp");
+
+		try (DataOutputStream out = open(distancesTemporary, Tablebase.DISTANCES_MAGIC, bits))
+		{
+			long word = 0L;
+			int filled = 0;
+
+			for (int index = 0; index < distances.length; index++) 	// packing the distances from the top bit down.
+			{
+				word = (word << bits) | (distances[index] & 0xFF);
+				filled += bits;
+
+				while (filled >= 8)
+				{
+					out.writeByte((int) (word >>> (filled - 8)));
+					filled -= 8;
+				}
+			}
+
+			if (filled > 0)
+			{
+				out.writeByte((int) (word << (8 - filled)));
+			}
+
+			out.writeLong(0L); 											// so the last distance can be read as part of a long.
+		}
+
+		try (DataOutputStream out = open(resultsTemporary, Tablebase.RESULTS_MAGIC, 2))
+		{
+			for (int index = 0; index < results.length; index += 4) 	// four results to each byte, the first in the low bits.
+			{
+				out.writeByte(results[index] | (results[index + 1] << 2) | (results[index + 2] << 4) | (results[index + 3] << 6));
+			}
+		}
+
+		Files.move(distancesTemporary, distancesPath, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(resultsTemporary, resultsPath, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Creates a tablebase file and writes its header.
+	 *
+	 * @param _path The path of the file.
+	 * @param _magic The magic number.
+	 * @param _bits The number of bits of each entry.
+	 * @return The stream to write the entries to.
+	 * @throws IOException If the file can not be written.
+	 */
+	private static DataOutputStream open(Path _path, int _magic, int _bits) throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_path.toFile()), BUFFER_SIZE));
+
+		out.writeInt(_magic);
+		out.writeInt(Tablebase.VERSION);
+		out.writeInt(_bits);
+
+		return out;
+	}
+}
@@ -0,0 +1,225 @@
+import java.util.Arrays;
+
+/**
+ * Remembers the results of positions that have already been searched.
+ *
+ * The table is a fixed number of slots, chosen by the size in megabytes, and a position uses the slot given by the
+ * low bits of its hash. Each slot is two longs: the packed entry, and the hash XORed with the entry. A reader
+ * checks the hash by XORing the two back together, so an entry torn by two threads writing at once is simply
+ * missed rather than returned wrongly. This lets many search threads share the table without any locks.
+ *
+ * An entry packs the best move in bits 0 to 31, the score in bits 32 to 47, the depth in bits 48 to 55, the
+ * bound in bits 56 to 57 and the search age in bits 58 to 63.
+ */
+public class TranspositionTable
+{
+	/**
+	 * The ways an old entry can be replaced by a new one.
+	 */
+	public enum Replacement
+	{
+		ALWAYS, 				// the new entry always replaces the old one.
+		DEPTH_PREFERRED; 		// an entry from the current search is only replaced by an entry searched as deep or deeper.
+	}
+
+	public static final long NO_ENTRY = 0L;			// returned when a position is not in the table.
+
+	public static final int EXACT = 1;				// the score is the exact score of the position.
+	public static final int LOWER = 2;				// the score is at least the stored score.
+	public static final int UPPER = 3;				// the score is at most the stored score.
+
+	private long[] keys;							// holds the hash XORed with the entry for each slot.
+	private long[] entries;							// holds the packed entry for each slot.
+	private int mask;								// holds the number of slots minus one, used to find a slot from a hash.
+	private Replacement replacement;				// holds how old entries are replaced.
+	private volatile int age = 0;				// holds the age of the current search, so old entries can be replaced.
+
+	/**
+	 * Generates a new table.
+	 *
+	 * @param _megabytes The size of the table in megabytes.
+	 * @param _replacement How old entries are replaced.
+	 */
+	public TranspositionTable(int _megabytes, Replacement _replacement)
+	{
+		replacement = _replacement;
+
+		resize(_megabytes);
+	}
+
+	/**
+	 * Changes the size of the table, which empties it.
+	 *
+	 * The number of slots is rounded down to a power of two.
+	 *
+	 * @param _megabytes The size of the table in megabytes.
+	 */
+	public void resize(int _megabytes)
+	{
+		long slots = Math.max(1L, ((long) _megabytes << 20) / 16);	// each slot is two longs.
+
+		int size = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+
+		keys = new long[size];
+		entries = new long[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	public void clear()
+	{
+		Arrays.fill(keys, 0L);
+		Arrays.fill(entries, 0L);
+	}
+
+	/**
+	 * Sets how old entries are replaced.
+	 *
+	 * @param _replacement How old entries are replaced.
+	 */
+	public void setReplacement(Replacement _replacement)
+	{
+		replacement = _replacement;
+	}
+
+	/**
+	 * Starts a new search, so entries from earlier searches can be replaced first.
+	 */
+	public void newSearch()
+	{
+		age = (age + 1) & 0x3F;
+	}
+
+	/**
+	 * Looks up a position.
+	 *
+	 * @param _hash The hash of the position.
+	 * @return The packed entry, or NO_ENTRY if the position is not in the table.
+	 */
+	public long probe(long _hash)
+	{
+		int slot = (int) _hash & mask;
+		long entry = entries[slot];
+
+		if ((keys[slot] ^ entry) != _hash) 								// a different position, or a torn write.
+		{
+			return NO_ENTRY;
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Stores the result of a position.
+	 *
+	 * @param _hash The hash of the position.
+	 * @param _move The best move found, or Move.NONE.
+	 * @param _score The score of the position.
+	 * @param _depth The depth the position was searched to.
+	 * @param _bound Whether the score is EXACT, a LOWER bound or an UPPER bound.
+	 */
+	public void store(long _hash, int _move, int _score, int _depth, int _bound)
+	{
+		int slot = (int) _hash & mask;
+		long old = entries[slot];
+
+		if (replacement == Replacement.DEPTH_PREFERRED && old != NO_ENTRY && getAge(old) == age && getDepth(old) > _depth)
+		{
+			if ((keys[slot] ^ old) != _hash) 							// keeping the deeper entry of another position.
+			{
+				return;
+			}
+		}
+
+		if (_move == Move.NONE && (keys[slot] ^ old) == _hash) 		// keeping the move already known for this position.
+		{
+			_move = getMove(old);
+		}
+
+		long entry = (_move & 0xFFFFFFFFL)
+			| ((long) (_score & 0xFFFF) << 32)
+			| ((long) (Math.max(0, Math.min(_depth, 255))) << 48)
+			| ((long) _bound << 56)
+			| ((long) age << 58);
+
+		entries[slot] = entry;
+		keys[slot] = _hash ^ entry;
+	}
+
+	/**
+	 * Returns roughly how full the table is, by sampling the first thousand slots.
+	 *
+	 * @return The number of slots in every thousand used by the current search.
+	 */
+	public int hashFull()
+	{
+		int used = 0, samples = Math.min(1000, entries.length);
+
+		for (int i = 0; i < samples; i++)
+		{
+			if (entries[i] != NO_ENTRY && getAge(entries[i]) == age)
+			{
+				used++;
+			}
+		}
+
+		return used * 1000 / samples;
+	}
+
+	/**
+	 * Returns the best move of an entry.
+	 *
+	 * @param _entry The packed entry.
+	 * @return The best move, or Move.NONE.
+	 */
+	public static int getMove(long _entry)
+	{
+		return (int) _entry;
+	}
+
+	/**
+	 * Returns the score of an entry.
+	 *
+	 * @param _entry The packed entry.
+	 * @return The score.
+	 */
+	public static int getScore(long _entry)
+	{
+		return (short) (_entry >>> 32);
+	}
+
+	/**
+	 * Returns the depth of an entry.
+	 *
+	 * @param _entry The packed entry.
+	 * @return The depth.
+	 */
+	public static int getDepth(long _entry)
+	{
+		return (int) (_entry >>> 48) & 0xFF;
+	}
+
+	/**
+	 * Returns the bound of an entry.
+	 *
+	 * @param _entry The packed entry.
+	 * @return EXACT, LOWER or UPPER.
+	 */
+	public static int getBound(long _entry)
+	{
+		return (int) (_entry >>> 56) & 0x3;
+	}
+
+	/**
+	 * Returns the search age of an entry.
+	 *
+	 * @param _entry The packed entry.
+	 * @return The age.
+	 */
+	private static int getAge(long _entry)
+	{
+		return (int) (_entry >>> 58) & 0x3F;
+	}
+}
@@ -0,0 +1,578 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the engine over the Universal Chess Interface, so it can be used by chess programs and tournament managers
+ * without the board.
+ *
+ * Commands are read a line at a time on the calling thread, and each go command is searched on a thread of its own.
+ * The input is read while the search runs, so stop and isready are answered at once rather than after the search.
+ * The search reads a flag stop sets, so it ends within a few milliseconds and still answers with the best move of
+ * the last depth it completed.
+ *
+ * The supported commands are uci, isready, setoption (Hash, Threads and TablebasePath), ucinewgame, position, go
+ * (depth, movetime, nodes, wtime, btime, winc, binc, movestogo and infinite), stop and quit. Anything else is ignored,
+ * as the protocol asks.
+ */
+public class Uci
+{
+	private static final String NAME = "SCC110 Chess";				// the name the engine gives itself.
+	private static final String AUTHOR = "SCC110 Coursework";		// the name of its author.
+	private static final int DEFAULT_HASH = 64;						// the size of the transposition table in megabytes, unless set.
+	private static final int MAX_HASH = 65536;						// the largest table that may be asked for.
+	private static final int MAX_THREADS = 256;						// the most threads that may be asked for.
+	private static final int MOVES_LEFT = 30;						// how many more moves a game is expected to last, when not told.
+	private static final long SAFETY_MILLIS = 50;					// the time kept back from the clock for talking to the program.
+
+	private PrintStream out;										// holds where the replies are written.
+	private TranspositionTable table = new TranspositionTable(DEFAULT_HASH, TranspositionTable.Replacement.DEPTH_PREFERRED);
+	private ParallelSearch search = new ParallelSearch(table, 1);	// holds the search, on one thread unless set.
+	private Tablebase tablebase;									// holds the endgame tablebases, or null if there are none.
+	private Position position = Position.startPosition();			// holds the position set by the last position command.
+	private ExecutorService searcher = Executors.newSingleThreadExecutor(runnable ->
+	{
+		Thread thread = new Thread(runnable, "uci-search");
+
+		thread.setDaemon(true); 										// a search does not keep the program running.
+
+		return thread;
+	});
+	private Future<?> running;										// holds the search that was started last, or null.
+	private boolean infinite;										// set while a search must wait for stop before answering.
+
+	/**
+	 * Generates a new UCI engine.
+	 *
+	 * @param _out Where the replies are written.
+	 */
+	public Uci(PrintStream _out)
+	{
+		out = _out;
+	}
+
+	/**
+	 * Reads and carries out commands until quit is read or the input ends.
+	 *
+	 * @param _in The commands, one on each line.
+	 * @throws IOException If the input can not be read.
+	 */
+	public void run(BufferedReader _in) throws IOException
+	{
+		try
+		{
+			for (String line = _in.readLine(); line != null; line = _in.readLine())
+			{
+				String[] words = line.trim().split("\\s+");
+
+				if (words[0].equals("quit"))
+				{
+					break;
+				}
+
+				try
+				{
+					handle(words);
+				}
+				catch (IllegalArgumentException e) 						// a bad command is reported and the engine carries on.
+				{
+					send("info string " + e.getMessage());
+				}
+			}
+		}
+		finally
+		{
+			stop();
+			waitForSearch();
+			searcher.shutdownNow();
+			search.shutdown();
+			closeTablebase();
+		}
+	}
+
+	/**
+	 * Carries out one command.
+	 *
+	 * @param _words The words of the command.
+	 */
+	private void handle(String[] _words)
+	{
+		switch (_words[0])
+		{
+			case "uci":
+				send("id name " + NAME);
+				send("id author " + AUTHOR);
+				send("option name Hash type spin default " + DEFAULT_HASH + " min 1 max " + MAX_HASH);
+				send("option name Threads type spin default 1 min 1 max " + MAX_THREADS);
+				send("option name TablebasePath type string default <empty>");
+				send("uciok");
+				break;
+
+			case "isready":
+				send("readyok");
+				break;
+
+			case "setoption":
+				waitForSearch();
+				setOption(_words);
+				break;
+
+			case "ucinewgame":
+				waitForSearch();
+				search.newGame();
+				position = Position.startPosition();
+				break;
+
+			case "position":
+				waitForSearch();
+				position = readPosition(_words);
+				break;
+
+			case "go":
+				waitForSearch();
+				go(_words);
+				break;
+
+			case "stop":
+				stop();
+				break;
+
+			default: 													// unknown commands are ignored.
+				break;
+		}
+	}
+
+	/**
+	 * Carries out a setoption command.
+	 *
+	 * @param _words The words of the command, such as setoption name Hash value 128.
+	 */
+	private void setOption(String[] _words)
+	{
+		int value = indexOf(_words, "value");
+		String name = joinWords(_words, indexOf(_words, "name") + 1, value < 0 ? _words.length : value);
+		String text = value < 0 ? "" : joinWords(_words, value + 1, _words.length);
+
+		switch (name.toLowerCase())
+		{
+			case "hash":
+				table.resize(Math.max(1, Math.min(MAX_HASH, Integer.parseInt(text))));
+				break;
+
+			case "threads":
+				search.setThreads(Math.max(1, Math.min(MAX_THREADS, Integer.parseInt(text))));
+				break;
+
+			case "tablebasepath":
+				closeTablebase();
+
+				if (!text.isEmpty() && !text.equals("<empty>"))
+				{
+					try
+					{
+						tablebase = new Tablebase(Paths.get(text));
+						send("info string " + tablebase.size() + " tablebases found");
+					}
+					catch (IOException e)
+					{
+						send("info string could not open the tablebases: " + e.getMessage());
+					}
+				}
+
+				search.setTablebase(tablebase);
+				break;
+
+			default:
+				send("info string unknown option " + name);
+				break;
+		}
+	}
+
+	/**
+	 * Reads the position of a position command, such as position startpos moves e2e4 e7e5.
+	 *
+	 * @param _words The words of the command.
+	 * @return The position after the moves.
+	 * @throws IllegalArgumentException If the FEN or a move is not valid.
+	 */
+	private Position readPosition(String[] _words)
+	{
+		int moves = indexOf(_words, "moves");
+		int end = moves < 0 ? _words.length : moves;
+		Position result;
+
+		if (_words.length > 1 && _words[1].equals("fen"))
+		{
+			result = Fen.parse(joinWords(_words, 2, end));
+		}
+		else
+		{
+			result = Position.startPosition();
+		}
+
+		for (int i = end + 1; moves >= 0 && i < _words.length; i++) 	// playing the moves that follow.
+		{
+			result.makeMove(parseMove(result, _words[i]));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Finds the legal move written as its two squares, such as e2e4 or e7e8q.
+	 *
+	 * @param _position The position the move is played in.
+	 * @param _text The move.
+	 * @return The move.
+	 * @throws IllegalArgumentException If the move is not legal in the position.
+	 */
+	private static int parseMove(Position _position, String _text)
+	{
+		int[] buffer = new int[MoveGenerator.MAX_MOVES];
+		int move = Move.find(_text, buffer, MoveGenerator.generateMoves(_position, buffer));
+
+		if (move == Move.NONE)
+		{
+			throw new IllegalArgumentException("Illegal move: " + _text);
+		}
+
+		return move;
+	}
+
+	/**
+	 * Starts a search for a go command.
+	 *
+	 * @param _words The words of the command, such as go wtime 60000 btime 60000 winc 1000 binc 1000.
+	 */
+	private void go(String[] _words)
+	{
+		int depth = Search.MAX_PLY;
+		long millis = 0, nodes = 0, clock = 0, increment = 0, movesToGo = 0;
+		boolean white = position.getSideToMove() == Position.WHITE;
+
+		infinite = false;
+
+		for (int i = 1; i < _words.length; i++)
+		{
+			String value = i + 1 < _words.length ? _words[i + 1] : "0";
+
+			switch (_words[i])
+			{
+				case "depth":
+					depth = Math.max(1, Math.min(Search.MAX_PLY, Integer.parseInt(value)));
+					break;
+
+				case "movetime":
+					millis = Long.parseLong(value);
+					break;
+
+				case "nodes":
+					nodes = Long.parseLong(value);
+					break;
+
+				case "wtime":
+				case "btime":
+					if (_words[i].equals(white ? "wtime" : "btime")) 	// only the side to move's clock matters.
+					{
+						clock = Long.parseLong(value);
+					}
+					break;
+
+				case "winc":
+				case "binc":
+					if (_words[i].equals(white ? "winc" : "binc"))
+					{
+						increment = Long.parseLong(value);
+					}
+					break;
+
+				case "movestogo":
+					movesToGo = Long.parseLong(value);
+					break;
+
+				case "infinite":
+					infinite = true;
+					break;
+
+				default: 												// the value of a word already read, or a word not supported.
+					break;
+			}
+		}
+
+		if (millis == 0 && clock > 0) 								// sharing the clock out over the moves left.
+		{
+			millis = (clock / (movesToGo > 0 ? movesToGo + 1 : MOVES_LEFT)) + ((increment * 3) / 4);
+			millis = Math.max(1, Math.min(millis, clock - SAFETY_MILLIS));
+		}
+
+		Position copy = new Position(position);
+		long limit = millis, maxNodes = nodes;
+		int maxDepth = depth;
+
+		running = searcher.submit(() -> think(copy, maxDepth, limit, maxNodes));
+	}
+
+	/**
+	 * Searches a position and writes the result and the best move.
+	 *
+	 * Runs on the search thread.
+	 *
+	 * @param _position The position.
+	 * @param _depth The deepest depth to search.
+	 * @param _millis The time the search may take in milliseconds, or 0 for no limit.
+	 * @param _nodes The number of positions the search may visit, or 0 for no limit.
+	 */
+	private void think(Position _position, int _depth, long _millis, long _nodes)
+	{
+		long start = System.nanoTime();
+		int move;
+
+		try
+		{
+			move = search.search(_position, _depth, _millis, _nodes);
+		}
+		catch (RuntimeException e) 										// the GUI still needs a best move, or it waits for ever.
+		{
+			searchFailed(e);
+
+			return;
+		}
+
+		long time = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+		send("info depth " + search.getCompletedDepth() + " score " + formatScore(search.getBestScore()) + " nodes " + search.getNodes()
+			+ " nps " + ((search.getNodes() * 1000) / time) + " time " + time + " hashfull " + table.hashFull()
+			+ " pv " + principalVariation(_position, search.getCompletedDepth(), move));
+
+		synchronized (this) 											// go infinite must not answer until stop is read.
+		{
+			while (infinite)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+
+					break;
+				}
+			}
+		}
+
+		send("bestmove " + Move.toString(move));
+	}
+
+	/**
+	 * Returns the best line found by the last search: the best move, followed by the best moves kept in the
+	 * transposition table for the positions after it.
+	 *
+	 * @param _position The position searched, which is left unchanged.
+	 * @param _length The most moves to give.
+	 * @param _bestMove The best move.
+	 * @return The moves, separated by spaces.
+	 */
+	private String principalVariation(Position _position, int _length, int _bestMove)
+	{
+		StringBuilder text = new StringBuilder(Move.toString(_bestMove));
+		int[] played = new int[Math.max(1, _length)];
+		int count = 0;
+		int move = _bestMove;
+
+		while (move != Move.NONE && count < _length) 					// a move from the table is only followed if it is legal.
+		{
+			_position.makeMove(move);
+			played[count++] = move;
+
+			long entry = table.probe(_position.getHash());
+
+			try
+			{
+				move = entry == TranspositionTable.NO_ENTRY || count == _length ? Move.NONE
+					: parseMove(_position, Move.toString(TranspositionTable.getMove(entry)));
+			}
+			catch (IllegalArgumentException e)
+			{
+				move = Move.NONE;
+			}
+
+			if (move != Move.NONE)
+			{
+				text.append(' ').append(Move.toString(move));
+			}
+		}
+
+		while (count > 0) 												// putting the position back.
+		{
+			_position.unmakeMove(played[--count]);
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Writes a score the way the protocol asks, in centipawns or as the number of moves to mate.
+	 *
+	 * @param _score The score from the point of view of the side to move.
+	 * @return The score, such as cp 35 or mate -3.
+	 */
+	private static String formatScore(int _score)
+	{
+		if (Math.abs(_score) < Search.MATE_BOUND)
+		{
+			return "cp " + _score;
+		}
+
+		int plies = Search.MATE - Math.abs(_score);
+
+		return "mate " + (_score > 0 ? (plies + 1) / 2 : -(plies + 1) / 2);
+	}
+
+	/**
+	 * Stops the running search, which then writes its best move, and waits for it to finish.
+	 */
+	private void stop()
+	{
+		synchronized (this)
+		{
+			infinite = false;
+			notifyAll();
+		}
+
+		while (running != null && !running.isDone()) 					// stopping again in case the search had not started yet.
+		{
+			search.stop();
+
+			try
+			{
+				running.get(1, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e)
+			{
+				// still running, so stop it again.
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+
+				return;
+			}
+			catch (ExecutionException e)
+			{
+				break; 													// reported by waitForSearch.
+			}
+		}
+	}
+
+	/**
+	 * Reports a search that failed, with no move, so the GUI is not left waiting.
+	 *
+	 * @param _cause What made the search fail.
+	 */
+	private void searchFailed(Throwable _cause)
+	{
+		send("info string search failed: " + _cause);
+		send("bestmove 0000");
+	}
+
+	/**
+	 * Waits for the running search to finish, if there is one.
+	 *
+	 * A search that failed is reported rather than thrown, so the engine carries on with the next command.
+	 */
+	private void waitForSearch()
+	{
+		if (running == null)
+		{
+			return;
+		}
+
+		try
+		{
+			running.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) 									// only errors get here, think reports the rest itself.
+		{
+			searchFailed(e.getCause());
+		}
+
+		running = null;
+	}
+
+	/**
+	 * Closes the endgame tablebases, if there are any.
+	 */
+	private void closeTablebase()
+	{
+		if (tablebase != null)
+		{
+			try
+			{
+				tablebase.close();
+			}
+			catch (IOException e)
+			{
+				send("info string could not close the tablebases: " + e.getMessage());
+			}
+
+			tablebase = null;
+		}
+	}
+
+	/**
+	 * Writes a reply at once. Replies come from both the input and search threads, so they are written one at a time.
+	 *
+	 * @param _line The reply.
+	 */
+	private synchronized void send(String _line)
+	{
+		out.println(_line);
+		out.flush();
+	}
+
+	/**
+	 * Returns where a word first appears.
+	 *
+	 * @param _words The words.
+	 * @param _word The word looked for.
+	 * @return Its index, or -1 if it is not there.
+	 */
+	private static int indexOf(String[] _words, String _word)
+	{
+		for (int i = 0; i < _words.length; i++)
+		{
+			if (_words[i].equals(_word))
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Joins some of the words back together.
+	 *
+	 * @param _words The words.
+	 * @param _from The index of the first word.
+	 * @param _to The index after the last word.
+	 * @return The words, separated by spaces.
+	 */
+	private static String joinWords(String[] _words, int _from, int _to)
+	{
+		return String.join(" ", Arrays.copyOfRange(_words, Math.max(0, _from), Math.max(_from, _to)));
+	}
+}
@@ -0,0 +1,83 @@
+import java.util.SplittableRandom;
+
+/**
+ * Holds the random numbers used to hash positions.
+ *
+ * A position's hash is the XOR of one number for each piece on each square, plus numbers for the side to move, the
+ * castling rights and the column of the en passant square. As XOR undoes itself, the hash can be kept up to date
+ * as moves are played by XORing in only what changes. The numbers come from a fixed seed, so the same position
+ * always has the same hash.
+ */
+public final class Zobrist
+{
+	private static final long[][] PIECES = new long[12][64];		// the number for each piece on each square, indexed by bitboard index.
+	private static final long[] CASTLING = new long[16];			// the number for each set of castling rights.
+	private static final long[] EN_PASSANT = new long[8];			// the number for each column of the en passant square.
+	public static final long BLACK_TO_MOVE;							// the number added when black is to move.
+
+	static
+	{
+		SplittableRandom random = new SplittableRandom(0x5EED5EEDL);
+
+		for (int piece = 0; piece < 12; piece++)
+		{
+			for (int square = 0; square < 64; square++)
+			{
+				PIECES[piece][square] = random.nextLong();
+			}
+		}
+
+		BLACK_TO_MOVE = random.nextLong();
+
+		for (int i = 0; i < 16; i++)
+		{
+			CASTLING[i] = random.nextLong();
+		}
+
+		for (int i = 0; i < 8; i++)
+		{
+			EN_PASSANT[i] = random.nextLong();
+		}
+	}
+
+	/**
+	 * The numbers are only used through the static methods.
+	 */
+	private Zobrist()
+	{
+	}
+
+	/**
+	 * Returns the number for a piece on a square.
+	 *
+	 * @param _index The bitboard index of the piece, which is (colour * 6) + piece.
+	 * @param _square The square.
+	 * @return The number for the piece on the square.
+	 */
+	public static long piece(int _index, int _square)
+	{
+		return PIECES[_index][_square];
+	}
+
+	/**
+	 * Returns the number for a set of castling rights.
+	 *
+	 * @param _rights The castling rights, as the bits used by the position.
+	 * @return The number for the castling rights.
+	 */
+	public static long castling(int _rights)
+	{
+		return CASTLING[_rights];
+	}
+
+	/**
+	 * Returns the number for an en passant square.
+	 *
+	 * @param _square The en passant square, or -1 for none.
+	 * @return The number for the column of the square, or 0 for none.
+	 */
+	public static long enPassant(int _square)
+	{
+		return _square < 0 ? 0L : EN_PASSANT[_square % 8];
+	}
+}
@@ -1,5 +1,7 @@
 /**
  * For the different types of squares possible.
+ * 
+ * SELECTEDSQUARE is only used for the highlight image, the highlight itself is drawn over the square.
  */
 public enum squareType 
 {
@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the attack tables against attacks worked out the slow way, one step at a time.
+ */
+public class AttacksTest
+{
+	private static final int[][] ROOK_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};		// the column and row steps of each rook line.
+	private static final int[][] BISHOP_STEPS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};	// the column and row steps of each bishop line.
+	private static final int[][] KNIGHT_JUMPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};	// the column and row jumps of a knight.
+	private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};		// the column and row steps of a king.
+	private static final int[][] WHITE_PAWN_CAPTURES = {{-1, -1}, {1, -1}};			// white pawns move towards the top row.
+	private static final int[][] BLACK_PAWN_CAPTURES = {{-1, 1}, {1, 1}};
+	private static final int OCCUPANCIES = 2000;										// how many random boards each square is checked on.
+
+	/**
+	 * Checks the magic rook, bishop and queen lookups on random boards, sparse and crowded.
+	 */
+	@Test
+	public void slidingAttacksMatchRays()
+	{
+		Random random = new Random(1);
+
+		for (int i = 0; i < OCCUPANCIES; i++)
+		{
+			long occupancy = random.nextLong() & random.nextLong() & (i % 2 == 0 ? random.nextLong() : -1L); 	// a quarter or an eighth of the squares.
+
+			for (int square = 0; square < 64; square++)
+			{
+				long rook = rays(square, occupancy, ROOK_STEPS), bishop = rays(square, occupancy, BISHOP_STEPS);
+
+				assertEquals(rook, Attacks.rookAttacks(square, occupancy), "rook on " + square);
+				assertEquals(bishop, Attacks.bishopAttacks(square, occupancy), "bishop on " + square);
+				assertEquals(rook | bishop, Attacks.queenAttacks(square, occupancy), "queen on " + square);
+			}
+		}
+	}
+
+	/**
+	 * Checks the sliding pieces on an empty and a full board, where every line runs to the edge or stops at once.
+	 */
+	@Test
+	public void slidingAttacksOnEmptyAndFullBoards()
+	{
+		for (int square = 0; square < 64; square++)
+		{
+			for (long occupancy : new long[] {0L, -1L})
+			{
+				assertEquals(rays(square, occupancy, ROOK_STEPS), Attacks.rookAttacks(square, occupancy));
+				assertEquals(rays(square, occupancy, BISHOP_STEPS), Attacks.bishopAttacks(square, occupancy));
+			}
+		}
+	}
+
+	/**
+	 * Checks the knight, king and pawn tables against single jumps from every square.
+	 */
+	@Test
+	public void leaperTablesMatchJumps()
+	{
+		for (int square = 0; square < 64; square++)
+		{
+			assertEquals(jumps(square, KNIGHT_JUMPS), Attacks.knightAttacks(square), "knight on " + square);
+			assertEquals(jumps(square, KING_STEPS), Attacks.kingAttacks(square), "king on " + square);
+			assertEquals(jumps(square, WHITE_PAWN_CAPTURES), Attacks.pawnAttacks(Position.WHITE, square), "white pawn on " + square);
+			assertEquals(jumps(square, BLACK_PAWN_CAPTURES), Attacks.pawnAttacks(Position.BLACK, square), "black pawn on " + square);
+		}
+	}
+
+	/**
+	 * Checks pawn pushes of one and two squares, and pushes that are blocked.
+	 */
+	@Test
+	public void pawnPushes()
+	{
+		assertEquals((1L << 44) | (1L << 36), Attacks.pawnPushes(Position.WHITE, 52, 0L), "e2 to e3 and e4");
+		assertEquals(1L << 44, Attacks.pawnPushes(Position.WHITE, 52, 1L << 36), "e2 with e4 taken");
+		assertEquals(0L, Attacks.pawnPushes(Position.WHITE, 52, 1L << 44), "e2 with e3 taken");
+		assertEquals(1L << 36, Attacks.pawnPushes(Position.WHITE, 44, 0L), "e3 only moves one square");
+		assertEquals((1L << 20) | (1L << 28), Attacks.pawnPushes(Position.BLACK, 12, 0L), "e7 to e6 and e5");
+		assertEquals(1L << 20, Attacks.pawnPushes(Position.BLACK, 12, 1L << 28), "e7 with e5 taken");
+		assertEquals(0L, Attacks.pawnPushes(Position.BLACK, 12, 1L << 20), "e7 with e6 taken");
+	}
+
+	/**
+	 * Works out the squares a piece reaches in one jump, leaving out those off the board.
+	 *
+	 * @param _square The square of the piece.
+	 * @param _jumps The column and row change of each jump.
+	 * @return The squares reached.
+	 */
+	private static long jumps(int _square, int[][] _jumps)
+	{
+		long squares = 0L;
+
+		for (int[] jump : _jumps)
+		{
+			int x = (_square % 8) + jump[0], y = (_square / 8) + jump[1];
+
+			if (x >= 0 && x < 8 && y >= 0 && y < 8)
+			{
+				squares |= 1L << ((y * 8) + x);
+			}
+		}
+
+		return squares;
+	}
+
+	/**
+	 * Works out the attacks of a sliding piece by stepping along each line until it leaves the board or meets a piece.
+	 *
+	 * @param _square The square of the piece.
+	 * @param _occupancy The pieces on the board.
+	 * @param _steps The column and row step of each line.
+	 * @return The attacked squares, including the first piece met on each line.
+	 */
+	private static long rays(int _square, long _occupancy, int[][] _steps)
+	{
+		long attacks = 0L;
+
+		for (int[] step : _steps)
+		{
+			int x = (_square % 8) + step[0], y = (_square / 8) + step[1];
+
+			while (x >= 0 && x < 8 && y >= 0 && y < 8)
+			{
+				attacks |= 1L << ((y * 8) + x);
+
+				if ((_occupancy & (1L << ((y * 8) + x))) != 0) 			// the line stops at the first piece.
+				{
+					break;
+				}
+
+				x += step[0];
+				y += step[1];
+			}
+		}
+
+		return attacks;
+	}
+}
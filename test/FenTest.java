@@ -0,0 +1,78 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks reading and writing positions in FEN, and that positions the move generator can not play from are refused.
+ */
+public class FenTest
+{
+	/**
+	 * Checks that writing a position read from a FEN string gives the same string back.
+	 *
+	 * @param _fen The FEN string, with all six fields.
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = {
+		Fen.START,
+		"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+		"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+		"4k3/8/8/8/8/8/8/4K2R b K - 49 120"
+	})
+	public void roundTrip(String _fen)
+	{
+		assertEquals(_fen, Fen.toFen(Fen.parse(_fen)));
+	}
+
+	/**
+	 * Checks that the fields left off the end take their usual values, and castling rights with no rook are dropped.
+	 */
+	@Test
+	public void defaultsAndCastlingRights()
+	{
+		assertEquals("4k3/8/8/8/8/8/8/4K3 w - - 0 1", Fen.toFen(Fen.parse("4k3/8/8/8/8/8/8/4K3")));
+		assertEquals("4k3/8/8/8/8/8/8/4K3 b - - 0 1", Fen.toFen(Fen.parse("4k3/8/8/8/8/8/8/4K3 b")));
+		assertEquals("4k3/8/8/8/8/8/8/4K2R w K - 0 1", Fen.toFen(Fen.parse("4k3/8/8/8/8/8/8/4K2R w KQkq - 0 1")));
+	}
+
+	/**
+	 * Checks that a FEN string that is not a position that can be played from is refused.
+	 *
+	 * @param _fen The FEN string.
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = {
+		"4k3/8/8/8/8/8/3P4/4K3 w - c3 0 1",							// en passant behind a pawn that has not moved.
+		"4k3/8/8/3pP3/8/8/8/4K3 w - d3 0 1",						// en passant on the wrong row for the side to move.
+		"4k3/8/8/3pP3/8/8/8/4K3 w - e6 0 1",						// en passant with no pawn in front of the square.
+		"4k3/3p4/8/3pP3/8/8/8/4K3 w - d6 0 1",						// en passant with the pawn's start square taken.
+		"4k3/8/3n4/3pP3/8/8/8/4K3 w - d6 0 1",						// en passant onto a square that is taken.
+		"4k3/8/8/3pP3/8/8/8/4K3 w - z9 0 1",						// en passant on no square.
+		"8/8/8/8/8/2k5/8/K1Q5 w - - 0 1",							// the side not to move is in check.
+		"4k3/8/8/8/8/8/8/4K2r b - - 0 1",							// the side not to move is in check.
+		"8/8/8/8/8/8/8/4K3 w - - 0 1",								// no black king.
+		"4k3/8/8/8/8/8/8/3KK3 w - - 0 1",							// two white kings.
+		"4k3/8/8/8/8/8/8/4K3/8 w - - 0 1",							// nine rows.
+		"4k3/8/8/8/8/8/8/4K4 w - - 0 1",							// a row of nine squares.
+		"4k3/8/8/8/8/8/8/4K2 w - - 0 1",							// a row of seven squares.
+		"4k38/8/8/8/8/8/4K3 w - - 0 1",								// a row of sixteen squares, with one row fewer.
+		"4k3/8/8/8/8/8/8/4K3/ w - - 0 1",							// a row after the last.
+		"4k3/8/8/8/8/8/8/4K3 w - - -1 1",							// a negative halfmove clock.
+		"4k3/8/8/8/8/8/8/4K3 w - - 0 0",							// a fullmove number below 1.
+		"4k3/8/8/8/8/8/8/4X3 w - - 0 1",							// a letter that is not a piece.
+		"4k3/8/8/8/8/8/8/4K3 x - - 0 1",							// no side to move.
+		"4k3/8/8/8/8/8/8/4K2R w KX - 0 1",							// a letter that is not a castling right.
+		"4k3/8/8/8/8/8/8/4K3 w - - a 1"								// a move counter that is not a number.
+	})
+	public void rejected(String _fen)
+	{
+		assertThrows(IllegalArgumentException.class, () -> Fen.parse(_fen));
+	}
+}
@@ -0,0 +1,155 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that games written to a game database are read back exactly.
+ */
+public class GameDatabaseTest
+{
+	private static final String[] STARTS = {
+		null,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"
+	};															// the positions the games start from, null for the usual one.
+	private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};	// the results the games are given in turn.
+
+	@TempDir
+	Path directory;												// holds the database, and is deleted after each test.
+
+	/**
+	 * Writes random games, from the usual and from set positions, and checks every move, result and FEN read back.
+	 *
+	 * @throws IOException If the database can not be written or read.
+	 */
+	@Test
+	public void writeThenRead() throws IOException
+	{
+		Random random = new Random(17);
+		List<PgnGame> games = new ArrayList<>();
+		Path path = directory.resolve("games.db");
+
+		for (int i = 0; i < 200; i++)
+		{
+			games.add(RandomGames.play(random, STARTS[i % STARTS.length], i % 7 == 0 ? 0 : random.nextInt(150), RESULTS[i % RESULTS.length]));
+		}
+
+		try (GameDatabaseWriter writer = new GameDatabaseWriter(path))
+		{
+			for (PgnGame game : games)
+			{
+				writer.add(game);
+			}
+
+			assertEquals(games.size(), writer.getGameCount());
+		}
+
+		try (GameDatabase database = new GameDatabase(path))
+		{
+			assertEquals(games.size(), database.size());
+
+			Position position = new Position();
+			int[] moves = new int[GameDatabase.MAX_MOVES];
+
+			for (int i = 0; i < games.size(); i++)
+			{
+				PgnGame expected = games.get(i), read = database.readGame(i);
+
+				assertEquals(expected.getMoveCount(), database.getMoveCount(i), "moves in game " + i);
+				assertEquals(expected.getResult(), database.getResult(i), "result of game " + i);
+				assertEquals(expected.getTag("FEN"), read.getTag("FEN"), "start of game " + i);
+				assertArrayEquals(movesOf(expected), movesOf(read), "moves of game " + i);
+
+				int count = database.replay(i, position, moves);
+
+				assertArrayEquals(movesOf(expected), Arrays.copyOf(moves, count), "replay of game " + i);
+				assertEquals(Fen.toFen(endOf(expected)), Fen.toFen(position), "end of game " + i);
+			}
+		}
+	}
+
+	/**
+	 * Checks that a game from the usual starting position is not given a FEN tag.
+	 *
+	 * @throws IOException If the database can not be written or read.
+	 */
+	@Test
+	public void usualStartHasNoFen() throws IOException
+	{
+		Path path = directory.resolve("one.db");
+
+		try (GameDatabaseWriter writer = new GameDatabaseWriter(path))
+		{
+			writer.add(RandomGames.play(new Random(1), null, 10, "1-0"));
+		}
+
+		try (GameDatabase database = new GameDatabase(path))
+		{
+			assertNull(database.readGame(0).getTag("FEN"));
+		}
+	}
+
+	/**
+	 * Checks that a file that is not a database is refused.
+	 *
+	 * @throws IOException If the file can not be written.
+	 */
+	@Test
+	public void otherFilesRefused() throws IOException
+	{
+		Path path = directory.resolve("other.db");
+
+		Files.write(path, new byte[64]);
+		Files.write(GameDatabase.indexPath(path), new byte[64]);
+
+		assertThrows(IOException.class, () -> new GameDatabase(path));
+	}
+
+	/**
+	 * Returns the moves of a game.
+	 *
+	 * @param _game The game.
+	 * @return The packed moves, in order.
+	 */
+	private static int[] movesOf(PgnGame _game)
+	{
+		int[] moves = new int[_game.getMoveCount()];
+
+		for (int i = 0; i < moves.length; i++)
+		{
+			moves[i] = _game.getMove(i);
+		}
+
+		return moves;
+	}
+
+	/**
+	 * Plays a game through to its last move.
+	 *
+	 * @param _game The game.
+	 * @return The position at the end.
+	 */
+	private static Position endOf(PgnGame _game)
+	{
+		Position position = _game.startPosition();
+
+		for (int move : movesOf(_game))
+		{
+			position.makeMove(move);
+		}
+
+		return position;
+	}
+}
@@ -0,0 +1,394 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the game tree's position always matches its current node, whatever way the tree is moved through,
+ * branched, reordered or cut back.
+ *
+ * Random operations are done on trees grown from positions rich in castling, en passant and promotions. After each
+ * one the position must match the moves from the start to the current node played on a fresh position, and set up
+ * from scratch from its FEN, and every node must be linked to its parent and children both ways.
+ */
+public class GameTreeTest
+{
+	private static final String[] STARTS = {
+		Fen.START,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"
+	};															// the positions the trees are grown from.
+	private static final int TREES = 5;							// how many trees are grown from each position.
+	private static final int OPERATIONS = 2000;					// how many random operations are done on each tree.
+
+	/**
+	 * Does random operations on trees, checking the position and the links after each one.
+	 */
+	@Test
+	public void randomOperationsKeepThePositionRight()
+	{
+		Random random = new Random(25);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		for (String start : STARTS)
+		{
+			for (int tree = 0; tree < TREES; tree++)
+			{
+				GameTree games = new GameTree(Fen.parse(start));
+
+				for (int operation = 0; operation < OPERATIONS; operation++)
+				{
+					int before = games.getCurrent();
+					int choice = random.nextInt(games.getPly() > 60 ? 8 : 12);
+
+					if (choice < 4) 								// undo, which a long line makes more likely.
+					{
+						assertEquals(before != GameTree.ROOT, games.undo());
+						assertEquals(before == GameTree.ROOT ? GameTree.ROOT : games.getParent(before), games.getCurrent());
+
+						if (before != GameTree.ROOT)
+						{
+							assertTrue(games.redo(), "redo after undo");
+							assertEquals(before, games.getCurrent(), "redo comes back along the same line");
+							games.undo();
+						}
+					}
+					else if (choice == 4) 							// a jump to any node.
+					{
+						int[] nodes = nodesOf(games);
+						int node = nodes[random.nextInt(nodes.length)];
+
+						games.goTo(node);
+						assertEquals(node, games.getCurrent());
+					}
+					else if (choice == 5) 							// a jump to a ply of the current line.
+					{
+						int ply = random.nextInt(games.getPly() + 5);
+						int[] line = games.getLine();
+
+						games.goToPly(ply);
+						assertEquals(Math.min(ply, line.length), games.getPly());
+						assertArrayEquals(line, games.getLine(), "a jump along the line keeps the line");
+
+						if (ply <= depthOf(games, before))
+						{
+							assertTrue(isOnLineTo(games, games.getCurrent(), before), "going back stays on the line played");
+						}
+					}
+					else if (choice == 6) 							// the next variation, going round.
+					{
+						if (before == GameTree.ROOT)
+						{
+							assertFalse(games.nextVariation());
+						}
+						else
+						{
+							int[] siblings = games.getChildren(games.getParent(before));
+							int index = indexOf(siblings, before);
+
+							assertEquals(siblings.length > 1, games.nextVariation());
+							assertEquals(siblings[(index + 1) % siblings.length], games.getCurrent());
+						}
+					}
+					else if (choice == 7) 							// a node made the main line.
+					{
+						int[] nodes = nodesOf(games);
+						int node = nodes[random.nextInt(nodes.length)];
+						Set<String> children = childSets(games);
+
+						games.promote(node);
+
+						for (int on = node; on != GameTree.ROOT; on = games.getParent(on))
+						{
+							assertEquals(on, games.getChildren(games.getParent(on))[0], "each node on the line is the main line");
+						}
+
+						assertEquals(children, childSets(games), "promoting only reorders children");
+						assertEquals(before, games.getCurrent());
+					}
+					else if (choice == 8 && before != GameTree.ROOT && random.nextInt(4) == 0) 	// a node and what follows it removed.
+					{
+						int[] nodes = nodesOf(games);
+						int node = nodes[1 + random.nextInt(nodes.length - 1)];
+						int parent = games.getParent(node);
+						boolean onLine = isOnLineTo(games, node, before);
+
+						games.remove(node);
+
+						assertEquals(onLine ? parent : before, games.getCurrent());
+						assertEquals(-1, indexOf(games.getChildren(parent), node));
+						assertThrows(IllegalArgumentException.class, () -> games.goTo(node));
+						assertThrows(IllegalArgumentException.class, () -> games.remove(node));
+					}
+					else 											// a move, sometimes one already played from here.
+					{
+						int count = MoveGenerator.generateMoves(games.getPosition(), moves);
+
+						if (count == 0)
+						{
+							continue;
+						}
+
+						int[] children = games.getChildren(before);
+						int move = children.length > 0 && random.nextBoolean() ? games.getMove(children[random.nextInt(children.length)]) : moves[random.nextInt(count)];
+						int existing = -1;
+
+						for (int child : children)
+						{
+							existing = games.getMove(child) == move ? child : existing;
+						}
+
+						int size = games.size(), node = games.play(move);
+
+						assertEquals(node, games.getCurrent());
+						assertEquals(before, games.getParent(node));
+						assertEquals(move, games.getMove(node));
+
+						if (existing >= 0)
+						{
+							assertEquals(existing, node, "a move played before goes to its node");
+							assertEquals(size, games.size());
+						}
+						else
+						{
+							assertEquals(size + 1, games.size());
+						}
+					}
+
+					checkTree(games);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Follows a small tree by hand: the line redo follows, variations going round, promoting a line and removing the
+	 * branch the current node is on.
+	 */
+	@Test
+	public void smallTreeByHand()
+	{
+		GameTree games = new GameTree(Position.startPosition());
+		Position position = Position.startPosition();
+		int e4 = San.parse(position, "e4"), d4 = San.parse(position, "d4");
+
+		position.makeMove(e4);
+
+		int e5 = San.parse(position, "e5");
+		int e4Node = games.play(e4), e5Node = games.play(e5);
+
+		games.goToStart();
+
+		int d4Node = games.play(d4);
+
+		assertArrayEquals(new int[] {d4}, games.getLine());
+		assertTrue(games.nextVariation());
+		assertEquals(e4Node, games.getCurrent(), "going round to the first variation");
+		assertTrue(games.nextVariation());
+		assertEquals(d4Node, games.getCurrent());
+
+		games.goToStart();
+
+		assertArrayEquals(new int[] {d4}, games.getLine(), "redo follows the line last visited");
+
+		games.promote(d4Node);
+
+		assertArrayEquals(new int[] {d4Node, e4Node}, games.getChildren(GameTree.ROOT));
+
+		games.remove(d4Node);
+
+		assertArrayEquals(new int[] {e4, e5}, games.getLine(), "with the line last visited gone, redo follows the main line");
+
+		games.goTo(e5Node);
+		games.remove(e4Node);
+
+		assertEquals(GameTree.ROOT, games.getCurrent(), "removing the current branch goes back to where it starts");
+		assertEquals(0, games.getLine().length);
+		assertEquals(Fen.START, Fen.toFen(games.getPosition()));
+		assertFalse(games.undo());
+		assertFalse(games.redo());
+		assertThrows(IllegalArgumentException.class, () -> games.remove(GameTree.ROOT));
+		assertThrows(IllegalArgumentException.class, () -> games.goTo(games.size()));
+	}
+
+	/**
+	 * Checks that the position matches the moves to the current node, and that the links of every node agree.
+	 *
+	 * @param _games The tree.
+	 */
+	private static void checkTree(GameTree _games)
+	{
+		List<Integer> path = new ArrayList<>();
+
+		for (int node = _games.getCurrent(); node != GameTree.ROOT; node = _games.getParent(node))
+		{
+			path.add(0, node);
+		}
+
+		Position replayed = new Position(startOf(_games));
+
+		for (int node : path)
+		{
+			replayed.makeMove(_games.getMove(node));
+		}
+
+		Position position = _games.getPosition();
+		String fen = Fen.toFen(position);
+
+		assertEquals(path.size(), _games.getPly());
+		assertEquals(Fen.toFen(replayed), fen);
+		assertEquals(replayed.getHash(), position.getHash(), fen);
+		assertEquals(Fen.parse(fen).getHash(), position.getHash(), fen);
+		assertEquals(Fen.parse(fen).getPawnHash(), position.getPawnHash(), fen);
+
+		int[] line = _games.getLine();
+
+		for (int i = 0; i < path.size(); i++)
+		{
+			assertEquals(_games.getMove(path.get(i)), line[i], "the line starts with the moves to the current node");
+		}
+
+		for (int node : nodesOf(_games))
+		{
+			Set<Integer> childMoves = new HashSet<>();
+
+			for (int child : _games.getChildren(node))
+			{
+				assertEquals(node, _games.getParent(child));
+				assertTrue(childMoves.add(_games.getMove(child)), "two children with the same move");
+			}
+		}
+	}
+
+	/**
+	 * Returns the starting position of a tree, found by taking back every move from the current one on a copy.
+	 *
+	 * @param _games The tree.
+	 * @return The starting position.
+	 */
+	private static Position startOf(GameTree _games)
+	{
+		Position position = new Position(_games.getPosition());
+
+		for (int node = _games.getCurrent(); node != GameTree.ROOT; node = _games.getParent(node))
+		{
+			position.unmakeMove(_games.getMove(node));
+		}
+
+		return position;
+	}
+
+	/**
+	 * Returns every node that can be reached from the start, the start first.
+	 *
+	 * @param _games The tree.
+	 * @return The nodes.
+	 */
+	private static int[] nodesOf(GameTree _games)
+	{
+		List<Integer> nodes = new ArrayList<>();
+
+		nodes.add(GameTree.ROOT);
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			for (int child : _games.getChildren(nodes.get(i)))
+			{
+				nodes.add(child);
+			}
+		}
+
+		return nodes.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Describes the children of every node, ignoring their order.
+	 *
+	 * @param _games The tree.
+	 * @return One entry for each node, of the node and its sorted children.
+	 */
+	private static Set<String> childSets(GameTree _games)
+	{
+		Set<String> sets = new HashSet<>();
+
+		for (int node : nodesOf(_games))
+		{
+			int[] children = _games.getChildren(node);
+
+			Arrays.sort(children);
+			sets.add(node + " " + Arrays.toString(children));
+		}
+
+		return sets;
+	}
+
+	/**
+	 * Returns the number of moves from the start to a node.
+	 *
+	 * @param _games The tree.
+	 * @param _node The node.
+	 * @return The depth.
+	 */
+	private static int depthOf(GameTree _games, int _node)
+	{
+		int depth = 0;
+
+		for (int node = _node; node != GameTree.ROOT; node = _games.getParent(node))
+		{
+			depth++;
+		}
+
+		return depth;
+	}
+
+	/**
+	 * Checks if a node is another node or comes before it.
+	 *
+	 * @param _games The tree.
+	 * @param _node The node that may come first.
+	 * @param _end The node.
+	 * @return Whether the line to the end passes through the node.
+	 */
+	private static boolean isOnLineTo(GameTree _games, int _node, int _end)
+	{
+		for (int node = _end; node != GameTree.NO_NODE; node = _games.getParent(node))
+		{
+			if (node == _node)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Finds a node among others.
+	 *
+	 * @param _nodes The nodes.
+	 * @param _node The node.
+	 * @return Its index, or -1 if it is not there.
+	 */
+	private static int indexOf(int[] _nodes, int _node)
+	{
+		for (int i = 0; i < _nodes.length; i++)
+		{
+			if (_nodes[i] == _node)
+			{
+				return i;
+			}
+		}
+
+		return -1;
+	}
+}
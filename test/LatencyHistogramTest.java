@@ -0,0 +1,113 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that percentiles read back from the histogram are within a bucket's width of the times recorded.
+ */
+public class LatencyHistogramTest
+{
+	/**
+	 * Records one time and checks every percentile is that time, rounded down by less than a sixteenth.
+	 *
+	 * @param _nanos The time.
+	 */
+	@ParameterizedTest
+	@ValueSource(longs = {1, 15, 16, 17, 31, 32, 33, 47, 48, 1000, 65535, 65536, 123456789, 1L << 62, Long.MAX_VALUE})
+	public void oneTime(long _nanos)
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(_nanos);
+
+		for (double percentile : new double[] {0, 50, 99, 100})
+		{
+			assertClose(_nanos, histogram.getPercentile(percentile));
+		}
+
+		assertEquals(_nanos, histogram.getMax());
+	}
+
+	/**
+	 * Checks that times below 16 nanoseconds are counted exactly.
+	 */
+	@Test
+	public void smallTimesExact()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (long nanos = 0; nanos < 16; nanos++)
+		{
+			histogram.record(nanos);
+		}
+
+		assertEquals(7, histogram.getPercentile(50));
+		assertEquals(15, histogram.getPercentile(100));
+		assertEquals(0, histogram.getPercentile(0));
+	}
+
+	/**
+	 * Records the times 1 to 100000 microseconds and checks the median and 99th percentile.
+	 */
+	@Test
+	public void spreadOfTimes()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		for (long micros = 100000; micros >= 1; micros--) 			// recorded backwards, as the order should not matter.
+		{
+			histogram.record(micros * 1000);
+		}
+
+		assertEquals(100000, histogram.getCount());
+		assertEquals(50000500, histogram.getMean());
+		assertClose(50000000, histogram.getPercentile(50));
+		assertClose(99000000, histogram.getPercentile(99));
+		assertClose(100000000, histogram.getPercentile(100));
+	}
+
+	/**
+	 * Checks that a time of 0 is kept, a negative time is counted as 0, and an empty histogram reads as 0.
+	 */
+	@Test
+	public void zeroAndNegativeTimes()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getPercentile(50));
+		assertEquals(0, histogram.getMean());
+
+		histogram.record(0);
+		histogram.record(-5);
+		histogram.record(Long.MIN_VALUE);
+
+		assertEquals(3, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(100));
+
+		histogram.record(1000);
+
+		assertEquals(0, histogram.getPercentile(50));
+		assertClose(1000, histogram.getPercentile(100));
+
+		histogram.reset();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(100));
+	}
+
+	/**
+	 * Checks that a percentile is at most the time expected, and below it by less than the sixteenth a bucket spans.
+	 *
+	 * @param _expected The time expected.
+	 * @param _actual The percentile read back.
+	 */
+	private static void assertClose(long _expected, long _actual)
+	{
+		assertTrue(_actual <= _expected && _expected - _actual <= _expected / 16, "expected about " + _expected + " but was " + _actual);
+	}
+}
@@ -0,0 +1,201 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that an opening book built from games finds the moves played, with the weights they earned.
+ */
+public class OpeningBookTest
+{
+	@TempDir
+	Path directory;												// holds the book, and is deleted after each test.
+
+	/**
+	 * Builds a book from a few games and checks each weight: 2 for a win, 1 for a draw and nothing for a loss.
+	 *
+	 * @throws IOException If the book can not be written or read.
+	 */
+	@Test
+	public void weightsFollowResults() throws IOException
+	{
+		OpeningBookBuilder builder = new OpeningBookBuilder(2);
+		Path path = directory.resolve("small.bin");
+
+		builder.addGame(game("1-0", "e4", "e5", "Nf3"));
+		builder.addGame(game("1-0", "e4", "e5"));
+		builder.addGame(game("0-1", "d4", "d5"));
+		builder.addGame(game("1/2-1/2", "e4", "c5"));
+		builder.addGame(game("*", "c4"));							// a game with no result is not counted.
+
+		assertEquals(3, builder.write(path), "e4, c5 after e4, and d5 after d4");
+
+		try (OpeningBook book = new OpeningBook(path))
+		{
+			assertEquals(3, book.size());
+			assertBook(book, "", "e4", 5);
+			assertBook(book, "e4", "c5", 1);
+			assertBook(book, "d4", "d5", 2);
+			assertBook(book, "e4 e5", null, 0);
+			assertBook(book, "c4", null, 0);
+
+			assertEquals(San.parse(Position.startPosition(), "e4"), book.pickMove(Position.startPosition(), new Random(1)));
+			assertEquals(Move.NONE, book.pickMove(after("Nf3"), new Random(1)));
+		}
+	}
+
+	/**
+	 * Builds a book from random games stored in a game database, and checks every move a winner played is found.
+	 *
+	 * @throws IOException If the database or the book can not be written or read.
+	 */
+	@Test
+	public void buildFromDatabase() throws IOException
+	{
+		Random random = new Random(19);
+		PgnGame[] games = new PgnGame[300];
+		Path database = directory.resolve("games.db"), path = directory.resolve("book.bin");
+
+		try (GameDatabaseWriter writer = new GameDatabaseWriter(database))
+		{
+			for (int i = 0; i < games.length; i++)
+			{
+				games[i] = RandomGames.play(random, null, 12, i % 2 == 0 ? "1-0" : "0-1");
+				writer.add(games[i]);
+			}
+		}
+
+		OpeningBookBuilder builder = new OpeningBookBuilder(10);
+
+		try (GameDatabase read = new GameDatabase(database))
+		{
+			builder.addDatabase(read);
+		}
+
+		int entries = builder.write(path);
+
+		assertEquals(entries * OpeningBook.ENTRY_SIZE, Files.size(path));
+
+		int[] moves = new int[MoveGenerator.MAX_MOVES], weights = new int[MoveGenerator.MAX_MOVES];
+
+		try (OpeningBook book = new OpeningBook(path))
+		{
+			for (PgnGame game : games)
+			{
+				Position position = game.startPosition();
+				int winner = game.getResult().equals("1-0") ? Position.WHITE : Position.BLACK;
+
+				for (int ply = 0; ply < Math.min(10, game.getMoveCount()); ply++)
+				{
+					if (position.getSideToMove() == winner)
+					{
+						int count = book.getMoves(position, moves, weights);
+						boolean found = false;
+
+						for (int i = 0; i < count; i++)
+						{
+							found |= moves[i] == game.getMove(ply) && weights[i] > 0;
+						}
+
+						assertTrue(found, Move.toString(game.getMove(ply)) + " in " + Fen.toFen(position));
+					}
+
+					position.makeMove(game.getMove(ply));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that a file that is not a whole number of entries is refused.
+	 *
+	 * @throws IOException If the file can not be written.
+	 */
+	@Test
+	public void otherFilesRefused() throws IOException
+	{
+		Path path = directory.resolve("other.bin");
+
+		Files.write(path, new byte[OpeningBook.ENTRY_SIZE + 1]);
+
+		assertThrows(IOException.class, () -> new OpeningBook(path));
+	}
+
+	/**
+	 * Checks the book moves of a position.
+	 *
+	 * @param _book The book.
+	 * @param _moves The moves that lead to the position, in SAN separated by spaces.
+	 * @param _expected The one book move expected, in SAN, or null for none.
+	 * @param _weight The weight expected.
+	 */
+	private static void assertBook(OpeningBook _book, String _moves, String _expected, int _weight)
+	{
+		Position position = after(_moves);
+		int[] moves = new int[MoveGenerator.MAX_MOVES], weights = new int[MoveGenerator.MAX_MOVES];
+		int count = _book.getMoves(position, moves, weights);
+
+		if (_expected == null)
+		{
+			assertEquals(0, count, "book moves after " + _moves);
+
+			return;
+		}
+
+		assertEquals(1, count, "book moves after " + _moves);
+		assertEquals(_expected, San.toSan(position, moves[0]));
+		assertEquals(_weight, weights[0], "weight of " + _expected);
+	}
+
+	/**
+	 * Plays moves from the starting position.
+	 *
+	 * @param _moves The moves in SAN, separated by spaces.
+	 * @return The position after them.
+	 */
+	private static Position after(String _moves)
+	{
+		Position position = Position.startPosition();
+
+		for (String san : _moves.trim().split("\\s+"))
+		{
+			if (!san.isEmpty())
+			{
+				position.makeMove(San.parse(position, san));
+			}
+		}
+
+		return position;
+	}
+
+	/**
+	 * Creates a game from the starting position.
+	 *
+	 * @param _result The result.
+	 * @param _moves The moves in SAN.
+	 * @return The game.
+	 */
+	private static PgnGame game(String _result, String... _moves)
+	{
+		PgnGame game = new PgnGame();
+		Position position = Position.startPosition();
+
+		for (String san : _moves)
+		{
+			int move = San.parse(position, san);
+
+			game.addMove(move);
+			position.makeMove(move);
+		}
+
+		game.setResult(_result);
+
+		return game;
+	}
+}
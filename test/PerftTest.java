@@ -0,0 +1,42 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Checks the move generator against the published perft counts.
+ *
+ * Each position is counted at every depth up to the deepest given, so a wrong count shows the first depth it goes
+ * wrong at. Between them the positions cover castling through and out of check, en passant that uncovers a check,
+ * promotions with and without captures, and pins along every line.
+ */
+public class PerftTest
+{
+	/**
+	 * Counts the positions reached from a position at each depth.
+	 *
+	 * @param _name The name of the position.
+	 * @param _fen The position.
+	 * @param _counts The expected counts at depth 1, 2 and so on, separated by spaces.
+	 */
+	@ParameterizedTest(name = "{0}")
+	@CsvSource(delimiter = '|', value = {
+		"start position | rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1 | 20 400 8902 197281 4865609",
+		"kiwipete | r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 | 48 2039 97862 4085603",
+		"position 3 | 8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1 | 14 191 2812 43238 674624",
+		"position 4 | r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1 | 6 264 9467 422333",
+		"position 4 mirrored | r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1 | 6 264 9467 422333",
+		"position 5 | rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8 | 44 1486 62379 2103487"
+	})
+	public void countsMatch(String _name, String _fen, String _counts)
+	{
+		String[] counts = _counts.split(" ");
+		Perft perft = new Perft(counts.length);
+		Position position = Fen.parse(_fen);
+
+		for (int depth = 1; depth <= counts.length; depth++)
+		{
+			assertEquals(Long.parseLong(counts[depth - 1]), perft.count(position, depth), _name + " at depth " + depth);
+		}
+	}
+}
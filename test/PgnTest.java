@@ -0,0 +1,155 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that games written as PGN are read back exactly, and that the reader copes with annotations and bad games.
+ */
+public class PgnTest
+{
+	private static final String[] STARTS = {
+		null,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"
+	};															// the positions the games start from, null for the usual one.
+	private static final String[] RESULTS = {"1-0", "0-1", "1/2-1/2", "*"};	// the results the games are given in turn.
+
+	/**
+	 * Writes random games with tags, some from set positions, and checks every move, tag and result read back, and
+	 * that no line of moves is too long.
+	 *
+	 * @throws IOException If the games can not be written or read.
+	 */
+	@Test
+	public void writeThenRead() throws IOException
+	{
+		Random random = new Random(16);
+		List<PgnGame> games = new ArrayList<>();
+		StringWriter text = new StringWriter();
+
+		try (PgnWriter writer = new PgnWriter(text))
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				PgnGame game = RandomGames.play(random, STARTS[i % STARTS.length], random.nextInt(200), RESULTS[i % RESULTS.length]);
+
+				game.setTag("Event", "Test \"" + i + "\"");
+				game.setTag("White", "Player\\" + i);
+				game.setTag("Annotator", "test");
+				games.add(game);
+				writer.write(game);
+			}
+		}
+
+		for (String line : text.toString().split("\n"))
+		{
+			assertTrue(line.length() <= 79, "line too long: " + line);
+		}
+
+		try (PgnReader reader = new PgnReader(new StringReader(text.toString())))
+		{
+			for (int i = 0; i < games.size(); i++)
+			{
+				PgnGame expected = games.get(i), read = reader.next();
+
+				assertEquals(expected.getMoveCount(), read.getMoveCount(), "moves in game " + i);
+
+				for (int j = 0; j < expected.getMoveCount(); j++)
+				{
+					assertEquals(expected.getMove(j), read.getMove(j), "move " + j + " of game " + i);
+				}
+
+				assertEquals(expected.getResult(), read.getResult(), "result of game " + i);
+				assertEquals(expected.getTag("Event"), read.getTag("Event"));
+				assertEquals(expected.getTag("White"), read.getTag("White"));
+				assertEquals("test", read.getTag("Annotator"));
+				assertEquals("?", read.getTag("Black"));
+				assertEquals(expected.getTag("FEN"), read.getTag("FEN"), "start of game " + i);
+				assertEquals(expected.getTag("FEN") != null ? "1" : null, read.getTag("SetUp"));
+			}
+
+			assertNull(reader.next());
+			assertEquals(games.size(), reader.getGamesRead());
+		}
+	}
+
+	/**
+	 * Reads games with comments, variations, annotation glyphs and move numbers in every form, and a game with an
+	 * illegal move between them, which is skipped without losing the game after it.
+	 *
+	 * @throws IOException If the games can not be read.
+	 */
+	@Test
+	public void annotationsAndBadGamesSkipped() throws IOException
+	{
+		String text = "[Event \"First\"]\n"
+			+ "[Result \"1-0\"]\n"
+			+ "\n"
+			+ "1. e4 {best by test} e5 2. Nf3 (2. f4 exf4 (2... d5) 3. Nf3) Nc6 $1 3.Bb5 a6!? ; a comment to the end\n"
+			+ "4. Ba4 {a comment\n"
+			+ "over two lines} 4... Nf6 5. O-O 1-0\n"
+			+ "\n"
+			+ "[Event \"Second\"]\n"
+			+ "[Result \"*\"]\n"
+			+ "\n"
+			+ "1. d4 d5 2. Ke3 Nf6 3. c4 *\n"
+			+ "\n"
+			+ "[Event \"Third\"]\n"
+			+ "[SetUp \"1\"]\n"
+			+ "[FEN \"4k3/8/8/8/8/8/4P3/4K3 b - - 0 1\"]\n"
+			+ "[Result \"1/2-1/2\"]\n"
+			+ "\n"
+			+ "1... Kd7 2. e4 Ke6 1/2-1/2\n";
+
+		try (PgnReader reader = new PgnReader(new StringReader(text)))
+		{
+			PgnGame first = reader.next();
+
+			assertEquals("First", first.getTag("Event"));
+			assertEquals("1-0", first.getResult());
+			assertEquals("e4 e5 Nf3 Nc6 Bb5 a6 Ba4 Nf6 O-O", sanOf(first));
+
+			assertThrows(IllegalArgumentException.class, reader::next, "Ke3 is not legal");
+
+			PgnGame third = reader.next();
+
+			assertEquals("Third", third.getTag("Event"));
+			assertEquals("1/2-1/2", third.getResult());
+			assertEquals("4k3/8/8/8/8/8/4P3/4K3 b - - 0 1", third.getTag("FEN"));
+			assertEquals("Kd7 e4 Ke6", sanOf(third));
+
+			assertNull(reader.next());
+			assertEquals(3, reader.getGamesRead());
+		}
+	}
+
+	/**
+	 * Writes the moves of a game in SAN.
+	 *
+	 * @param _game The game.
+	 * @return The moves, separated by spaces.
+	 */
+	private static String sanOf(PgnGame _game)
+	{
+		Position position = _game.startPosition();
+		StringBuilder text = new StringBuilder();
+
+		for (int i = 0; i < _game.getMoveCount(); i++)
+		{
+			text.append(i > 0 ? " " : "").append(San.toSan(position, _game.getMove(i)));
+			position.makeMove(_game.getMove(i));
+		}
+
+		return text.toString();
+	}
+}
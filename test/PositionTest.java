@@ -0,0 +1,119 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that making and taking back moves keeps every part of the position exactly right.
+ *
+ * Random games are played from positions rich in castling, en passant and promotions. In each position every legal
+ * move is made and taken back: after the move the incremental hashes must match a position set up from scratch, and
+ * after taking it back everything must be as it was.
+ */
+public class PositionTest
+{
+	private static final String[] STARTS = {
+		Fen.START,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"
+	};															// the positions the random games start from.
+	private static final int GAMES = 20;						// how many games are played from each position.
+	private static final int PLIES = 60;						// the most moves in each game.
+
+	/**
+	 * Makes and takes back every legal move along random games.
+	 */
+	@Test
+	public void makeAndUnmakeRestoreEverything()
+	{
+		Random random = new Random(8);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		for (String start : STARTS)
+		{
+			for (int game = 0; game < GAMES; game++)
+			{
+				Position position = Fen.parse(start);
+
+				for (int ply = 0; ply < PLIES; ply++)
+				{
+					int count = MoveGenerator.generateMoves(position, moves);
+
+					if (count == 0 || position.isDraw())
+					{
+						break;
+					}
+
+					String before = describe(position);
+
+					for (int i = 0; i < count; i++)
+					{
+						int move = moves[i];
+
+						position.makeMove(move);
+
+						Position fresh = Fen.parse(Fen.toFen(position));
+
+						assertEquals(fresh.getHash(), position.getHash(), "hash after " + Move.toString(move) + " in " + before);
+						assertEquals(fresh.getPawnHash(), position.getPawnHash(), "pawn hash after " + Move.toString(move) + " in " + before);
+						assertEquals(describe(fresh), describe(position), "state after " + Move.toString(move) + " in " + before);
+
+						position.unmakeMove(move);
+
+						assertEquals(before, describe(position), "taking back " + Move.toString(move));
+					}
+
+					position.makeMove(moves[random.nextInt(count)]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that a position reached by two move orders has the same hash.
+	 */
+	@Test
+	public void transpositionsShareAHash()
+	{
+		Position first = Position.startPosition(), second = Position.startPosition();
+
+		for (String san : new String[] {"Nf3", "Nf6", "Nc3", "Nc6"})
+		{
+			first.makeMove(San.parse(first, san));
+		}
+
+		for (String san : new String[] {"Nc3", "Nc6", "Nf3", "Nf6"})
+		{
+			second.makeMove(San.parse(second, san));
+		}
+
+		assertEquals(first.getHash(), second.getHash());
+		assertEquals(Fen.parse(Fen.toFen(first)).getHash(), first.getHash());
+	}
+
+	/**
+	 * Writes out everything a move changes, so two positions can be compared in one go.
+	 *
+	 * @param _position The position.
+	 * @return The FEN, the bitboards of every piece, the hashes and the incremental evaluation terms.
+	 */
+	private static String describe(Position _position)
+	{
+		StringBuilder text = new StringBuilder(Fen.toFen(_position));
+
+		for (int colour = Position.WHITE; colour <= Position.BLACK; colour++)
+		{
+			for (int piece = Position.PAWN; piece <= Position.KING; piece++)
+			{
+				text.append(' ').append(Long.toHexString(_position.getPieces(colour, piece)));
+			}
+		}
+
+		return text.append(" hash ").append(Long.toHexString(_position.getHash()))
+			.append(" pawns ").append(Long.toHexString(_position.getPawnHash()))
+			.append(" scores ").append(_position.getMiddlegameScore()).append(' ').append(_position.getEndgameScore())
+			.append(" phase ").append(_position.getPhase()).toString();
+	}
+}
@@ -0,0 +1,55 @@
+import java.util.Random;
+
+/**
+ * Plays random games for the tests that write games out and read them back.
+ */
+final class RandomGames
+{
+	/**
+	 * The games are only made through the static method.
+	 */
+	private RandomGames()
+	{
+	}
+
+	/**
+	 * Plays random legal moves.
+	 *
+	 * @param _random The random numbers to pick the moves with.
+	 * @param _fen The position the game starts from, or null for the usual one.
+	 * @param _plies The most moves to play, fewer if the game ends.
+	 * @param _result The result given to the game.
+	 * @return The game.
+	 */
+	static PgnGame play(Random _random, String _fen, int _plies, String _result)
+	{
+		PgnGame game = new PgnGame();
+
+		if (_fen != null)
+		{
+			game.setTag("FEN", _fen);
+		}
+
+		Position position = game.startPosition();
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		for (int ply = 0; ply < _plies; ply++)
+		{
+			int count = MoveGenerator.generateMoves(position, moves);
+
+			if (count == 0)
+			{
+				break;
+			}
+
+			int move = moves[_random.nextInt(count)];
+
+			game.addMove(move);
+			position.makeMove(move);
+		}
+
+		game.setResult(_result);
+
+		return game;
+	}
+}
@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks writing and reading moves in SAN.
+ */
+public class SanTest
+{
+	/**
+	 * Checks that every legal move is written differently from the others and is read back as the same move.
+	 *
+	 * @param _fen The position.
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = {
+		Fen.START,
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+		"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+		"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3",
+		"7k/8/1N3N2/8/1N3N2/8/8/K7 w - - 0 1"
+	})
+	public void roundTrip(String _fen)
+	{
+		Position position = Fen.parse(_fen);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateMoves(position, moves);
+		Set<String> written = new HashSet<>();
+
+		for (int i = 0; i < count; i++)
+		{
+			String san = San.toSan(position, moves[i]);
+
+			assertTrue(written.add(san), "two moves written as " + san);
+			assertEquals(moves[i], San.parse(position, san), san);
+		}
+
+		assertEquals(_fen, Fen.toFen(position), "the position is left unchanged");
+	}
+
+	/**
+	 * Checks how particular moves are written.
+	 *
+	 * @param _fen The position.
+	 * @param _move The move, as its two squares.
+	 * @param _san The move in SAN.
+	 */
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		Fen.START + " | g1f3 | Nf3",
+		Fen.START + " | e2e4 | e4",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 | e1g1 | O-O",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 | e1c1 | O-O-O",
+		"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1 | e5f7 | Nxf7",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8 | d7c8q | dxc8=Q",
+		"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8 | d7c8n | dxc8=N",
+		"rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3 | e5f6 | exf6",
+		"rnbqkbnr/pppp1ppp/8/4p3/6P1/5P2/PPPPP2P/RNBQKBNR b KQkq - 0 2 | d8h4 | Qh4#",
+		"4k3/8/8/8/8/8/8/R3K3 w - - 0 1 | a1a8 | Ra8+",
+		"1k6/8/8/8/8/8/K7/R6R w - - 0 1 | a1d1 | Rad1",
+		"7k/8/R7/8/8/8/8/R6K w - - 0 1 | a1a3 | R1a3",
+		"7k/8/1N3N2/8/1N3N2/8/8/K7 w - - 0 1 | b6d5 | Nb6d5"
+	})
+	public void written(String _fen, String _move, String _san)
+	{
+		Position position = Fen.parse(_fen);
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateMoves(position, moves), move = Move.NONE;
+
+		for (int i = 0; i < count; i++) 							// finding the move by its squares.
+		{
+			move = Move.toString(moves[i]).equals(_move) ? moves[i] : move;
+		}
+
+		assertEquals(_san, San.toSan(position, move));
+	}
+
+	/**
+	 * Checks that text that is not exactly one legal move is refused.
+	 *
+	 * @param _fen The position.
+	 * @param _san The text.
+	 */
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		Fen.START + " | Nf4",
+		Fen.START + " | e5",
+		Fen.START + " | O-O",
+		Fen.START + " | Kxe2",
+		"1k6/8/8/8/8/8/K7/R6R w - - 0 1 | Rd1",
+		"7k/8/1N3N2/8/1N3N2/8/8/K7 w - - 0 1 | Nd5",
+		"7k/8/1N3N2/8/1N3N2/8/8/K7 w - - 0 1 | Nbd5"
+	})
+	public void rejected(String _fen, String _san)
+	{
+		assertThrows(IllegalArgumentException.class, () -> San.parse(Fen.parse(_fen), _san));
+	}
+}
@@ -0,0 +1,203 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Checks the scores the search gives mates and draws, that mates keep their distance through the transposition
+ * table, and that a search can be stopped.
+ */
+public class SearchTest
+{
+	@TempDir
+	Path directory;												// holds the tablebases, and is deleted after each test.
+
+	/**
+	 * Checks that a forced mate is found and scored by its distance, from the side giving it and the side getting it.
+	 *
+	 * @param _fen The position.
+	 * @param _plies The plies to mate, negative when the side to move is mated.
+	 */
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		"k7/8/1K6/8/8/8/7Q/8 w - - 0 1 | 1",
+		"6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1 | 1",
+		"r1bqkb1r/pppp1ppp/2n2n2/4p2Q/2B1P3/8/PPPP1PPP/RNB1K1NR w KQkq - 4 4 | 1",
+		"kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1 | 3",
+		"kbK5/pp6/RP6/8/8/8/8/8 b - - 0 1 | -2"
+	})
+	public void matesScoredByDistance(String _fen, int _plies)
+	{
+		Search search = newSearch();
+		Position position = Fen.parse(_fen);
+		int move = search.search(position, 8, 0, 0);
+
+		assertEquals(_plies > 0 ? Search.MATE - _plies : -Search.MATE - _plies, search.getBestScore(), _fen);
+		assertTrue(isLegal(position, move), _fen);
+		assertEquals(_fen, Fen.toFen(position), "the position is left unchanged");
+	}
+
+	/**
+	 * Checks that the side to move with no moves and not in check is scored as a draw, with no move to play.
+	 */
+	@Test
+	public void stalemateScoresZero()
+	{
+		Search search = newSearch();
+
+		assertEquals(Move.NONE, search.search(Fen.parse("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1"), 6, 0, 0));
+		assertEquals(0, search.getBestScore());
+	}
+
+	/**
+	 * Checks that the side a queen down takes a repetition, and that without the moves played before the same
+	 * position is scored as lost.
+	 */
+	@Test
+	public void repetitionScoresZero()
+	{
+		Position position = Fen.parse("rnb1kbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+
+		for (String san : new String[] {"Nf3", "Nf6", "Ng1", "Ng8", "Nf3", "Nf6", "Ng1"})
+		{
+			position.makeMove(San.parse(position, san));
+		}
+
+		Search search = newSearch();
+		int move = search.search(position, 6, 0, 0);
+
+		assertEquals("Ng8", San.toSan(position, move));
+		assertEquals(0, search.getBestScore());
+
+		search = newSearch();
+		search.search(Fen.parse(Fen.toFen(position)), 6, 0, 0);
+
+		assertTrue(search.getBestScore() < -500, "a queen down with no repetition to take: " + search.getBestScore());
+	}
+
+	/**
+	 * Checks that a mate found again through entries stored by an earlier search, at a different distance from the
+	 * root, keeps the right distance.
+	 */
+	@Test
+	public void matesKeepTheirDistanceThroughTheTable()
+	{
+		Search search = newSearch();
+		Position position = Fen.parse("kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1");
+
+		search.search(position, 8, 0, 0);
+		assertEquals(Search.MATE - 3, search.getBestScore());
+
+		position.makeMove(San.parse(position, "Ra6"));
+		search.search(position, 8, 0, 0);
+		assertEquals(-Search.MATE + 2, search.getBestScore());
+
+		position.makeMove(San.parse(position, "bxa6"));
+		search.search(position, 8, 0, 0);
+		assertEquals(Search.MATE - 1, search.getBestScore());
+
+		search.search(Fen.parse("kbK5/pp6/1P6/8/8/8/8/R7 w - - 0 1"), 8, 0, 0);
+		assertEquals(Search.MATE - 3, search.getBestScore());
+	}
+
+	/**
+	 * Checks that a tablebase win is scored as a mate the tablebase distance away, and stops the search.
+	 *
+	 * @throws IOException If the tablebases can not be written or read.
+	 */
+	@Test
+	public void tablebaseWinsScoredAsMates() throws IOException
+	{
+		new TablebaseGenerator(directory, new PrintStream(OutputStream.nullOutputStream())).generate("KPvK");
+
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			Search search = newSearch();
+
+			search.setTablebase(tablebase);
+			search.search(Fen.parse("8/8/8/1k6/8/K7/6P1/8 w - - 0 1"), Search.MAX_PLY, 0, 0);
+
+			assertEquals(Search.MATE - 55, search.getBestScore(), "the longest KPvK win");
+			assertTrue(search.getCompletedDepth() < 10, "a found mate ends the search");
+		}
+	}
+
+	/**
+	 * Checks that a search with no limits, stopped from another thread, returns promptly with a legal move.
+	 *
+	 * @throws InterruptedException If the test is interrupted.
+	 */
+	@Test
+	public void stopFromAnotherThread() throws InterruptedException
+	{
+		Search search = newSearch();
+		Position position = Position.startPosition();
+		int[] result = new int[1];
+		Thread thread = new Thread(() -> result[0] = search.search(position, Search.MAX_PLY, 0, 0));
+
+		thread.start();
+		Thread.sleep(200);
+		search.stop();
+		thread.join(5000);
+
+		assertFalse(thread.isAlive(), "the search stops");
+		assertTrue(isLegal(Position.startPosition(), result[0]), Move.toString(result[0]));
+		assertTrue(search.getCompletedDepth() >= 1);
+	}
+
+	/**
+	 * Checks that a search given a time limit keeps to it.
+	 */
+	@Test
+	public void timeLimitKept()
+	{
+		Search search = newSearch();
+		long start = System.nanoTime();
+		int move = search.search(Position.startPosition(), Search.MAX_PLY, 100, 0);
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		assertTrue(millis < 1000, "took " + millis + " ms");
+		assertTrue(isLegal(Position.startPosition(), move), Move.toString(move));
+	}
+
+	/**
+	 * Creates a search with its own small table.
+	 *
+	 * @return The search.
+	 */
+	private static Search newSearch()
+	{
+		return new Search(new TranspositionTable(4, TranspositionTable.Replacement.DEPTH_PREFERRED));
+	}
+
+	/**
+	 * Checks whether a move is one of the legal moves of a position.
+	 *
+	 * @param _position The position.
+	 * @param _move The move.
+	 * @return Whether the move is legal.
+	 */
+	private static boolean isLegal(Position _position, int _move)
+	{
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+		int count = MoveGenerator.generateMoves(_position, moves);
+
+		for (int i = 0; i < count; i++)
+		{
+			if (moves[i] == _move)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
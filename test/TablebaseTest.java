@@ -0,0 +1,227 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Checks generated tablebases against the well known longest mates, against the moves of each position, and against
+ * a few positions worked out by hand.
+ */
+public class TablebaseTest
+{
+	@TempDir
+	static Path directory;										// holds the tablebases, shared by every test and deleted after the last.
+
+	/**
+	 * Generates the tablebases the tests probe, and the smaller ones KPvK promotes into.
+	 *
+	 * @throws IOException If a tablebase can not be written.
+	 */
+	@BeforeAll
+	public static void generate() throws IOException
+	{
+		TablebaseGenerator generator = new TablebaseGenerator(directory, new PrintStream(OutputStream.nullOutputStream()));
+
+		generator.generate("KQvK");
+		generator.generate("KRvK");
+		generator.generate("KPvK");
+	}
+
+	/**
+	 * Probes every position of a king and one piece against a lone king, and checks the longest mate each way round.
+	 *
+	 * @param _name The tablebase.
+	 * @param _piece The white piece.
+	 * @param _win The longest win in plies with white to move.
+	 * @param _loss The longest loss in plies with black to move.
+	 * @throws IOException If the tablebases can not be read.
+	 */
+	@ParameterizedTest
+	@CsvSource({
+		"KQvK, 4, 19, 20",
+		"KRvK, 3, 31, 32",
+		"KPvK, 0, 55, 56"
+	})
+	public void longestMates(String _name, int _piece, int _win, int _loss) throws IOException
+	{
+		int[] longest = new int[2];								// the longest win with white to move, and loss with black to move.
+
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			forEachPosition(_piece, position ->
+			{
+				int probe = tablebase.probe(position);
+				int side = position.getSideToMove();
+
+				if (probe != Tablebase.NO_RESULT && Tablebase.getResult(probe) == (side == Position.WHITE ? Tablebase.WIN : Tablebase.LOSS))
+				{
+					longest[side] = Math.max(longest[side], Tablebase.getDistance(probe));
+				}
+			});
+		}
+
+		assertEquals(_win, longest[Position.WHITE], _name + " longest win");
+		assertEquals(_loss, longest[Position.BLACK], _name + " longest loss");
+	}
+
+	/**
+	 * Checks that every KPvK result follows from the results after each legal move, so promotions into the other
+	 * tablebases, captures of the pawn and double pushes are all scored the way the moves say.
+	 *
+	 * @throws IOException If the tablebases can not be read.
+	 */
+	@Test
+	public void resultsFollowFromMoves() throws IOException
+	{
+		int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			forEachPosition(Position.PAWN, position ->
+			{
+				int probe = tablebase.probe(position);
+
+				if (probe == Tablebase.NO_RESULT)
+				{
+					return;
+				}
+
+				int count = MoveGenerator.generateMoves(position, moves);
+				int result = count == 0 && position.isInCheck() ? Tablebase.LOSS : Tablebase.DRAW;
+				int quickestWin = Integer.MAX_VALUE, slowestLoss = 0;
+				boolean drawn = count == 0;
+
+				for (int i = 0; i < count; i++)
+				{
+					position.makeMove(moves[i]);
+
+					int after = tablebase.probe(position); 			// a capture of the pawn leaves two bare kings, which is no tablebase.
+
+					position.unmakeMove(moves[i]);
+
+					if (after == Tablebase.NO_RESULT || Tablebase.getResult(after) == Tablebase.DRAW)
+					{
+						drawn = true;
+					}
+					else if (Tablebase.getResult(after) == Tablebase.LOSS)
+					{
+						quickestWin = Math.min(quickestWin, Tablebase.getDistance(after) + 1);
+					}
+					else
+					{
+						slowestLoss = Math.max(slowestLoss, Tablebase.getDistance(after) + 1);
+					}
+				}
+
+				String fen = Fen.toFen(position);
+
+				if (quickestWin != Integer.MAX_VALUE)
+				{
+					assertEquals(Tablebase.WIN, Tablebase.getResult(probe), fen);
+					assertEquals(quickestWin, Tablebase.getDistance(probe), fen);
+				}
+				else if (count > 0 && !drawn)
+				{
+					assertEquals(Tablebase.LOSS, Tablebase.getResult(probe), fen);
+					assertEquals(slowestLoss, Tablebase.getDistance(probe), fen);
+				}
+				else
+				{
+					assertEquals(result, Tablebase.getResult(probe), fen);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Checks positions whose result is easy to see.
+	 *
+	 * @param _fen The position.
+	 * @param _result The result for the side to move.
+	 * @param _distance The distance to mate in plies, 0 for a draw.
+	 * @throws IOException If the tablebases can not be read.
+	 */
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		"k7/8/1K6/8/8/8/7Q/8 w - - 0 1 | 1 | 1",					// Qh8 mates.
+		"k7/2Q5/1K6/8/8/8/8/8 b - - 0 1 | 0 | 0",					// black has no moves and is not in check.
+		"k7/1R6/8/8/8/8/8/7K b - - 0 1 | 0 | 0",					// black takes the rook and it is a draw.
+		"k7/2P5/1K6/8/8/8/8/8 w - - 0 1 | 1 | 1",					// c8=Q mates.
+		"K7/8/k7/8/8/8/6P1/8 w - - 0 1 | 1 | 27",					// only g4 wins, as after g3 the black king catches the pawn.
+		"8/8/8/8/8/k7/P7/K7 w - - 0 1 | 0 | 0"						// a rook pawn with the black king in front of it.
+	})
+	public void knownResults(String _fen, int _result, int _distance) throws IOException
+	{
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			int probe = tablebase.probe(Fen.parse(_fen));
+
+			assertEquals(_result, Tablebase.getResult(probe), _fen);
+			assertEquals(_distance, Tablebase.getDistance(probe), _fen);
+		}
+	}
+
+	/**
+	 * Checks that a position the tablebases do not cover is not given a result.
+	 *
+	 * @throws IOException If the tablebases can not be read.
+	 */
+	@Test
+	public void otherPositionsNotFound() throws IOException
+	{
+		try (Tablebase tablebase = new Tablebase(directory))
+		{
+			assertEquals(Tablebase.NO_RESULT, tablebase.probe(Fen.parse("4k3/8/8/8/8/8/8/4K2R w K - 0 1")));
+			assertEquals(Tablebase.NO_RESULT, tablebase.probe(Fen.parse("4k3/8/8/8/8/8/8/3QK2R w - - 0 1")));
+			assertEquals(Tablebase.NO_RESULT, tablebase.probe(Fen.parse(Fen.START)));
+		}
+	}
+
+	/**
+	 * Sets up every position of a white king and piece against the black king, with either side to move.
+	 *
+	 * Pawns are only put on the rows they can stand on. Positions where the side not to move is in check are included,
+	 * and the tablebases give them no result.
+	 *
+	 * @param _piece The white piece.
+	 * @param _action What to do with each position.
+	 */
+	private static void forEachPosition(int _piece, Consumer<Position> _action)
+	{
+		int first = _piece == Position.PAWN ? 8 : 0, last = _piece == Position.PAWN ? 55 : 63;
+
+		for (int whiteKing = 0; whiteKing < 64; whiteKing++)
+		{
+			for (int blackKing = 0; blackKing < 64; blackKing++)
+			{
+				for (int square = first; square <= last; square++)
+				{
+					if (whiteKing == blackKing || whiteKing == square || blackKing == square)
+					{
+						continue;
+					}
+
+					for (int side = Position.WHITE; side <= Position.BLACK; side++)
+					{
+						Position position = new Position();
+
+						position.addPiece(Position.WHITE, Position.KING, whiteKing);
+						position.addPiece(Position.BLACK, Position.KING, blackKing);
+						position.addPiece(Position.WHITE, _piece, square);
+						position.setSideToMove(side);
+
+						_action.accept(position);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+/**
+ * Checks that entries are packed and read back exactly, that another position in the same slot is never returned, and
+ * how old entries are replaced.
+ */
+public class TranspositionTableTest
+{
+	private static final int SLOTS = 1 << 16;					// the number of slots in a one megabyte table.
+	private static final long HASH = 0x3C6EF372FE94F82BL;		// a position's hash.
+	private static final long SAME_SLOT = HASH + SLOTS;			// another position's hash, in the same slot.
+
+	/**
+	 * Stores an entry and checks every field read back.
+	 *
+	 * @param _move The best move.
+	 * @param _score The score.
+	 * @param _depth The depth.
+	 * @param _bound The bound.
+	 */
+	@ParameterizedTest
+	@CsvSource({
+		"12345, 0, 0, 1",
+		"-1, 35, 1, 2",
+		"2147483647, -35, 7, 3",
+		"-2147483648, 29997, 64, 1",
+		"99, -29998, 128, 2",
+		"7, 32000, 255, 3",
+		"0, -32000, 200, 1"
+	})
+	public void fieldsReadBack(int _move, int _score, int _depth, int _bound)
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+
+		table.store(HASH, _move, _score, _depth, _bound);
+
+		long entry = table.probe(HASH);
+
+		assertEquals(_move, TranspositionTable.getMove(entry));
+		assertEquals(_score, TranspositionTable.getScore(entry));
+		assertEquals(_depth, TranspositionTable.getDepth(entry));
+		assertEquals(_bound, TranspositionTable.getBound(entry));
+	}
+
+	/**
+	 * Stores random entries under random hashes and checks the last one stored in each slot reads back exactly.
+	 */
+	@Test
+	public void randomFieldsReadBack()
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+		Random random = new Random(9);
+
+		for (int i = 0; i < 100000; i++)
+		{
+			long hash = random.nextLong();
+			int move = random.nextInt(), score = random.nextInt(2 * Search.INFINITY + 1) - Search.INFINITY;
+			int depth = random.nextInt(256), bound = 1 + random.nextInt(3);
+
+			table.store(hash, move, score, depth, bound);
+
+			long entry = table.probe(hash);
+
+			assertEquals(move, TranspositionTable.getMove(entry));
+			assertEquals(score, TranspositionTable.getScore(entry));
+			assertEquals(depth, TranspositionTable.getDepth(entry));
+			assertEquals(bound, TranspositionTable.getBound(entry));
+		}
+	}
+
+	/**
+	 * Checks that a position sharing a slot with a stored one is not found, and that an empty table finds nothing.
+	 */
+	@Test
+	public void otherPositionInSlotMissed()
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(HASH));
+
+		table.store(HASH, 5, 100, 4, TranspositionTable.EXACT);
+
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(SAME_SLOT));
+		assertNotEquals(TranspositionTable.NO_ENTRY, table.probe(HASH));
+
+		table.clear();
+
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(HASH));
+	}
+
+	/**
+	 * Checks that a deeper entry from the current search is kept from a shallower one of another position, but not
+	 * from an entry as deep, nor once a new search has started.
+	 */
+	@Test
+	public void depthPreferredKeepsDeeperEntries()
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.DEPTH_PREFERRED);
+
+		table.store(HASH, 5, 100, 8, TranspositionTable.EXACT);
+		table.store(SAME_SLOT, 6, 200, 3, TranspositionTable.EXACT);
+
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(SAME_SLOT), "a shallower entry does not replace a deeper one");
+		assertEquals(8, TranspositionTable.getDepth(table.probe(HASH)));
+
+		table.store(HASH, 5, 50, 2, TranspositionTable.LOWER);
+
+		assertEquals(2, TranspositionTable.getDepth(table.probe(HASH)), "the same position is always updated");
+
+		table.store(HASH, 5, 100, 8, TranspositionTable.EXACT);
+		table.store(SAME_SLOT, 6, 200, 8, TranspositionTable.EXACT);
+
+		assertEquals(200, TranspositionTable.getScore(table.probe(SAME_SLOT)), "an entry as deep replaces it");
+
+		table.newSearch();
+		table.store(HASH, 5, 100, 1, TranspositionTable.EXACT);
+
+		assertEquals(1, TranspositionTable.getDepth(table.probe(HASH)), "an entry from an earlier search is replaced");
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(SAME_SLOT));
+	}
+
+	/**
+	 * Checks that with ALWAYS the newest entry replaces any other.
+	 */
+	@Test
+	public void alwaysReplaces()
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+
+		table.store(HASH, 5, 100, 8, TranspositionTable.EXACT);
+		table.store(SAME_SLOT, 6, 200, 3, TranspositionTable.EXACT);
+
+		assertEquals(TranspositionTable.NO_ENTRY, table.probe(HASH));
+		assertEquals(3, TranspositionTable.getDepth(table.probe(SAME_SLOT)));
+	}
+
+	/**
+	 * Checks that storing a position again without a move keeps the move it had.
+	 */
+	@Test
+	public void moveKeptWhenNoneStored()
+	{
+		TranspositionTable table = new TranspositionTable(1, TranspositionTable.Replacement.ALWAYS);
+
+		table.store(HASH, 5, 100, 8, TranspositionTable.EXACT);
+		table.store(HASH, Move.NONE, -100, 9, TranspositionTable.UPPER);
+
+		long entry = table.probe(HASH);
+
+		assertEquals(5, TranspositionTable.getMove(entry));
+		assertEquals(-100, TranspositionTable.getScore(entry));
+		assertEquals(TranspositionTable.UPPER, TranspositionTable.getBound(entry));
+	}
+}